@@ -0,0 +1,225 @@
+package dependencymanager.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.DependencyManager;
+import dependencymanager.benchmarks.GraphGenerator.Shape;
+import dependencymanager.exceptions.StillNeededByException;
+
+/**
+ * DependencyManager hot paths over synthetic graphs
+ * 
+ * install/remove are big operations (a whole closure).. they are measured as the average time of one
+ * operation and the state they mutate is put back after every invocation
+ * 
+ * e.g., gradlew jmh -PjmhArgs="DependencyManagerBenchmarks.install -p shape=CHAIN -p size=1000"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DependencyManagerBenchmarks {
+
+  /**
+   * the generated graph
+   */
+  @State(Scope.Benchmark)
+  public static class Graph {
+
+    @Param({ "CHAIN", "DIAMOND", "RANDOM", "POWER_LAW" })
+    public Shape shape;
+
+    @Param({ "1000", "10000", "100000", "1000000" })
+    public int size;
+
+    GraphGenerator generator;
+    String root;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      generator = new GraphGenerator(shape, size, GraphGenerator.SEED);
+      root = GraphGenerator.name(0);
+    }
+
+    DependencyManager declare() {
+      DependencyManager dependencyManager = new DependencyManager(new EventBus());
+      generator.depend(dependencyManager);
+      return dependencyManager;
+    }
+  }
+
+  /**
+   * graph declared, nothing installed
+   */
+  @State(Scope.Thread)
+  public static class Declared {
+
+    DependencyManager dependencyManager;
+
+    @Setup(Level.Trial)
+    public void setUp(Graph graph) {
+      dependencyManager = graph.declare();
+    }
+
+    @TearDown(Level.Invocation)
+    public void uninstall(Graph graph) {
+      dependencyManager.remove(graph.root);
+    }
+  }
+
+  /**
+   * graph declared, root (and its closure) installed
+   */
+  @State(Scope.Thread)
+  public static class RootInstalled {
+
+    DependencyManager dependencyManager;
+
+    @Setup(Level.Trial)
+    public void setUp(Graph graph) {
+      dependencyManager = graph.declare();
+      dependencyManager.install(graph.root);
+    }
+
+    @TearDown(Level.Invocation)
+    public void reinstall(Graph graph) {
+      dependencyManager.install(graph.root);
+    }
+  }
+
+  /**
+   * graph declared, every component explicitly installed
+   */
+  @State(Scope.Thread)
+  public static class AllInstalled {
+
+    DependencyManager dependencyManager;
+
+    // component w/the most installed dependents
+    String hub;
+
+    @Setup(Level.Trial)
+    public void setUp(Graph graph) {
+      dependencyManager = graph.declare();
+      for (int i = graph.size; --i >= 0;)
+        dependencyManager.install(GraphGenerator.name(i)); // dependencies first
+      hub = GraphGenerator.name(graph.generator.hub());
+    }
+  }
+
+  /**
+   * graph declared, for the query api
+   */
+  @State(Scope.Thread)
+  public static class Queried {
+
+    DependencyManager dependencyManager;
+
+    // last component.. nothing depends on the root, everything else may be reachable from it
+    String leaf;
+
+    // component w/the most dependents
+    String hub;
+
+    @Setup(Level.Trial)
+    public void setUp(Graph graph) {
+      dependencyManager = graph.declare();
+      leaf = GraphGenerator.name(graph.size - 1);
+      hub = GraphGenerator.name(graph.generator.hub());
+    }
+  }
+
+  /**
+   * depend - declare the whole graph on a new dependency manager
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 5)
+  public DependencyManager depend(Graph graph) {
+    return graph.declare();
+  }
+
+  /**
+   * install - install the root and its whole closure
+   */
+  @Benchmark
+  public Set<String> install(Graph graph, Declared declared) {
+    return declared.dependencyManager.install(graph.root);
+  }
+
+  /**
+   * remove - remove the root and cascade through its whole closure
+   */
+  @Benchmark
+  public Set<String> remove(Graph graph, RootInstalled rootInstalled) {
+    return rootInstalled.dependencyManager.remove(graph.root);
+  }
+
+  /**
+   * removeStillNeeded - rejected remove of the component w/the most installed dependents
+   */
+  @Benchmark
+  public Set<String> removeStillNeeded(AllInstalled allInstalled) {
+    try {
+      return allInstalled.dependencyManager.remove(allInstalled.hub);
+    } catch (StillNeededByException e) {
+      return e.stillNeededBy;
+    }
+  }
+
+  /**
+   * list - iterate all installed components
+   */
+  @Benchmark
+  public void list(AllInstalled allInstalled, Blackhole blackhole) {
+    for (String component : allInstalled.dependencyManager.list())
+      blackhole.consume(component);
+  }
+
+  /**
+   * dependsOn - transitive reachability from the root.. answered from the index after the first call
+   */
+  @Benchmark
+  public boolean dependsOn(Graph graph, Queried queried) {
+    return queried.dependencyManager.dependsOn(graph.root, queried.leaf);
+  }
+
+  /**
+   * path - shortest path from the root, never cached
+   */
+  @Benchmark
+  public List<String> path(Graph graph, Queried queried) {
+    return queried.dependencyManager.path(graph.root, queried.hub);
+  }
+
+  /**
+   * dependents - transitive dependents of the component w/the most dependents
+   */
+  @Benchmark
+  public Set<String> dependents(Queried queried) {
+    return queried.dependencyManager.dependents(queried.hub);
+  }
+
+}
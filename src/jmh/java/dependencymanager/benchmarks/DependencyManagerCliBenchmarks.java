@@ -0,0 +1,79 @@
+package dependencymanager.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Joiner;
+import com.google.common.eventbus.EventBus;
+import com.google.common.io.CharStreams;
+
+import dependencymanager.DependencyManager;
+import dependencymanager.benchmarks.GraphGenerator.Shape;
+import dependencymanager.cli.DependencyManagerCli;
+
+/**
+ * DependencyManagerCli.batch over the commands of a synthetic graph: declare it, install/list/remove
+ * 1000 components
+ * 
+ * every invocation runs the whole batch against a new dependency manager
+ * 
+ * e.g., gradlew jmh -PjmhArgs="DependencyManagerCliBenchmarks -p size=10000"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class DependencyManagerCliBenchmarks {
+
+  @Param({ "CHAIN", "DIAMOND", "RANDOM", "POWER_LAW" })
+  public Shape shape;
+
+  @Param({ "1000", "10000", "100000", "1000000" })
+  public int size;
+
+  private List<String> inputLines;
+  private String input;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    inputLines = new GraphGenerator(shape, size, GraphGenerator.SEED).commands(1000);
+    input = Joiner.on('\n').join(inputLines);
+  }
+
+  /**
+   * batch - batch(List)
+   */
+  @Benchmark
+  public List<String> batch() throws IOException {
+    return new DependencyManagerCli(new DependencyManager(new EventBus())).batch(inputLines);
+  }
+
+  /**
+   * streamingBatch - batch(Reader, Writer) into a writer that discards the output
+   */
+  @Benchmark
+  public void streamingBatch() throws IOException {
+    try (Writer output = CharStreams.nullWriter()) {
+      new DependencyManagerCli(new DependencyManager(new EventBus())).batch(new StringReader(input), output);
+    }
+  }
+
+}
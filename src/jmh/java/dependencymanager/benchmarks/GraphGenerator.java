@@ -0,0 +1,174 @@
+package dependencymanager.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import dependencymanager.DependencyManager;
+
+/**
+ * reproducible synthetic dependency graphs for the benchmarks
+ * 
+ * component i is named "c<i>" and only ever depends on components w/a larger index, so every shape is
+ * acyclic and component 0 is a root whose closure is (most of) the graph.. the same shape, size and
+ * seed always generate the same graph
+ */
+public class GraphGenerator {
+
+  /**
+   * graph shapes
+   */
+  public enum Shape {
+    /** c0 -> c1 -> c2 -> .. deep closures */
+    CHAIN,
+    /** stacked diamonds c0 -> {c1, c2} -> c3 -> {c4, c5} -> c6 .. shared dependencies */
+    DIAMOND,
+    /** every component depends on up to 4 random later components.. wide closures */
+    RANDOM,
+    /** preferential attachment.. a few components are depended on by a large share of the graph */
+    POWER_LAW,
+  }
+
+  public static final long SEED = 42;
+
+  public final Shape shape;
+  public final int size;
+
+  // component -> dependencies
+  private final int[][] dependencies;
+
+  /**
+   * ctor
+   * 
+   * @param shape
+   * @param size number of components
+   * @param seed
+   */
+  public GraphGenerator(Shape shape, int size, long seed) {
+    this.shape = shape;
+    this.size = size;
+    this.dependencies = new int[size][];
+
+    Random random = new Random(seed);
+    switch (shape) {
+      case CHAIN:
+        for (int i = 0; i < size; ++i)
+          dependencies[i] = i + 1 < size ? new int[] { i + 1 } : new int[0];
+        break;
+      case DIAMOND:
+        for (int i = 0; i < size; ++i) {
+          if (i % 3 == 0)
+            dependencies[i] = i + 2 < size ? new int[] { i + 1, i + 2 } : new int[0];
+          else
+            dependencies[i] = i - i % 3 + 3 < size ? new int[] { i - i % 3 + 3 } : new int[0];
+        }
+        break;
+      case RANDOM:
+        for (int i = 0; i < size; ++i) {
+          int count = Math.min(size - i - 1, random.nextInt(5));
+          dependencies[i] = new int[count];
+          for (int j = 0; j < count; ++j)
+            dependencies[i][j] = i + 1 + random.nextInt(size - i - 1);
+        }
+        break;
+      case POWER_LAW: {
+        // built from the last component backwards.. each new component picks dependencies among the
+        // components built so far w/probability proportional to their fan-in + 1
+        int[] targets = new int[size * 4]; // one entry per edge endpoint + one per component
+        int targetCount = 0;
+        for (int i = size; --i >= 0;) {
+          int count = Math.min(size - i - 1, 1 + random.nextInt(3));
+          dependencies[i] = new int[count];
+          for (int j = 0; j < count; ++j) {
+            int dependency = targets[random.nextInt(targetCount)];
+            dependencies[i][j] = dependency;
+            targets[targetCount++] = dependency;
+          }
+          targets[targetCount++] = i;
+        }
+        break;
+      }
+      default:
+        throw new IllegalArgumentException(shape.toString());
+    }
+  }
+
+  /**
+   * name
+   * 
+   * @param component
+   * @return
+   */
+  public static String name(int component) {
+    return "c" + component;
+  }
+
+  /**
+   * dependencies
+   * 
+   * @param component
+   * @return insertion ordered dependencies of component
+   */
+  public Set<String> dependencies(int component) {
+    Set<String> names = new LinkedHashSet<>();
+    for (int dependency : dependencies[component])
+      names.add(name(dependency));
+    return names;
+  }
+
+  /**
+   * hub
+   * 
+   * @return the component w/the most direct dependents
+   */
+  public int hub() {
+    int[] fanIn = new int[size];
+    int hub = 0;
+    for (int[] component : dependencies) {
+      for (int dependency : component) {
+        if (++fanIn[dependency] > fanIn[hub])
+          hub = dependency;
+      }
+    }
+    return hub;
+  }
+
+  /**
+   * depend
+   * 
+   * declares the whole graph on dependencyManager
+   * 
+   * @param dependencyManager
+   */
+  public void depend(DependencyManager dependencyManager) {
+    for (int i = 0; i < size; ++i) {
+      if (dependencies[i].length > 0)
+        dependencyManager.depend(name(i), dependencies(i));
+    }
+  }
+
+  /**
+   * commands
+   * 
+   * @param installs number of components to install
+   * @return cli commands that declare the graph, install and list installs components, remove them again and END
+   */
+  public List<String> commands(int installs) {
+    List<String> commands = new ArrayList<>();
+    for (int i = 0; i < size; ++i) {
+      if (dependencies[i].length > 0)
+        commands.add("DEPEND " + name(i) + " " + String.join(" ", dependencies(i)));
+    }
+    int step = Math.max(1, size / installs);
+    for (int i = 0; i < size; i += step)
+      commands.add("INSTALL " + name(i));
+    commands.add("LIST");
+    for (int i = 0; i < size; i += step)
+      commands.add("REMOVE " + name(i));
+    commands.add("END");
+    return commands;
+  }
+
+}
@@ -0,0 +1,272 @@
+package dependencymanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.collect.Iterables;
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.events.InstallingBatchEvent;
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.events.ListingEvent;
+import dependencymanager.events.RemovingBatchEvent;
+import dependencymanager.events.RemovingEvent;
+
+/**
+ * opt-in asynchronous event delivery for dependency managers
+ * 
+ * events are queued in a bounded ring buffer and delivered to the event bus on a single consumer
+ * thread, in the order they were dispatched.. the consumer drains everything that is queued at once
+ * and delivers it as one batch, so subscriber work stays off the mutation path
+ * 
+ * w/async delivery install/remove dispatch one InstallingBatchEvent/RemovingBatchEvent per operation..
+ * the consumer posts the batch event followed by the InstallingEvent/RemovingEvent of each component so
+ * existing subscribers keep working
+ * 
+ * subscribers run on the consumer thread and must not call back into a dependency manager that
+ * dispatches here w/BLOCK or COALESCE (the queue could be full and nobody would drain it)
+ */
+public class AsyncEventDispatcher implements AutoCloseable {
+
+  /**
+   * what dispatch() does when the ring buffer is full
+   */
+  public enum Backpressure {
+    // wait for room
+    BLOCK,
+    // discard the event (see dropped())
+    DROP,
+    // merge into the last queued event if it is the same kind of batch/listing, otherwise wait for room
+    COALESCE,
+  }
+
+  public final EventBus eventBus;
+
+  private final Backpressure backpressure;
+
+  // ring buffer
+  private final Object[] ring;
+  private int head;
+  private int count;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Condition progress = lock.newCondition();
+
+  // guarded by lock
+  private long enqueued;
+  private long delivered;
+  private long dropped;
+  private long coalesced;
+  private boolean closed;
+
+  private final Thread consumer;
+
+  /**
+   * ctor
+   * 
+   * starts the consumer thread
+   * 
+   * @param eventBus event bus to deliver events to
+   * @param capacity max number of queued events
+   * @param backpressure what to do when the queue is full
+   */
+  public AsyncEventDispatcher(EventBus eventBus, int capacity, Backpressure backpressure) {
+    if (eventBus == null)
+      throw new IllegalArgumentException("eventBus is null");
+    if (capacity < 1)
+      throw new IllegalArgumentException("capacity < 1");
+    if (backpressure == null)
+      throw new IllegalArgumentException("backpressure is null");
+    this.eventBus = eventBus;
+    this.ring = new Object[capacity];
+    this.backpressure = backpressure;
+    this.consumer = new Thread(this::consume, "dependency-manager-events");
+    this.consumer.setDaemon(true);
+    this.consumer.start();
+  }
+
+  /**
+   * dispatch
+   * 
+   * queues event for delivery.. once the dispatcher is closed events are dropped (see dropped())
+   * rather than failing the dependency manager operation that already happened
+   * 
+   * @param event
+   */
+  public void dispatch(Object event) {
+    lock.lock();
+    try {
+      while (true) {
+        if (closed) {
+          ++dropped;
+          return;
+        }
+        if (count < ring.length)
+          break;
+        if (backpressure == Backpressure.DROP) {
+          ++dropped;
+          return;
+        }
+        if (backpressure == Backpressure.COALESCE && coalesce(event)) {
+          ++coalesced;
+          return;
+        }
+        notFull.awaitUninterruptibly();
+      }
+      ring[(head + count) % ring.length] = event;
+      ++count;
+      ++enqueued;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * flush
+   * 
+   * waits until everything dispatched so far has been delivered
+   */
+  public void flush() {
+    lock.lock();
+    try {
+      long target = enqueued;
+      while (delivered < target)
+        progress.awaitUninterruptibly();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * close
+   * 
+   * stops accepting events, delivers what is queued and stops the consumer thread
+   */
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      closed = true;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    if (Thread.currentThread() != consumer) {
+      try {
+        consumer.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * dropped
+   * 
+   * @return number of events discarded because the queue was full (DROP) or the dispatcher was closed
+   */
+  public long dropped() {
+    lock.lock();
+    try {
+      return dropped;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * coalesced
+   * 
+   * @return number of events merged into an already queued event because the queue was full (COALESCE)
+   */
+  public long coalesced() {
+    lock.lock();
+    try {
+      return coalesced;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * coalesce
+   * 
+   * caller must hold lock
+   * 
+   * @param event
+   * @return true if event was merged into the last queued event
+   */
+  private boolean coalesce(Object event) {
+    int last = (head + count - 1) % ring.length;
+    Object queued = ring[last];
+    if (queued instanceof InstallingBatchEvent && event instanceof InstallingBatchEvent) {
+      ring[last] = new InstallingBatchEvent(Iterables.concat(((InstallingBatchEvent) queued).components, ((InstallingBatchEvent) event).components));
+      return true;
+    }
+    if (queued instanceof RemovingBatchEvent && event instanceof RemovingBatchEvent) {
+      ring[last] = new RemovingBatchEvent(Iterables.concat(((RemovingBatchEvent) queued).components, ((RemovingBatchEvent) event).components));
+      return true;
+    }
+    if (queued instanceof ListingEvent && event instanceof ListingEvent) {
+      ring[last] = event; // the newer listing supersedes the older one
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * consume
+   * 
+   * consumer thread main loop
+   */
+  private void consume() {
+    List<Object> batch = new ArrayList<>();
+    while (true) {
+      lock.lock();
+      try {
+        while (count == 0 && !closed)
+          notEmpty.awaitUninterruptibly();
+        if (count == 0)
+          return; // closed and drained
+        for (; count > 0; --count) {
+          batch.add(ring[head]);
+          ring[head] = null;
+          head = (head + 1) % ring.length;
+        }
+        notFull.signalAll();
+      } finally {
+        lock.unlock();
+      }
+
+      for (Object event : batch)
+        deliver(event);
+
+      lock.lock();
+      try {
+        delivered += batch.size();
+        progress.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      batch.clear();
+    }
+  }
+
+  private void deliver(Object event) {
+    eventBus.post(event);
+    if (event instanceof InstallingBatchEvent) {
+      for (String component : ((InstallingBatchEvent) event).components)
+        eventBus.post(new InstallingEvent(component));
+    } else if (event instanceof RemovingBatchEvent) {
+      for (String component : ((RemovingBatchEvent) event).components)
+        eventBus.post(new RemovingEvent(component));
+    }
+  }
+
+}
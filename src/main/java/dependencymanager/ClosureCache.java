@@ -0,0 +1,223 @@
+package dependencymanager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * cache of dependency closures
+ * 
+ * a closure is the component plus everything it (transitively) depends on, in dependency-first
+ * topological order, i.e., each component comes after all of its dependencies and the component
+ * itself comes last
+ * 
+ * cached closures are spliced into new closures instead of being traversed again.. when an edge
+ * is added the closures of the component and its ancestors are invalidated
+ */
+class ClosureCache {
+
+  private final ComponentGraph graph;
+
+  // id -> closure.. least recently used first
+  private final Map<Integer/*id*/, int[]/*closure*/> closures;
+
+  // traversal state
+  private final Marks marks = new Marks();
+  private final IntList path = new IntList();
+  private final IntList positions = new IntList();
+
+  // traversal counters.. cumulative, read by DependencyManager for Metrics
+  long nodes;
+  long edges;
+
+  /**
+   * ctor
+   * 
+   * @param graph the graph to compute closures for
+   * @param maximumSize max number of cached closures
+   */
+  ClosureCache(ComponentGraph graph, int maximumSize) {
+    this.graph = graph;
+    this.closures = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return size() > maximumSize;
+      }
+      private static final long serialVersionUID = 1L;
+    };
+  }
+
+  /**
+   * closure
+   * 
+   * @param id
+   * @return dependency-first topological order of id and its dependencies.. callers must not modify it
+   */
+  int[] closure(int id) {
+    int[] closure = closures.get(id);
+    if (closure == null)
+      closures.put(id, closure = compute(id));
+    return closure;
+  }
+
+  /**
+   * invalidate
+   * 
+   * drops the cached closures of id and everything that (transitively) depends on it
+   * 
+   * @param id
+   */
+  void invalidate(int id) {
+    if (closures.isEmpty())
+      return; // nothing to do
+
+    marks.clear();
+    path.clear();
+    marks.mark(id);
+    path.add(id);
+    invalidateMarked();
+  }
+
+  /**
+   * clear
+   * 
+   * drops all cached closures
+   */
+  void clear() {
+    closures.clear();
+  }
+
+  /**
+   * invalidateAll
+   * 
+   * same as invalidate() for each of ids but in one traversal
+   * 
+   * @param ids
+   */
+  void invalidateAll(IntList ids) {
+    if (closures.isEmpty())
+      return; // nothing to do
+
+    marks.clear();
+    path.clear();
+    for (int i = 0; i < ids.size(); ++i) {
+      if (marks.mark(ids.get(i)))
+        path.add(ids.get(i));
+    }
+    invalidateMarked();
+  }
+
+  /**
+   * invalidateMarked
+   * 
+   * drops the cached closures of everything on path and their (transitive) dependents
+   */
+  private void invalidateMarked() {
+    while (!path.isEmpty()) {
+      int node = path.removeLast();
+      closures.remove(node);
+      for (int i = 0; i < graph.predecessorCount(node); ++i) {
+        int predecessor = graph.predecessor(node, i);
+        if (marks.mark(predecessor))
+          path.add(predecessor);
+      }
+    }
+  }
+
+  /**
+   * closureAll
+   * 
+   * union of the closures of ids in one traversal.. each component is emitted once, as part of the
+   * closure of the first of ids that reaches it, so the closure of an id that was already reached
+   * by an earlier one is empty
+   * 
+   * the union is not cached
+   * 
+   * @param ids
+   * @param order receives the union in dependency-first topological order
+   * @param ends receives the size of order after each of ids
+   */
+  void closureAll(int[] ids, IntList order, IntList ends) {
+    marks.clear();
+    for (int id : ids) {
+      if (!marks.isMarked(id)) {
+        int[] cached = closures.get(id);
+        if (cached != null)
+          splice(cached, order);
+        else
+          visit(id, order);
+      }
+      ends.add(order.size());
+    }
+  }
+
+  /**
+   * compute
+   * 
+   * @param id
+   * @return
+   */
+  private int[] compute(int id) {
+    IntList order = new IntList();
+    marks.clear();
+    visit(id, order);
+    return order.toArray();
+  }
+
+  /**
+   * visit
+   * 
+   * iterative post-order dfs.. the graph is acyclic so a component that was already
+   * visited has already been emitted
+   * 
+   * @param id an unmarked id
+   * @param order receives id and its unmarked dependencies in dependency-first order
+   */
+  private void visit(int id, IntList order) {
+    path.clear();
+    positions.clear();
+
+    marks.mark(id);
+    path.add(id);
+    positions.add(0);
+
+    while (!path.isEmpty()) {
+      int node = path.last();
+      int position = positions.last();
+      if (position < graph.successorCount(node)) {
+        positions.set(positions.size() - 1, position + 1);
+        int next = graph.successor(node, position);
+        ++edges;
+        if (!marks.isMarked(next)) {
+          int[] cached = closures.get(next);
+          if (cached != null) {
+            splice(cached, order);
+          } else {
+            marks.mark(next);
+            path.add(next);
+            positions.add(0);
+          }
+        }
+      } else {
+        path.removeLast();
+        positions.removeLast();
+        order.add(node);
+        ++nodes;
+      }
+    }
+  }
+
+  /**
+   * splice
+   * 
+   * @param cached a cached closure.. already dependency-first
+   * @param order receives the unmarked components of cached
+   */
+  private void splice(int[] cached, IntList order) {
+    for (int c : cached) {
+      if (marks.mark(c))
+        order.add(c);
+    }
+    nodes += cached.length;
+  }
+
+}
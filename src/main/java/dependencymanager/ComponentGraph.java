@@ -0,0 +1,308 @@
+package dependencymanager;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * compact static dependency graph
+ * 
+ * component names are interned to dense int ids once.. after that everything works on ids:
+ * dependencies and dependents are kept in per-component int arrays so traversals don't hash
+ * strings or chase boxed graph nodes
+ * 
+ * edges point from component to dependency.. dependencies are kept in the order they were declared
+ * 
+ * the graph only ever grows (ids and edges are never removed) which is what makes freeze() cheap..
+ * the one exception is a transaction rollback, which removes the ids and edges added since the
+ * transaction started (no copy can have been frozen in the meantime)
+ */
+class ComponentGraph {
+
+  private static final int[] EMPTY = new int[0];
+
+  // component name -> id.. shared w/frozen copies, which ignore ids >= their size
+  private final Map<String/*component*/, Integer/*id*/> ids;
+
+  // id -> component name
+  private String[] names = new String[16];
+
+  // id -> dependencies
+  private int[][] successors = new int[16][];
+  private int[] successorCounts = new int[16];
+
+  // id -> dependents
+  private int[][] predecessors = new int[16][];
+  private int[] predecessorCounts = new int[16];
+
+  // number of components
+  private int size;
+
+  // bumped whenever a component or edge is added
+  private long version;
+
+  // true for read-only copies made by freeze()
+  private final boolean frozen;
+
+  /**
+   * ctor
+   */
+  ComponentGraph() {
+    ids = new ConcurrentHashMap<>();
+    frozen = false;
+  }
+
+  /**
+   * ctor
+   * 
+   * read-only copy of graph.. see freeze()
+   * 
+   * @param graph
+   */
+  private ComponentGraph(ComponentGraph graph) {
+    ids = graph.ids;
+    names = Arrays.copyOf(graph.names, graph.size);
+    successors = Arrays.copyOf(graph.successors, graph.size);
+    successorCounts = Arrays.copyOf(graph.successorCounts, graph.size);
+    predecessors = Arrays.copyOf(graph.predecessors, graph.size);
+    predecessorCounts = Arrays.copyOf(graph.predecessorCounts, graph.size);
+    size = graph.size;
+    version = graph.version;
+    frozen = true;
+  }
+
+  /**
+   * ctor
+   * 
+   * read-only copy of frozen graph plus an edge-less component.. see append()
+   * 
+   * @param graph
+   * @param component
+   */
+  private ComponentGraph(ComponentGraph graph, String component) {
+    ids = graph.ids;
+    names = graph.names;
+    successors = graph.successors;
+    successorCounts = graph.successorCounts;
+    predecessors = graph.predecessors;
+    predecessorCounts = graph.predecessorCounts;
+    size = graph.size;
+    if (size == names.length)
+      grow();
+    names[size] = component;
+    successors[size] = EMPTY;
+    predecessors[size] = EMPTY;
+    ++size;
+    version = graph.version + 1;
+    frozen = true;
+  }
+
+  /**
+   * freeze
+   * 
+   * returns a read-only copy of this graph that can be shared between threads once it has been
+   * safely published
+   * 
+   * only the per-component (outer) arrays are copied.. the adjacency arrays themselves are shared
+   * because this graph only ever appends past the counts the copy knows about
+   * 
+   * @return
+   */
+  ComponentGraph freeze() {
+    return frozen ? this : new ComponentGraph(this);
+  }
+
+  /**
+   * append
+   * 
+   * read-only copy of this frozen graph plus component, which the graph it was frozen from has just interned
+   * w/o any edges.. same as freezing that graph again but amortized O(1): the per-component arrays are shared
+   * and the new component is written past size, where this copy doesn't look.. so it must only be called on
+   * the newest copy, and only once
+   * 
+   * @param component
+   * @return
+   */
+  ComponentGraph append(String component) {
+    if (!frozen)
+      throw new IllegalStateException("graph is not frozen");
+    Integer id = ids.get(component);
+    if (id == null || id != size)
+      throw new IllegalStateException(String.format("%s is not the next component", component));
+    return new ComponentGraph(this, component);
+  }
+
+  /**
+   * version
+   * 
+   * @return a number that changes whenever a component or edge is added
+   */
+  long version() {
+    return version;
+  }
+
+  /**
+   * size
+   * 
+   * @return number of components.. ids are 0..size-1
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * id
+   * 
+   * @param component
+   * @return id of component or -1 if component is unknown
+   */
+  int id(String component) {
+    Integer id = ids.get(component);
+    return id == null || id >= size ? -1 : id;
+  }
+
+  /**
+   * intern
+   * 
+   * @param component
+   * @return id of component.. a new id is allocated if component is unknown
+   */
+  int intern(String component) {
+    Integer id = ids.get(component);
+    if (id != null && id < size)
+      return id;
+    if (frozen)
+      throw new IllegalStateException("graph is frozen");
+    if (size == names.length)
+      grow();
+    names[size] = component;
+    successors[size] = EMPTY;
+    predecessors[size] = EMPTY;
+    ++version;
+    ids.put(component, size);
+    return size++;
+  }
+
+  /**
+   * name
+   * 
+   * @param id
+   * @return component name
+   */
+  String name(int id) {
+    return names[id];
+  }
+
+  /**
+   * names
+   * 
+   * @return id -> component name.. the backing array, entries below size() never change (other than
+   *         by truncate()), so it can be read w/o copying
+   */
+  String[] names() {
+    return names;
+  }
+
+  /**
+   * hasEdge
+   * 
+   * @param component
+   * @param dependency
+   * @return true if component directly depends on dependency
+   */
+  boolean hasEdge(int component, int dependency) {
+    int[] dependencies = successors[component];
+    for (int i = successorCounts[component]; --i >= 0;) {
+      if (dependencies[i] == dependency)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * addEdge
+   * 
+   * @param component
+   * @param dependency
+   * @return true if the edge was added, false if it already existed
+   */
+  boolean addEdge(int component, int dependency) {
+    if (hasEdge(component, dependency))
+      return false;
+    if (frozen)
+      throw new IllegalStateException("graph is frozen");
+    ++version;
+    successors[component] = append(successors[component], successorCounts[component]++, dependency);
+    predecessors[dependency] = append(predecessors[dependency], predecessorCounts[dependency]++, component);
+    return true;
+  }
+
+  /**
+   * removeEdge
+   * 
+   * undoes addEdge().. the edge must be the last one added to both component and dependency
+   * 
+   * @param component
+   * @param dependency
+   */
+  void removeEdge(int component, int dependency) {
+    if (frozen)
+      throw new IllegalStateException("graph is frozen");
+    if (successors[component][successorCounts[component] - 1] != dependency || predecessors[dependency][predecessorCounts[dependency] - 1] != component)
+      throw new IllegalStateException(String.format("%s->%s is not the last edge", names[component], names[dependency]));
+    ++version;
+    --successorCounts[component];
+    --predecessorCounts[dependency];
+  }
+
+  /**
+   * truncate
+   * 
+   * undoes intern() for the ids >= size.. they must not have any edges left
+   * 
+   * @param size
+   */
+  void truncate(int size) {
+    if (frozen)
+      throw new IllegalStateException("graph is frozen");
+    while (this.size > size) {
+      --this.size;
+      ids.remove(names[this.size]);
+      names[this.size] = null;
+      ++version;
+    }
+  }
+
+  int successorCount(int component) {
+    return successorCounts[component];
+  }
+
+  int successor(int component, int index) {
+    return successors[component][index];
+  }
+
+  int predecessorCount(int component) {
+    return predecessorCounts[component];
+  }
+
+  int predecessor(int component, int index) {
+    return predecessors[component][index];
+  }
+
+  private void grow() {
+    int capacity = Math.max(16, size * 2);
+    names = Arrays.copyOf(names, capacity);
+    successors = Arrays.copyOf(successors, capacity);
+    successorCounts = Arrays.copyOf(successorCounts, capacity);
+    predecessors = Arrays.copyOf(predecessors, capacity);
+    predecessorCounts = Arrays.copyOf(predecessorCounts, capacity);
+  }
+
+  private static int[] append(int[] array, int count, int element) {
+    if (count == array.length)
+      array = Arrays.copyOf(array, Math.max(4, count * 2));
+    array[count] = element;
+    return array;
+  }
+
+}
@@ -0,0 +1,189 @@
+package dependencymanager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.events.ListingEvent;
+
+/**
+ * thread-safe dependency manager
+ * 
+ * mutating operations (depend, install, remove) are serialized and publish a new immutable
+ * DependencyManagerSnapshot when they are done.. read operations (list, isdepend, closure, plans) never
+ * lock and run against the latest published snapshot, so they don't queue behind a long install
+ * 
+ * a reader sees either all or none of a mutation
+ */
+public class ConcurrentDependencyManager {
+
+  public final EventBus eventBus;
+
+  // guarded by this
+  private final DependencyManager dependencyManager;
+
+  // latest published snapshot
+  private volatile DependencyManagerSnapshot snapshot;
+
+  /**
+   * ctor
+   * 
+   * @param eventBus event bus for dependency manager to publish intesting events to (see the "events" java package)
+   */
+  public ConcurrentDependencyManager(EventBus eventBus) {
+    this(eventBus, new DependencyManager(eventBus));
+  }
+
+  /**
+   * ctor
+   * 
+   * opt-in asynchronous event delivery.. subscribers no longer run while the lock is held
+   * 
+   * @param dispatcher
+   */
+  public ConcurrentDependencyManager(AsyncEventDispatcher dispatcher) {
+    this(dispatcher.eventBus, new DependencyManager(dispatcher));
+  }
+
+  /**
+   * ctor
+   * 
+   * @param eventBus
+   * @param dependencyManager the dependency manager to guard.. must not be used directly afterwards
+   */
+  ConcurrentDependencyManager(EventBus eventBus, DependencyManager dependencyManager) {
+    this.eventBus = eventBus;
+    this.dependencyManager = dependencyManager;
+    this.snapshot = dependencyManager.snapshot(null);
+  }
+
+  /**
+   * depend
+   * 
+   * @see DependencyManager#depend(String, Set)
+   */
+  public void depend(String component, Set<String> dependencies) {
+    write(dependencyManager -> {
+      dependencyManager.depend(component, dependencies);
+      return null;
+    });
+  }
+
+  /**
+   * install
+   * 
+   * @see DependencyManager#install(String)
+   */
+  public Set<String> install(String componentToBeInstalled) {
+    return write(dependencyManager -> dependencyManager.install(componentToBeInstalled));
+  }
+
+  /**
+   * remove
+   * 
+   * @see DependencyManager#remove(String)
+   */
+  public Set<String> remove(String componentToBeRemoved) {
+    return write(dependencyManager -> dependencyManager.remove(componentToBeRemoved));
+  }
+
+  /**
+   * transact
+   * 
+   * runs work in a transaction as one serialized unit.. readers see either the committed result or
+   * nothing at all if work throws
+   * 
+   * @see DependencyManager#transact(Consumer)
+   */
+  public void transact(Consumer<Transaction> work) {
+    write(dependencyManager -> {
+      dependencyManager.transact(work);
+      return null;
+    });
+  }
+
+  /**
+   * write
+   * 
+   * runs any number of mutations as one serialized unit and publishes a single snapshot at the end..
+   * use this to amortize the cost of publishing for bulk loads
+   * 
+   * the dependency manager must not escape the callback
+   * 
+   * @param mutations
+   * @return whatever mutations returns
+   */
+  public synchronized <T> T write(Function<DependencyManager, T> mutations) {
+    try {
+      return mutations.apply(dependencyManager);
+    } finally {
+      // publish whatever was applied.. even if a mutation failed halfway
+      snapshot = dependencyManager.snapshot(snapshot);
+    }
+  }
+
+  /**
+   * list
+   * 
+   * @return read-only set of installed components in installation order
+   */
+  public Set<String> list() {
+    Set<String> installedComponents = snapshot.list();
+
+    // notify listeners.. post() does not touch any state guarded by the lock
+    dependencyManager.post(new ListingEvent(installedComponents));
+
+    return installedComponents;
+  }
+
+  /**
+   * isdepend
+   * 
+   * @see DependencyManagerSnapshot#isdepend(String, Set)
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+    return snapshot.isdepend(component, dependencies);
+  }
+
+  /**
+   * closure
+   * 
+   * @see DependencyManagerSnapshot#closure(String)
+   */
+  public List<String> closure(String component) {
+    return snapshot.closure(component);
+  }
+
+  /**
+   * planInstall
+   * 
+   * @see DependencyManagerSnapshot#planInstall(String)
+   */
+  public Set<String> planInstall(String componentToBeInstalled) {
+    return snapshot.planInstall(componentToBeInstalled);
+  }
+
+  /**
+   * planRemove
+   * 
+   * @see DependencyManagerSnapshot#planRemove(String)
+   */
+  public Set<String> planRemove(String componentToBeRemoved) {
+    return snapshot.planRemove(componentToBeRemoved);
+  }
+
+  /**
+   * snapshot
+   * 
+   * use this when several reads need to see the same state
+   * 
+   * @return latest published snapshot
+   */
+  public DependencyManagerSnapshot snapshot() {
+    return snapshot;
+  }
+
+}
@@ -0,0 +1,318 @@
+package dependencymanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.events.DependEvent;
+import dependencymanager.exceptions.DependsOnException;
+
+/**
+ * static dependencies shared by many install sessions
+ * 
+ * a DependencyManager keeps its own graph next to its install state.. w/one manager per managed host
+ * and the same depend rules fleet-wide that is the same graph over and over.. a catalog holds the
+ * graph (and its topological order) once and each InstallSession only keeps its own install state,
+ * as bitsets over the catalog's component ids
+ * 
+ * depend() is serialized.. sessions read a frozen copy of the graph w/o locking, which is refrozen
+ * lazily by the first reader after the graph changed (so a burst of depend() calls costs one freeze).
+ * closures are cached per frozen copy and shared by all sessions
+ * 
+ * thread-safe.. a session is not, but any number of sessions can be used concurrently
+ */
+public final class DependencyCatalog {
+
+  public final EventBus eventBus;
+
+  // traversal state.. one per thread since versions are shared
+  private static final ThreadLocal<Marks> MARKS = ThreadLocal.withInitial(Marks::new);
+
+  // static dependencies.. only modified while holding this
+  private final ComponentGraph graph = new ComponentGraph();
+
+  // topological order of the static dependencies.. used for cycle detection
+  private final TopologicalOrder topologicalOrder = new TopologicalOrder(graph);
+
+  // frozen graph for the sessions or null if graph changed since it was frozen
+  private volatile Version version;
+
+  // max number of cached closures per version
+  private static final int CLOSURE_CACHE_SIZE = 1024;
+
+  /**
+   * frozen graph + the closures computed on it
+   */
+  static final class Version {
+
+    final ComponentGraph graph;
+
+    // id -> closure in install order.. stops caching once full
+    private final Map<Integer/*id*/, int[]> closures;
+
+    Version(ComponentGraph graph) {
+      this(graph, new ConcurrentHashMap<>());
+    }
+
+    private Version(ComponentGraph graph, Map<Integer/*id*/, int[]> closures) {
+      this.graph = graph;
+      this.closures = closures;
+    }
+
+    /**
+     * append
+     * 
+     * @param component edge-less component just interned
+     * @return next version.. shares the closures, an edge-less component doesn't change any of them
+     */
+    Version append(String component) {
+      return new Version(graph.append(component), closures);
+    }
+
+    /**
+     * closure
+     * 
+     * iterative post-order dfs
+     * 
+     * @param id
+     * @return id and everything it (transitively) depends on, dependencies first.. callers must not modify it
+     */
+    int[] closure(int id) {
+      int[] cached = closures.get(id);
+      if (cached != null)
+        return cached;
+
+      IntList closure = new IntList();
+      Marks marks = MARKS.get();
+      IntList path = new IntList();
+      IntList positions = new IntList();
+      marks.clear();
+      marks.mark(id);
+      path.add(id);
+      positions.add(0);
+      while (!path.isEmpty()) {
+        int node = path.last();
+        int position = positions.last();
+        if (position < graph.successorCount(node)) {
+          positions.set(positions.size() - 1, position + 1);
+          int next = graph.successor(node, position);
+          if (marks.mark(next)) {
+            path.add(next);
+            positions.add(0);
+          }
+        } else {
+          path.removeLast();
+          positions.removeLast();
+          closure.add(node);
+        }
+      }
+
+      int[] ids = closure.toArray();
+      if (closures.size() < CLOSURE_CACHE_SIZE)
+        closures.put(id, ids);
+      return ids;
+    }
+
+  }
+
+  /**
+   * ctor
+   * 
+   * @param eventBus event bus for DependEvents.. also the default event bus of new sessions
+   */
+  public DependencyCatalog(EventBus eventBus) {
+
+    // validate
+    if (eventBus == null)
+      throw new IllegalArgumentException("eventBus is null");
+
+    this.eventBus = eventBus;
+  }
+
+  /**
+   * newSession
+   * 
+   * @return new session w/nothing installed that posts its events on eventBus
+   */
+  public InstallSession newSession() {
+    return new InstallSession(this, eventBus);
+  }
+
+  /**
+   * newSession
+   * 
+   * @param eventBus event bus for the session's events, e.g., to tell hosts apart
+   * @return new session w/nothing installed
+   */
+  public InstallSession newSession(EventBus eventBus) {
+
+    // validate
+    if (eventBus == null)
+      throw new IllegalArgumentException("eventBus is null");
+
+    return new InstallSession(this, eventBus);
+  }
+
+  /**
+   * depend
+   * 
+   * add static dependencies.. adds "dependencies" as dependencies to component, for every session
+   * 
+   * @param component
+   * @param dependencies set of dependencies
+   * 
+   * @throws IllegalArgumentException if component is null
+   * @throws IllegalArgumentException if dependencies is null
+   * @throws DependsOnException       if input would result in circular dependencies (direct or transitive)
+   * @see DependencyManager#depend(String, Set)
+   */
+  public synchronized void depend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component==null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies==null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    dependInternal(component, dependencies);
+  }
+
+  /**
+   * dependAll
+   * 
+   * same as calling depend() for each entry in iteration order
+   * 
+   * stops at the first entry that would result in circular dependencies.. the entries before it stay added
+   * 
+   * @param dependencies component -> set of dependencies
+   * 
+   * @throws IllegalArgumentException if dependencies is null or has a null component or set of dependencies
+   * @throws DependsOnException       if an entry would result in circular dependencies (direct or transitive)
+   */
+  public synchronized void dependAll(Map<String/*component*/, ? extends Set<String>> dependencies) {
+
+    // validate
+    if (dependencies==null)
+      throw new IllegalArgumentException("dependencies is null");
+    for (Map.Entry<String, ? extends Set<String>> entry : dependencies.entrySet()) {
+      if (entry.getKey()==null)
+        throw new IllegalArgumentException("component is null");
+      if (entry.getValue()==null)
+        throw new IllegalArgumentException("dependencies is null");
+    }
+
+    for (Map.Entry<String, ? extends Set<String>> entry : dependencies.entrySet())
+      dependInternal(entry.getKey(), entry.getValue());
+  }
+
+  private void dependInternal(String component, Set<String> dependencies) {
+
+    // validate (circular dependency)
+    int componentId = graph.id(component);
+    for (String dependency : dependencies) {
+      if (component.equals(dependency))
+        throw new DependsOnException(component, dependency, Arrays.asList(component, dependency));
+      int dependencyId = graph.id(dependency);
+      if (componentId != -1 && dependencyId != -1) { // else new component(s).. can't be circular
+        int[] cycle = topologicalOrder.findCycle(componentId, dependencyId);
+        if (cycle != null) {
+          List<String> names = new ArrayList<>(cycle.length);
+          for (int id : cycle)
+            names.add(graph.name(id));
+          throw new DependsOnException(component, dependency, names);
+        }
+      }
+    }
+
+    // notify listeners
+    eventBus.post(new DependEvent(component, dependencies));
+
+    // add static dependency
+    long before = graph.version();
+    componentId = graph.intern(component);
+    for (String dependency : dependencies) {
+      int dependencyId = graph.intern(dependency);
+      if (graph.addEdge(componentId, dependencyId))
+        topologicalOrder.addEdge(componentId, dependencyId);
+    }
+    if (graph.version() != before)
+      version = null;
+  }
+
+  /**
+   * isdepend - query static dependencies
+   * 
+   * @param component
+   * @param dependencies
+   * @return true if component directly depends on all of dependencies
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies == null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    ComponentGraph graph = version().graph;
+    int componentId = graph.id(component);
+    for (String dependency : dependencies) {
+      int dependencyId = graph.id(dependency);
+      if (componentId == -1 || dependencyId == -1 || !graph.hasEdge(componentId, dependencyId))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * size
+   * 
+   * @return number of known components
+   */
+  public int size() {
+    return version().graph.size();
+  }
+
+  /**
+   * version
+   * 
+   * lock-free unless the graph changed since it was last frozen
+   * 
+   * @return frozen graph of the current static dependencies
+   */
+  Version version() {
+    Version version = this.version;
+    if (version == null) {
+      synchronized (this) {
+        version = this.version;
+        if (version == null)
+          this.version = version = new Version(graph.freeze());
+      }
+    }
+    return version;
+  }
+
+  /**
+   * intern
+   * 
+   * e.g., a session installing a component nobody depends on.. the new component has no edges, so it is
+   * appended to the current version instead of refreezing the whole graph
+   * 
+   * @param component
+   * @return id of component.. a new id is allocated if component is unknown
+   */
+  synchronized int intern(String component) {
+    int size = graph.size();
+    int id = graph.intern(component);
+    if (graph.size() != size)
+      version = version == null ? null : version.append(component);
+    return id;
+  }
+
+}
@@ -1,20 +1,28 @@
 package dependencymanager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.LongSupplier;
 
 import com.google.common.eventbus.EventBus;
-import com.google.common.graph.GraphBuilder;
-import com.google.common.graph.Graphs;
-import com.google.common.graph.MutableGraph;
 
 import dependencymanager.events.DependEvent;
+import dependencymanager.events.InstallingBatchEvent;
 import dependencymanager.events.InstallingEvent;
 import dependencymanager.events.ListingEvent;
+import dependencymanager.events.RemovingBatchEvent;
 import dependencymanager.events.RemovingEvent;
 import dependencymanager.exceptions.AlreadyInstalledException;
 import dependencymanager.exceptions.DependsOnException;
@@ -25,14 +33,47 @@ public class DependencyManager {
 
   public final EventBus eventBus;
 
-  // set of explicitly installed components
-  private final Set<String/*component*/> explicitComponents = new HashSet<>();
+  // asynchronous event delivery or null for synchronous delivery on eventBus
+  private final AsyncEventDispatcher dispatcher;
 
-  // set of installed components
-  private final Set<String/*component*/> installedComponents = new LinkedHashSet<>(); // insertion order
+  // static dependencies.. component names are interned to int ids
+  private final ComponentGraph graph = new ComponentGraph();
 
-  // static dependencies
-  private final MutableGraph<String/*component*/> graph = GraphBuilder.directed().build();
+  // explicitly installed/installed components (insertion order) and installed direct dependents
+  private final InstallState state;
+
+  // the last list() result.. reused until the install state changes
+  private InstalledView listing;
+
+  // topological order of the static dependencies.. used for cycle detection
+  private final TopologicalOrder topologicalOrder = new TopologicalOrder(graph);
+
+  // dependency closures in install order
+  private final ClosureCache closureCache = new ClosureCache(graph, CLOSURE_CACHE_SIZE);
+
+  // max number of cached closures
+  private static final int CLOSURE_CACHE_SIZE = 1024;
+
+  // transitive dependencies/dependents for the query api
+  private final ReachabilityIndex reachabilityIndex = new ReachabilityIndex(graph, topologicalOrder, REACHABILITY_INDEX_SIZE);
+
+  // max number of cached bitsets of either kind
+  private static final int REACHABILITY_INDEX_SIZE = 1024;
+
+  // open transaction or null
+  private Transaction transaction;
+
+  // number of operations applied so far
+  private long operation;
+
+  // install state after operation n is history[n % history.length] for historyStart <= n <= operation
+  private FrozenInstallState[] history = new FrozenInstallState[0];
+  private long historyStart;
+
+  // instrumentation or null.. traversal counters at the start of the current operation
+  private Metrics metrics;
+  private long nodesAtStart;
+  private long edgesAtStart;
 
   /**
    * ctor
@@ -40,7 +81,32 @@ public class DependencyManager {
    * @param eventBus event bus for dependency manager to publish intesting events to (see the "events" java package)
    */
   public DependencyManager(EventBus eventBus) {
+    this(eventBus, new AtomicLong()::incrementAndGet, null);
+  }
+
+  /**
+   * ctor
+   * 
+   * opt-in asynchronous event delivery.. events are delivered on the dispatcher's thread and
+   * install/remove dispatch one batch event per operation
+   * 
+   * @param dispatcher
+   */
+  public DependencyManager(AsyncEventDispatcher dispatcher) {
+    this(dispatcher.eventBus, new AtomicLong()::incrementAndGet, dispatcher);
+  }
+
+  /**
+   * ctor
+   * 
+   * @param eventBus
+   * @param clock source of install stamps.. dependency managers that may be merged w/absorb() must share it
+   * @param dispatcher asynchronous event delivery or null
+   */
+  DependencyManager(EventBus eventBus, LongSupplier clock, AsyncEventDispatcher dispatcher) {
     this.eventBus = eventBus;
+    this.dispatcher = dispatcher;
+    this.state = new InstallState(graph, clock);
   }
 
   /**
@@ -53,9 +119,10 @@ public class DependencyManager {
    * 
    * @throws IllegalArgumentException if component is null
    * @throws IllegalArgumentException if dependencies is null
-   * @throws DependsOnException       if input would result in circular dependencies
+   * @throws DependsOnException       if input would result in circular dependencies (direct or transitive)
    */
   public void depend(String component, Set<String> dependencies) {
+    long start = metrics != null ? started() : 0;
 
     // validate
     if (component==null)
@@ -63,19 +130,114 @@ public class DependencyManager {
     if (dependencies==null)
       throw new IllegalArgumentException("dependencies is null");
 
-    // validate (circular dependency)
+    // add static dependency
+    int componentId = dependInternal(component, dependencies);
+    if (componentId != -1)
+      closureCache.invalidate(componentId);
+
+    if (metrics != null)
+      finished(metrics.depend, start);
+  }
+
+  /**
+   * dependAll
+   * 
+   * same as calling depend() for each entry in iteration order, but the cached closures are
+   * invalidated once at the end instead of after every entry
+   * 
+   * stops at the first entry that would result in circular dependencies.. the entries before it stay added
+   * 
+   * @param dependencies component -> set of dependencies
+   * 
+   * @throws IllegalArgumentException if dependencies is null or has a null component or set of dependencies
+   * @throws DependsOnException       if an entry would result in circular dependencies (direct or transitive)
+   */
+  public void dependAll(Map<String/*component*/, ? extends Set<String>> dependencies) {
+    long start = metrics != null ? started() : 0;
+
+    // validate
+    if (dependencies==null)
+      throw new IllegalArgumentException("dependencies is null");
+    for (Map.Entry<String, ? extends Set<String>> entry : dependencies.entrySet()) {
+      if (entry.getKey()==null)
+        throw new IllegalArgumentException("component is null");
+      if (entry.getValue()==null)
+        throw new IllegalArgumentException("dependencies is null");
+    }
+
+    // add static dependencies
+    IntList modified = new IntList();
+    try {
+      for (Map.Entry<String, ? extends Set<String>> entry : dependencies.entrySet()) {
+        int componentId = dependInternal(entry.getKey(), entry.getValue());
+        if (componentId != -1)
+          modified.add(componentId);
+      }
+    } finally {
+      closureCache.invalidateAll(modified);
+    }
+
+    if (metrics != null)
+      finished(metrics.depend, start);
+  }
+
+  /**
+   * validateDepend
+   * 
+   * throws what depend() would throw for circular dependencies w/o changing anything
+   * 
+   * @param component
+   * @param dependencies
+   * @throws DependsOnException if input would result in circular dependencies (direct or transitive)
+   */
+  void validateDepend(String component, Set<String> dependencies) {
+    int componentId = graph.id(component);
     for (String dependency : dependencies) {
-      if (graph.hasEdgeConnecting(dependency, component))
-        throw new DependsOnException(component, dependency);
+      if (component.equals(dependency))
+        throw new DependsOnException(component, dependency, Arrays.asList(component, dependency));
+      int dependencyId = graph.id(dependency);
+      if (componentId != -1 && dependencyId != -1) { // else new component(s).. can't be circular
+        int[] cycle = topologicalOrder.findCycle(componentId, dependencyId);
+        if (cycle != null)
+          throw new DependsOnException(component, dependency, names(cycle));
+      }
     }
+  }
+
+  /**
+   * dependInternal
+   * 
+   * validates, notifies listeners and adds the static dependencies.. the caller invalidates the cached closures
+   * 
+   * @param component
+   * @param dependencies
+   * @return id of component if any dependency was added else -1
+   */
+  private int dependInternal(String component, Set<String> dependencies) {
+
+    // validate (circular dependency)
+    validateDepend(component, dependencies);
 
     // notify listeners
-    eventBus.post(new DependEvent(component, dependencies));
+    publish(new DependEvent(component, dependencies));
 
     // add static dependency
-    graph.addNode(component);
-    for (String dependency : dependencies)
-      graph.putEdge(component, dependency);
+    int componentId = graph.intern(component);
+    boolean modified = false;
+    for (String dependency : dependencies) {
+      int dependencyId = graph.intern(dependency);
+      if (graph.addEdge(componentId, dependencyId)) {
+        if (transaction != null)
+          transaction.journal.edge(componentId, dependencyId);
+        topologicalOrder.addEdge(componentId, dependencyId);
+        reachabilityIndex.addEdge(componentId, dependencyId);
+        // an installed component now needs its new dependencies too
+        state.addEdge(componentId, dependencyId);
+        modified = true;
+      }
+    }
+    applied();
+    return modified ? componentId : -1;
   }
 
   /**
@@ -95,14 +257,138 @@ public class DependencyManager {
     if (dependencies == null)
       throw new IllegalArgumentException("dependencies is null");
   
+    int componentId = graph.id(component);
     for (String dependency : dependencies) {
-      if (!graph.hasEdgeConnecting(component, dependency))
+      int dependencyId = graph.id(dependency);
+      if (componentId == -1 || dependencyId == -1 || !graph.hasEdge(componentId, dependencyId))
         return false;
     }
 
     return true;
   }
 
+  /**
+   * dependencies - query static dependencies
+   * 
+   * @param component
+   * @return everything component (transitively) depends on, in the order install() would install them
+   * @throws IllegalArgumentException if component is null
+   */
+  public Set<String> dependencies(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    Set<String> dependencies = new LinkedHashSet<>();
+    int id = graph.id(component);
+    if (id != -1) {
+      int[] closure = closureCache.closure(id);
+      for (int i = 0; i < closure.length - 1; ++i) // w/o component itself, which is last
+        dependencies.add(graph.name(closure[i]));
+    }
+    return dependencies;
+  }
+
+  /**
+   * dependents - query static dependencies
+   * 
+   * @param component
+   * @return everything that (transitively) depends on component, every dependent before its own
+   *         dependencies (topological order)
+   * @throws IllegalArgumentException if component is null
+   */
+  public Set<String> dependents(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    Set<String> dependents = new LinkedHashSet<>();
+    int id = graph.id(component);
+    if (id != -1) {
+      BitSet ids = reachabilityIndex.dependents(id);
+      long[] sorted = new long[ids.cardinality()];
+      int i = 0;
+      for (int dependent = ids.nextSetBit(0); dependent >= 0; dependent = ids.nextSetBit(dependent + 1))
+        sorted[i++] = (long) topologicalOrder.ord(dependent) << 32 | dependent;
+      Arrays.sort(sorted);
+      for (long dependent : sorted)
+        dependents.add(graph.name((int) dependent));
+    }
+    return dependents;
+  }
+
+  /**
+   * dependsOn - query static dependencies
+   * 
+   * transitive version of isdepend()
+   * 
+   * @param component
+   * @param dependency
+   * @return true if component (transitively) depends on dependency
+   * @throws IllegalArgumentException if component or dependency is null
+   */
+  public boolean dependsOn(String component, String dependency) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependency == null)
+      throw new IllegalArgumentException("dependency is null");
+
+    int componentId = graph.id(component);
+    int dependencyId = graph.id(dependency);
+    return componentId != -1 && dependencyId != -1 && reachabilityIndex.reaches(componentId, dependencyId);
+  }
+
+  /**
+   * depth - query static dependencies
+   * 
+   * @param component
+   * @return length of the longest chain of dependencies below component.. 0 if it has none
+   * @throws IllegalArgumentException if component is null
+   */
+  public int depth(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    int id = graph.id(component);
+    return id == -1 ? 0 : reachabilityIndex.dependencies(id).depth;
+  }
+
+  /**
+   * path - query static dependencies
+   * 
+   * @param component
+   * @param dependency
+   * @return a shortest chain [component, ..., dependency] of direct dependencies or an empty list if
+   *         component doesn't depend on dependency
+   * @throws IllegalArgumentException if component or dependency is null
+   */
+  public List<String> path(String component, String dependency) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependency == null)
+      throw new IllegalArgumentException("dependency is null");
+
+    List<String> path = new ArrayList<>();
+    int componentId = graph.id(component);
+    int dependencyId = graph.id(dependency);
+    if (componentId != -1 && dependencyId != -1) {
+      int[] ids = reachabilityIndex.path(componentId, dependencyId);
+      if (ids != null) {
+        for (int id : ids)
+          path.add(graph.name(id));
+      }
+    }
+    return path;
+  }
+
   /**
    * install
    * 
@@ -115,60 +401,373 @@ public class DependencyManager {
    */
   public Set<String> install(String componentToBeInstalled) {
     // log.log("install", componentToBeInstalled);
+    long start = metrics != null ? started() : 0;
 
     // validate
     if (componentToBeInstalled==null)
       throw new IllegalArgumentException("componentToBeRemoved is null");
 
     // validate
-    if (installedComponents.contains(componentToBeInstalled))
+    if (state.isInstalled(graph.id(componentToBeInstalled)))
       throw new AlreadyInstalledException(componentToBeInstalled);
 
     // install
     //###TODO post install event here
-    explicitComponents.add(componentToBeInstalled);
-    graph.addNode(componentToBeInstalled);
+    int id = graph.intern(componentToBeInstalled);
+    setExplicit(id, true);
 
-    List<String> componentsToBeInstalled = new ArrayList<>(Graphs.reachableNodes(graph, componentToBeInstalled));
-
-    Collections.reverse(componentsToBeInstalled);
+    // dependencies first
+    int[] componentsToBeInstalled = closureCache.closure(id);
+    if (metrics != null)
+      metrics.closure.record(componentsToBeInstalled.length);
 
     Set<String> installed = new LinkedHashSet<>();
 
-    for (String component : componentsToBeInstalled) {
-      if (!installedComponents.contains(component)) { // skip self
+    for (int component : componentsToBeInstalled) {
+      if (!state.isInstalled(component)) { // skip self
         // notify listeners
-        eventBus.post(new InstallingEvent(component));
+        if (dispatcher == null)
+          publish(new InstallingEvent(graph.name(component)));
 
         // install component
-        installedComponents.add(component);
+        installComponent(component);
 
         // add to result
-        installed.add(component);
+        installed.add(graph.name(component));
       }
     }
 
+    applied();
+
+    // notify listeners
+    if (dispatcher != null)
+      publish(new InstallingBatchEvent(installed));
+
+    if (metrics != null)
+      finished(metrics.install, start);
+
     return installed;
   }
 
+  /**
+   * installAll
+   * 
+   * same as calling install() for each component in iteration order, but the union of their closures
+   * is computed in one traversal and installed in one pass.. w/asynchronous event delivery one batch
+   * event is dispatched for the whole call
+   * 
+   * stops at the first component that is already installed (possibly by an earlier component).. the
+   * components before it stay installed
+   * 
+   * @param componentsToBeInstalled
+   * @return for each component the set of installed components in the order they were installed
+   * @throws IllegalArgumentException if componentsToBeInstalled is null or contains null
+   * @throws AlreadyInstalledException
+   */
+  public List<Set<String>> installAll(Collection<String> componentsToBeInstalled) {
+    long start = metrics != null ? started() : 0;
+
+    // validate
+    if (componentsToBeInstalled==null)
+      throw new IllegalArgumentException("componentsToBeInstalled is null");
+    for (String component : componentsToBeInstalled) {
+      if (component==null)
+        throw new IllegalArgumentException("componentsToBeInstalled contains null");
+    }
+
+    // validate.. up to the first component that is already installed
+    String alreadyInstalled = null;
+    IntList ids = new IntList(componentsToBeInstalled.size());
+    for (String component : componentsToBeInstalled) {
+      if (state.isInstalled(graph.id(component))) {
+        alreadyInstalled = component;
+        break;
+      }
+      ids.add(graph.intern(component));
+    }
+
+    // dependencies first.. ends[i] is where the components to be installed for ids[i] end
+    IntList componentsToBeInstalledInOrder = new IntList();
+    IntList ends = new IntList(ids.size());
+    closureCache.closureAll(ids.toArray(), componentsToBeInstalledInOrder, ends);
+    if (metrics != null)
+      metrics.closure.record(componentsToBeInstalledInOrder.size());
+
+    List<Set<String>> result = new ArrayList<>(ids.size());
+    Set<String> batch = dispatcher == null ? null : new LinkedHashSet<>();
+
+    int position = 0;
+    for (int i = 0; i < ids.size(); ++i) {
+      int id = ids.get(i);
+      if (position == ends.get(i)) {
+        // reached by an earlier component so it's installed by now
+        alreadyInstalled = graph.name(id);
+        break;
+      }
+
+      setExplicit(id, true);
+
+      Set<String> installed = new LinkedHashSet<>();
+      for (; position < ends.get(i); ++position) {
+        int component = componentsToBeInstalledInOrder.get(position);
+        if (!state.isInstalled(component)) {
+          // notify listeners
+          if (dispatcher == null)
+            publish(new InstallingEvent(graph.name(component)));
+
+          // install component
+          installComponent(component);
+
+          // add to result
+          installed.add(graph.name(component));
+        }
+      }
+      applied();
+      result.add(installed);
+      if (batch != null)
+        batch.addAll(installed);
+    }
+
+    // notify listeners
+    if (dispatcher != null)
+      publish(new InstallingBatchEvent(batch));
+
+    if (alreadyInstalled != null)
+      throw new AlreadyInstalledException(alreadyInstalled);
+
+    if (metrics != null)
+      finished(metrics.install, start);
+
+    return result;
+  }
+
   /**
    * remove
    * 
    * remove component and non-explicitly-installed dependencies from installed components
    * 
+   * a component is still needed by the installed components that directly depend on it.. dependents
+   * that only reach it through a component that isn't installed don't count, which can only happen
+   * after depend() added dependencies to an installed component (see README, KNOWN ISSUES)
+   * 
    * @param componentToBeRemoved
    * @return set of removed components in the order they were removed
    * @throws IllegalArgumentException
-   * @throws StillNeededException
+   * @throws StillNeededByException
    */
   public Set<String> remove(String componentToBeRemoved) {
     // log.log("remove", componentToBeRemoved);
+    long start = metrics != null ? started() : 0;
 
     // validate
     validateInternal(componentToBeRemoved);
     
     // remove
-    return removeInternal(componentToBeRemoved);
+    Set<String> removed = removeInternal(componentToBeRemoved);
+
+    // notify listeners
+    if (dispatcher != null)
+      publish(new RemovingBatchEvent(removed));
+
+    if (metrics != null)
+      finished(metrics.remove, start);
+
+    return removed;
+  }
+
+  /**
+   * removeAll
+   * 
+   * same as calling remove() for each component in iteration order.. w/asynchronous event delivery
+   * one batch event is dispatched for the whole call
+   * 
+   * stops at the first component that can't be removed.. the components before it stay removed
+   * 
+   * @param componentsToBeRemoved
+   * @return for each component the set of removed components in the order they were removed
+   * @throws IllegalArgumentException if componentsToBeRemoved is null or contains null
+   * @throws NotInstalledException
+   * @throws StillNeededByException
+   */
+  public List<Set<String>> removeAll(Collection<String> componentsToBeRemoved) {
+    long start = metrics != null ? started() : 0;
+
+    // validate
+    if (componentsToBeRemoved==null)
+      throw new IllegalArgumentException("componentsToBeRemoved is null");
+    for (String component : componentsToBeRemoved) {
+      if (component==null)
+        throw new IllegalArgumentException("componentsToBeRemoved contains null");
+    }
+
+    List<Set<String>> result = new ArrayList<>(componentsToBeRemoved.size());
+    Set<String> batch = dispatcher == null ? null : new LinkedHashSet<>();
+    try {
+      for (String componentToBeRemoved : componentsToBeRemoved) {
+        validateInternal(componentToBeRemoved);
+        Set<String> removed = removeInternal(componentToBeRemoved);
+        result.add(removed);
+        if (batch != null)
+          batch.addAll(removed);
+      }
+    } finally {
+      // notify listeners.. even if a component couldn't be removed
+      if (dispatcher != null)
+        publish(new RemovingBatchEvent(batch));
+    }
+
+    if (metrics != null)
+      finished(metrics.remove, start);
+
+    return result;
+  }
+
+  /**
+   * planInstall
+   * 
+   * dry run of install().. same traversal (and closure cache) as install(), but nothing is modified,
+   * unknown components are not interned and no events are posted
+   * 
+   * use ConcurrentDependencyManager or a snapshot() to plan concurrently w/other readers
+   * 
+   * @param componentToBeInstalled
+   * @return set of components install() would install, in the order it would install them
+   * @throws IllegalArgumentException
+   * @throws AlreadyInstalledException
+   */
+  public Set<String> planInstall(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled==null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+    int id = graph.id(componentToBeInstalled);
+    if (state.isInstalled(id))
+      throw new AlreadyInstalledException(componentToBeInstalled);
+
+    Set<String> plan = new LinkedHashSet<>();
+    if (id == -1) {
+      plan.add(componentToBeInstalled); // unknown component has no dependencies
+      return plan;
+    }
+
+    for (int component : closureCache.closure(id)) {
+      if (!state.isInstalled(component))
+        plan.add(graph.name(component));
+    }
+
+    return plan;
+  }
+
+  /**
+   * installPlan
+   * 
+   * same validation as install().. interns componentToBeInstalled but doesn't install anything
+   * 
+   * @param componentToBeInstalled
+   * @return ids install() would install, dependencies first.. componentToBeInstalled is last
+   * @throws IllegalArgumentException
+   * @throws AlreadyInstalledException
+   */
+  int[] installPlan(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled==null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+    if (state.isInstalled(graph.id(componentToBeInstalled)))
+      throw new AlreadyInstalledException(componentToBeInstalled);
+
+    int[] closure = closureCache.closure(graph.intern(componentToBeInstalled));
+    IntList plan = new IntList(closure.length);
+    for (int component : closure) {
+      if (!state.isInstalled(component))
+        plan.add(component);
+    }
+    return plan.toArray();
+  }
+
+  /**
+   * installScheduled
+   * 
+   * records one component of an installPlan() as installed.. its dependencies must be installed
+   * 
+   * @param id
+   * @param explicit true for the component the plan was made for
+   */
+  void installScheduled(int id, boolean explicit) {
+    if (explicit)
+      setExplicit(id, true);
+
+    // notify listeners
+    if (dispatcher == null)
+      publish(new InstallingEvent(graph.name(id)));
+
+    // install component
+    installComponent(id);
+  }
+
+  /**
+   * installOne
+   * 
+   * installs componentToBeInstalled alone (none of its dependencies), e.g., to load a saved install
+   * state in its original installation order.. end a run of these w/installScheduledDone()
+   * 
+   * @param componentToBeInstalled
+   * @param explicit
+   * @throws AlreadyInstalledException
+   * @throws IllegalStateException     if a dependency of componentToBeInstalled is not installed
+   */
+  void installOne(String componentToBeInstalled, boolean explicit) {
+
+    // validate
+    int id = graph.id(componentToBeInstalled);
+    if (state.isInstalled(id))
+      throw new AlreadyInstalledException(componentToBeInstalled);
+    for (int i = 0; id != -1 && i < graph.successorCount(id); ++i) {
+      int dependency = graph.successor(id, i);
+      if (!state.isInstalled(dependency))
+        throw new IllegalStateException(String.format("%s depends on %s, which is not installed", componentToBeInstalled, graph.name(dependency)));
+    }
+
+    installScheduled(graph.intern(componentToBeInstalled), explicit);
+  }
+
+  /**
+   * installScheduledDone
+   * 
+   * ends an installPlan() that was recorded w/installScheduled()
+   * 
+   * @param installed set of installed components in the order they were installed
+   */
+  void installScheduledDone(Set<String> installed) {
+    if (!installed.isEmpty())
+      applied();
+
+    // notify listeners
+    if (dispatcher != null)
+      publish(new InstallingBatchEvent(installed));
+  }
+
+  /**
+   * planRemove
+   * 
+   * dry run of remove().. same validation and cascade as remove(), but nothing is modified and no
+   * events are posted
+   * 
+   * @param componentToBeRemoved
+   * @return set of components remove() would remove, in the order it would remove them
+   * @throws IllegalArgumentException
+   * @throws NotInstalledException
+   * @throws StillNeededByException
+   */
+  public Set<String> planRemove(String componentToBeRemoved) {
+
+    // validate
+    validateInternal(componentToBeRemoved);
+
+    Set<String> plan = new LinkedHashSet<>();
+    for (int component : state.orphans(graph.id(componentToBeRemoved)))
+      plan.add(graph.name(component));
+    return plan;
   }
 
   /**
@@ -182,21 +781,24 @@ public class DependencyManager {
       throw new IllegalArgumentException("componentToBeRemoved is null");
 
     // validate 2
-    if (!installedComponents.contains(componentToBeRemoved))
+    int id = graph.id(componentToBeRemoved);
+    if (!state.isInstalled(id))
       throw new NotInstalledException(componentToBeRemoved);
   
     // validate 3
-    Set<String/*installedComponent*/> stillNeededBy = new LinkedHashSet<>();
-
-    for (String installedComponent : installedComponents) {
-      if (!installedComponent.equals(componentToBeRemoved)) { // skip self
-        if (Graphs.reachableNodes(graph, installedComponent).contains(componentToBeRemoved))
-          stillNeededBy.add(installedComponent);
+    if (state.neededBy(id) > 0) {
+      List<Integer> dependents = new ArrayList<>();
+      for (int i = 0; i < graph.predecessorCount(id); ++i) {
+        int dependent = graph.predecessor(id, i);
+        if (state.isInstalled(dependent))
+          dependents.add(dependent);
       }
-    }
-
-    if (!stillNeededBy.isEmpty())
+      dependents.sort(Comparator.comparingLong(state::stamp)); // installation order
+      Set<String/*installedComponent*/> stillNeededBy = new LinkedHashSet<>();
+      for (int dependent : dependents)
+        stillNeededBy.add(graph.name(dependent));
       throw new StillNeededByException(componentToBeRemoved, stillNeededBy);
+    }
   }
 
   /**
@@ -213,46 +815,413 @@ public class DependencyManager {
     Set<String> removed = new LinkedHashSet<>();
 
     // STEP 1 remove component
-    explicitComponents.remove(componentToBeRemoved);
-
-    // STEP 2 auto remove implicit dependencies
-    for (String component : Graphs.reachableNodes(graph, componentToBeRemoved)) {
-      if (!explicitComponents.contains(component)) { // skip self
-        boolean dependedOn = false;
-        for (String dependency : Graphs.reachableNodes(Graphs.transpose(graph), component)) {
-          if (!dependency.equals(component)) { // skip self
-            if (installedComponents.contains(dependency))
-              dependedOn = true;
-          }
-        }
-        if (!dependedOn) {
-          // notify listeners
-          eventBus.post(new RemovingEvent(component));
+    int id = graph.id(componentToBeRemoved);
+    setExplicit(id, false);
 
-          // remove component
-          installedComponents.remove(component);
+    // STEP 2 auto remove implicit dependencies that are no longer needed.. dependents first
+    for (int component : state.orphans(id)) {
+      // notify listeners
+      if (dispatcher == null)
+        publish(new RemovingEvent(graph.name(component)));
 
-          // add to result
-          removed.add(component);
-        }
-      }
+      // remove component
+      removeComponent(component);
+
+      // add to result
+      removed.add(graph.name(component));
     }
 
+    applied();
+
     return removed;
   }
 
+  /**
+   * begin
+   * 
+   * starts a transaction.. see Transaction
+   * 
+   * @return the transaction
+   * @throws IllegalStateException if a transaction is already open
+   */
+  public Transaction begin() {
+    if (transaction != null)
+      throw new IllegalStateException("transaction in progress");
+    return transaction = new Transaction(this, new Journal(graph, state), operation);
+  }
+
+  /**
+   * transact
+   * 
+   * runs work in a transaction.. commits if work returns normally and rolls back if it throws
+   * 
+   * @param work
+   * @throws IllegalArgumentException if work is null
+   * @throws IllegalStateException if a transaction is already open
+   */
+  public void transact(Consumer<Transaction> work) {
+
+    // validate
+    if (work==null)
+      throw new IllegalArgumentException("work is null");
+
+    Transaction tx = begin();
+    try {
+      work.accept(tx);
+      if (tx.isOpen())
+        tx.commit();
+    } finally {
+      // whatever went wrong, including an error halfway through a mutation
+      tx.close();
+    }
+  }
+
+  /**
+   * commit
+   * 
+   * @param tx
+   */
+  void commit(Transaction tx) {
+    transaction = null;
+    for (Object event : tx.events)
+      post(event);
+  }
+
+  /**
+   * rollback
+   * 
+   * @param tx
+   */
+  void rollback(Transaction tx) {
+    transaction = null;
+    tx.journal.rollback();
+    // closures computed during the transaction may include undone edges
+    closureCache.clear();
+    reachabilityIndex.clear();
+    // the operations never happened.. the slots they overwrote are lost, historyStart already
+    // accounts for that, but the slot of the current operation may be one of them
+    operation = tx.operation;
+    if (history.length > 0) {
+      history[(int) (operation % history.length)] = state.freeze();
+      historyStart = Math.min(historyStart, operation);
+    }
+  }
+
+  /**
+   * operation
+   * 
+   * every successful depend, install and remove (and every component of a bulk operation) is one operation
+   * 
+   * @return number of operations applied so far
+   */
+  public long operation() {
+    return operation;
+  }
+
+  /**
+   * retainHistory
+   * 
+   * keeps the install state after each of the last operations operations from now on, for listAsOf()..
+   * versions share structure so each one costs O(log n) memory for the components it changed
+   * 
+   * @param operations 0 to keep none
+   * @throws IllegalArgumentException if operations is negative
+   */
+  public void retainHistory(int operations) {
+
+    // validate
+    if (operations < 0)
+      throw new IllegalArgumentException("operations is negative");
+
+    history = new FrozenInstallState[operations];
+    historyStart = operation;
+    if (operations > 0)
+      history[(int) (operation % operations)] = state.freeze();
+  }
+
+  /**
+   * listAsOf
+   * 
+   * time travel
+   * 
+   * @param operation
+   * @return installed components in installation order right after operation
+   * @throws IllegalArgumentException if operation is neither the current one nor retained (see retainHistory())
+   */
+  public Set<String> listAsOf(long operation) {
+    FrozenInstallState version;
+    if (operation == this.operation)
+      version = state.freeze();
+    else if (operation >= historyStart && operation < this.operation && history.length > 0)
+      version = history[(int) (operation % history.length)];
+    else
+      throw new IllegalArgumentException(String.format("operation %d is not retained", operation));
+
+    Set<String> installedComponents = new LinkedHashSet<>();
+    for (PersistentLongMap.Cursor<Integer> cursor = version.cursor(); cursor.next();)
+      installedComponents.add(graph.name(cursor.value()));
+    return Collections.unmodifiableSet(installedComponents);
+  }
+
+  /**
+   * setMetrics
+   * 
+   * opt-in instrumentation.. see Metrics for what is recorded
+   * 
+   * @param metrics where to record or null to stop recording
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * metrics
+   * 
+   * @return where operations are recorded or null if they aren't
+   */
+  public Metrics metrics() {
+    return metrics;
+  }
+
+  /**
+   * started
+   * 
+   * start of an instrumented operation
+   * 
+   * @return start time in ns
+   */
+  private long started() {
+    nodesAtStart = closureCache.nodes + state.traversedNodes();
+    edgesAtStart = closureCache.edges + state.traversedEdges();
+    return System.nanoTime();
+  }
+
+  /**
+   * finished
+   * 
+   * end of an instrumented operation that succeeded
+   * 
+   * @param latency
+   * @param start see started()
+   */
+  private void finished(Histogram latency, long start) {
+    latency.record(System.nanoTime() - start);
+    metrics.traversedNodes.add(closureCache.nodes + state.traversedNodes() - nodesAtStart);
+    metrics.traversedEdges.add(closureCache.edges + state.traversedEdges() - edgesAtStart);
+  }
+
+  /**
+   * applied
+   * 
+   * counts an operation and keeps its install state if history is retained
+   */
+  private void applied() {
+    ++operation;
+    if (history.length > 0) {
+      history[(int) (operation % history.length)] = state.freeze();
+      historyStart = Math.max(historyStart, operation - history.length + 1);
+    }
+  }
+
+  /**
+   * setExplicit
+   * 
+   * @param id
+   * @param value
+   */
+  private void setExplicit(int id, boolean value) {
+    if (transaction != null)
+      transaction.journal.explicit(id, state.isExplicit(id));
+    state.setExplicit(id, value);
+  }
+
+  /**
+   * installComponent
+   * 
+   * @param id
+   */
+  private void installComponent(int id) {
+    state.install(id);
+    if (transaction != null)
+      transaction.journal.install(id);
+  }
+
+  /**
+   * removeComponent
+   * 
+   * @param id
+   */
+  private void removeComponent(int id) {
+    if (transaction != null)
+      transaction.journal.remove(id, state.prev(id), state.stamp(id));
+    state.remove(id);
+  }
+
+  /**
+   * publish
+   * 
+   * posts event or holds it back until the open transaction commits
+   * 
+   * @param event
+   */
+  private void publish(Object event) {
+    if (transaction != null)
+      transaction.events.add(event);
+    else
+      post(event);
+  }
+
+  /**
+   * post
+   * 
+   * @param event
+   */
+  void post(Object event) {
+    Metrics metrics = this.metrics; // may be called off the owning thread, see ConcurrentDependencyManager.list()
+    long start = metrics != null ? System.nanoTime() : 0;
+
+    if (dispatcher == null)
+      eventBus.post(event);
+    else
+      dispatcher.dispatch(event);
+
+    if (metrics != null) {
+      metrics.posted.increment();
+      metrics.event(event.getClass()).record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * absorb
+   * 
+   * moves the static dependencies and install state of other into this dependency manager w/o posting
+   * any events.. the two must not have any components in common and must share a clock
+   * 
+   * other must not be used afterwards
+   * 
+   * @param other
+   */
+  void absorb(DependencyManager other) {
+    absorb(other.graph, other.state.order(), other.state::stamps, other.state::isExplicit);
+  }
+
+  /**
+   * absorb
+   * 
+   * restores snapshot into this dependency manager w/o posting any events.. the two must not have any
+   * components in common and later install stamps must be greater than the snapshot's
+   * 
+   * @param snapshot
+   */
+  void absorb(DependencyManagerSnapshot snapshot) {
+    absorb(snapshot.graph(), snapshot.order(), order -> snapshot.stamps(), snapshot::isExplicit);
+  }
+
+  /**
+   * absorb
+   * 
+   * @param otherGraph
+   * @param order installed ids of otherGraph in installation order
+   * @param stamps order -> install stamps parallel to order
+   * @param explicit
+   */
+  private void absorb(ComponentGraph otherGraph, int[] order, Function<int[], long[]> stamps, IntPredicate explicit) {
+
+    if (transaction != null)
+      throw new IllegalStateException("transaction in progress");
+
+    // other id -> id.. interned in topological order so the copied edges never reorder topologicalOrder
+    int[] ids = new int[otherGraph.size()];
+    for (int id : TopologicalOrder.sort(otherGraph))
+      ids[id] = graph.intern(otherGraph.name(id));
+
+    // the two graphs are disjoint so this can't create a cycle
+    for (int id = 0; id < ids.length; ++id) {
+      for (int i = 0; i < otherGraph.successorCount(id); ++i) {
+        int dependency = ids[otherGraph.successor(id, i)];
+        graph.addEdge(ids[id], dependency);
+        topologicalOrder.addEdge(ids[id], dependency);
+      }
+    }
+
+    // install state.. merged by stamp
+    int[] installOrder = new int[order.length];
+    for (int i = 0; i < order.length; ++i)
+      installOrder[i] = ids[order[i]];
+    state.installAll(installOrder, stamps.apply(order));
+    for (int id = 0; id < ids.length; ++id)
+      state.setExplicit(ids[id], explicit.test(id));
+  }
+
+  ComponentGraph graph() {
+    return graph;
+  }
+
+  /**
+   * snapshot
+   * 
+   * @return immutable snapshot of the current state
+   */
+  public DependencyManagerSnapshot snapshot() {
+    return snapshot(null);
+  }
+
+  /**
+   * snapshot
+   * 
+   * @param previous previous snapshot or null.. parts that did not change since are reused
+   * @return immutable snapshot of the current state
+   */
+  DependencyManagerSnapshot snapshot(DependencyManagerSnapshot previous) {
+    // frozen graphs share adjacency arrays that a rollback could reuse
+    if (transaction != null)
+      throw new IllegalStateException("transaction in progress");
+    ComponentGraph frozenGraph = previous != null && previous.graph().version() == graph.version() ? previous.graph() : graph.freeze();
+    if (previous != null && previous.graph() == frozenGraph && previous.version() == state.version())
+      return previous; // nothing changed
+    return new DependencyManagerSnapshot(frozenGraph, state.freeze());
+  }
+
+  /**
+   * names
+   * 
+   * @param ids
+   * @return component names of ids
+   */
+  private List<String> names(int[] ids) {
+    List<String> names = new ArrayList<>(ids.length);
+    for (int id : ids)
+      names.add(graph.name(id));
+    return names;
+  }
+
   /**
    * list
    * 
-   * returns sorted set of installed components
+   * returns the installed components in installation order as an immutable view of the current
+   * install state.. O(1), later changes don't show through and the view can be read from any thread
    * 
-   * @return sorted set of installed components
+   * @return immutable set of installed components in installation order
    */
   public Set<String> list() {
+    long start = metrics != null ? started() : 0;
+    Set<String> installedComponents;
+    if (transaction != null) {
+      // a rollback truncates the ids interned since the transaction started.. copy
+      installedComponents = Collections.unmodifiableSet(new LinkedHashSet<>(new InstalledView(graph, state.freeze())));
+    } else {
+      if (listing == null || listing.state.version != state.version())
+        listing = new InstalledView(graph, state.freeze());
+      installedComponents = listing;
+    }
+
     // notify listeners
-    eventBus.post(new ListingEvent(installedComponents));
+    publish(new ListingEvent(installedComponents));
+
+    if (metrics != null)
+      finished(metrics.list, start);
 
     return installedComponents;
   }
 
-}
\ No newline at end of file
+}
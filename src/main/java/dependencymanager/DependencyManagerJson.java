@@ -0,0 +1,226 @@
+package dependencymanager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.DependsOnException;
+
+/**
+ * streaming json import/export of static dependencies and install state
+ * 
+ * <pre>
+ * {
+ *   "installed": [{"component": "netcard"}, {"component": "tcpip"}, {"component": "html"}, {"component": "browser", "explicit": true}],
+ *   "dependencies": {"browser": ["tcpip", "html"], "tcpip": ["netcard"], "netcard": []}
+ * }
+ * </pre>
+ * 
+ * dependencies: component -> its direct dependencies, in declaration order.. a component w/o
+ * dependencies that nothing depends on is listed w/[] so it isn't lost
+ * 
+ * installed: the installed components in installation order, explicitly installed ones flagged
+ * 
+ * the members are applied in the order they appear, like the equivalent depend()/install calls: a
+ * component listed as installed must come after its dependencies known at that point.. write() puts
+ * "installed" first, since dependencies added after an install (see depend()) may legitimately
+ * leave a dependency of an installed component uninstalled
+ * 
+ * both directions go through gson's JsonReader/JsonWriter token by token, so a manifest is never
+ * held in memory as a whole.. read() hands dependencies to dependAll() and installed components to
+ * the dependency manager in chunks of CHUNK_SIZE
+ */
+public final class DependencyManagerJson {
+
+  // entries per dependAll()/install batch
+  private static final int CHUNK_SIZE = 4096;
+
+  private DependencyManagerJson() {
+  }
+
+  /**
+   * read
+   * 
+   * loads a manifest into dependencyManager, posting the same events as the equivalent depend() calls
+   * and installs.. installed components are recorded as installed exactly as listed (w/o pulling in
+   * their dependencies) so the installation order and explicit flags are the ones that were written
+   * 
+   * top-level members other than "dependencies" and "installed" are skipped and either may be
+   * missing.. stops at the first error, the chunks loaded before it stay loaded (read into a new
+   * dependency manager or inside a transaction to get all or nothing)
+   * 
+   * in is not closed
+   * 
+   * @param in
+   * @param dependencyManager
+   * @throws IOException              if in is not a well-formed manifest or lists a component as
+   *                                  installed before one of its dependencies
+   * @throws DependsOnException       if the dependencies are circular
+   * @throws AlreadyInstalledException if a component is listed as installed twice or already was
+   */
+  public static void read(Reader in, DependencyManager dependencyManager) throws IOException {
+
+    // validate
+    if (in == null)
+      throw new IllegalArgumentException("in is null");
+    if (dependencyManager == null)
+      throw new IllegalArgumentException("dependencyManager is null");
+
+    JsonReader json = new JsonReader(in);
+    try {
+      json.beginObject();
+      while (json.hasNext()) {
+        switch (json.nextName()) {
+          case "dependencies":
+            readDependencies(json, dependencyManager);
+            break;
+          case "installed":
+            readInstalled(json, dependencyManager);
+            break;
+          default:
+            json.skipValue();
+        }
+      }
+      json.endObject();
+    } catch (IllegalStateException e) { // unexpected token
+      throw new IOException(e.getMessage(), e);
+    }
+  }
+
+  private static void readDependencies(JsonReader json, DependencyManager dependencyManager) throws IOException {
+    Map<String/*component*/, Set<String>> chunk = new LinkedHashMap<>();
+    json.beginObject();
+    while (json.hasNext()) {
+      String component = json.nextName();
+      Set<String> dependencies = new LinkedHashSet<>(); // declaration order
+      json.beginArray();
+      while (json.hasNext())
+        dependencies.add(json.nextString());
+      json.endArray();
+      Set<String> previous = chunk.put(component, dependencies);
+      if (previous != null) { // duplicate key.. both count
+        chunk.put(component, previous);
+        previous.addAll(dependencies);
+      }
+      if (chunk.size() == CHUNK_SIZE) {
+        dependencyManager.dependAll(chunk);
+        chunk.clear();
+      }
+    }
+    json.endObject();
+    dependencyManager.dependAll(chunk);
+  }
+
+  private static void readInstalled(JsonReader json, DependencyManager dependencyManager) throws IOException {
+    Set<String/*component*/> chunk = new LinkedHashSet<>();
+    json.beginArray();
+    try {
+      while (json.hasNext()) {
+        String component = null;
+        boolean explicit = false;
+        json.beginObject();
+        while (json.hasNext()) {
+          switch (json.nextName()) {
+            case "component":
+              component = json.nextString();
+              break;
+            case "explicit":
+              explicit = json.nextBoolean();
+              break;
+            default:
+              json.skipValue();
+          }
+        }
+        json.endObject();
+        if (component == null)
+          throw new IOException(String.format("installed component w/o name at %s", json.getPath()));
+
+        dependencyManager.installOne(component, explicit);
+        chunk.add(component);
+        if (chunk.size() == CHUNK_SIZE) {
+          dependencyManager.installScheduledDone(chunk);
+          chunk = new LinkedHashSet<>(); // handed to the batch event
+        }
+      }
+      json.endArray();
+    } finally {
+      if (!chunk.isEmpty())
+        dependencyManager.installScheduledDone(chunk);
+    }
+  }
+
+  /**
+   * write
+   * 
+   * @param dependencyManager
+   * @param out not closed, flushed
+   * @throws IOException
+   * @see #write(DependencyManagerSnapshot, Writer)
+   */
+  public static void write(DependencyManager dependencyManager, Writer out) throws IOException {
+
+    // validate
+    if (dependencyManager == null)
+      throw new IllegalArgumentException("dependencyManager is null");
+
+    write(dependencyManager.snapshot(), out);
+  }
+
+  /**
+   * write
+   * 
+   * writes snapshot as a manifest that read() loads back to the same static dependencies and install
+   * state.. e.g., ConcurrentDependencyManager.snapshot() can be exported while writers keep going
+   * 
+   * @param snapshot
+   * @param out not closed, flushed
+   * @throws IOException
+   */
+  public static void write(DependencyManagerSnapshot snapshot, Writer out) throws IOException {
+
+    // validate
+    if (snapshot == null)
+      throw new IllegalArgumentException("snapshot is null");
+    if (out == null)
+      throw new IllegalArgumentException("out is null");
+
+    ComponentGraph graph = snapshot.graph();
+    JsonWriter json = new JsonWriter(out);
+    json.beginObject();
+
+    json.name("installed").beginArray();
+    PersistentLongMap.Cursor<Integer> cursor = snapshot.cursor();
+    while (cursor.next()) {
+      int id = cursor.value();
+      json.beginObject();
+      json.name("component").value(graph.name(id));
+      if (snapshot.isExplicit(id))
+        json.name("explicit").value(true);
+      json.endObject();
+    }
+    json.endArray();
+
+    json.name("dependencies").beginObject();
+    for (int id = 0; id < graph.size(); ++id) {
+      if (graph.successorCount(id) == 0 && graph.predecessorCount(id) > 0)
+        continue; // listed as a dependency
+      json.name(graph.name(id)).beginArray();
+      for (int i = 0; i < graph.successorCount(id); ++i)
+        json.value(graph.name(graph.successor(id, i)));
+      json.endArray();
+    }
+    json.endObject();
+
+    json.endObject();
+    json.flush();
+  }
+
+}
@@ -0,0 +1,269 @@
+package dependencymanager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.NotInstalledException;
+import dependencymanager.exceptions.StillNeededByException;
+
+/**
+ * immutable point-in-time view of a dependency manager's static dependencies and installed components
+ * 
+ * all methods are read-only and safe to call from any number of threads w/o locking
+ */
+public final class DependencyManagerSnapshot {
+
+  // traversal state.. one per thread since snapshots are shared
+  private static final ThreadLocal<Marks> MARKS = ThreadLocal.withInitial(Marks::new);
+  private static final ThreadLocal<Orphans> ORPHANS = ThreadLocal.withInitial(Orphans::new);
+
+  // frozen static dependencies
+  private final ComponentGraph graph;
+
+  // frozen install state
+  private final FrozenInstallState state;
+
+  // installed components as a read-only view
+  private final Set<String/*component*/> installedComponents;
+
+  /**
+   * ctor
+   * 
+   * O(1).. neither graph nor state are copied
+   * 
+   * @param graph frozen graph
+   * @param state frozen install state
+   */
+  DependencyManagerSnapshot(ComponentGraph graph, FrozenInstallState state) {
+    this.graph = graph;
+    this.state = state;
+    this.installedComponents = new InstalledView(graph, state);
+  }
+
+  ComponentGraph graph() {
+    return graph;
+  }
+
+  long version() {
+    return state.version;
+  }
+
+  /**
+   * order
+   * 
+   * @return installed ids in installation order
+   */
+  int[] order() {
+    return state.order();
+  }
+
+  /**
+   * stamps
+   * 
+   * @return install stamps parallel to order()
+   */
+  long[] stamps() {
+    return state.stamps();
+  }
+
+  boolean isExplicit(int id) {
+    return state.isExplicit(id);
+  }
+
+  /**
+   * cursor
+   * 
+   * @return cursor over (install stamp, id) in installation order
+   */
+  PersistentLongMap.Cursor<Integer> cursor() {
+    return state.cursor();
+  }
+
+  /**
+   * list
+   * 
+   * @return read-only set of installed components in installation order
+   */
+  public Set<String> list() {
+    return installedComponents;
+  }
+
+  /**
+   * isdepend - query static dependencies
+   * 
+   * @param component
+   * @param dependencies
+   * @return true if component directly depends on all of dependencies
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies == null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    int componentId = graph.id(component);
+    for (String dependency : dependencies) {
+      int dependencyId = graph.id(dependency);
+      if (componentId == -1 || dependencyId == -1 || !graph.hasEdge(componentId, dependencyId))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * closure
+   * 
+   * @param component
+   * @return component and everything it (transitively) depends on, in the order install() would install them
+   */
+  public List<String> closure(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    List<String> closure = new ArrayList<>();
+
+    int id = graph.id(component);
+    if (id == -1) {
+      closure.add(component); // unknown component has no dependencies
+      return closure;
+    }
+
+    IntList ids = closure(id);
+    for (int i = 0; i < ids.size(); ++i)
+      closure.add(graph.name(ids.get(i)));
+
+    return closure;
+  }
+
+  /**
+   * planInstall
+   * 
+   * dry run of install().. nothing is modified and no events are posted
+   * 
+   * @param componentToBeInstalled
+   * @return set of components install() would install, in the order it would install them
+   * @throws IllegalArgumentException
+   * @throws AlreadyInstalledException
+   */
+  public Set<String> planInstall(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled == null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+    int id = graph.id(componentToBeInstalled);
+    if (state.isInstalled(id))
+      throw new AlreadyInstalledException(componentToBeInstalled);
+
+    Set<String> plan = new LinkedHashSet<>();
+    if (id == -1) {
+      plan.add(componentToBeInstalled); // unknown component has no dependencies
+      return plan;
+    }
+
+    IntList ids = closure(id);
+    for (int i = 0; i < ids.size(); ++i) {
+      int component = ids.get(i);
+      if (!state.isInstalled(component))
+        plan.add(graph.name(component));
+    }
+
+    return plan;
+  }
+
+  /**
+   * planRemove
+   * 
+   * dry run of remove().. nothing is modified and no events are posted
+   * 
+   * @param componentToBeRemoved
+   * @return set of components remove() would remove, in the order it would remove them
+   * @throws IllegalArgumentException
+   * @throws NotInstalledException
+   * @throws StillNeededByException
+   */
+  public Set<String> planRemove(String componentToBeRemoved) {
+
+    // validate
+    if (componentToBeRemoved == null)
+      throw new IllegalArgumentException("componentToBeRemoved is null");
+    int id = graph.id(componentToBeRemoved);
+    if (!state.isInstalled(id))
+      throw new NotInstalledException(componentToBeRemoved);
+    List<Integer> dependents = new ArrayList<>();
+    for (int i = 0; i < graph.predecessorCount(id); ++i) {
+      int dependent = graph.predecessor(id, i);
+      if (state.isInstalled(dependent))
+        dependents.add(dependent);
+    }
+    if (!dependents.isEmpty()) {
+      dependents.sort(Comparator.comparingLong(state::stamp)); // installation order
+      Set<String/*installedComponent*/> stillNeededBy = new LinkedHashSet<>();
+      for (int dependent : dependents)
+        stillNeededBy.add(graph.name(dependent));
+      throw new StillNeededByException(componentToBeRemoved, stillNeededBy);
+    }
+
+    // no neededBy counts here.. count the installed dependents of each candidate instead
+    int[] orphans = ORPHANS.get().of(graph, id, dependency -> state.isInstalled(dependency) && !state.isExplicit(dependency), this::neededBy);
+
+    Set<String> plan = new LinkedHashSet<>();
+    for (int component : orphans)
+      plan.add(graph.name(component));
+    return plan;
+  }
+
+  /**
+   * closure
+   * 
+   * iterative post-order dfs
+   * 
+   * @param id
+   * @return id and everything it (transitively) depends on, dependencies first
+   */
+  private IntList closure(int id) {
+    IntList closure = new IntList();
+    Marks marks = MARKS.get();
+    IntList path = new IntList();
+    IntList positions = new IntList();
+    marks.clear();
+    marks.mark(id);
+    path.add(id);
+    positions.add(0);
+    while (!path.isEmpty()) {
+      int node = path.last();
+      int position = positions.last();
+      if (position < graph.successorCount(node)) {
+        positions.set(positions.size() - 1, position + 1);
+        int next = graph.successor(node, position);
+        if (marks.mark(next)) {
+          path.add(next);
+          positions.add(0);
+        }
+      } else {
+        path.removeLast();
+        positions.removeLast();
+        closure.add(node);
+      }
+    }
+    return closure;
+  }
+
+  private int neededBy(int id) {
+    int neededBy = 0;
+    for (int i = 0; i < graph.predecessorCount(id); ++i) {
+      if (state.isInstalled(graph.predecessor(id, i)))
+        ++neededBy;
+    }
+    return neededBy;
+  }
+
+}
@@ -0,0 +1,123 @@
+package dependencymanager;
+
+import java.util.BitSet;
+
+/**
+ * immutable version of an InstallState
+ * 
+ * backed by persistent maps that InstallState updates in O(log n) per change, so freezing is O(1)
+ * and versions share almost all of their structure w/each other
+ * 
+ * thread-safe since immutable
+ */
+final class FrozenInstallState {
+
+  static final FrozenInstallState EMPTY = new FrozenInstallState(0, PersistentLongMap.empty(), PersistentLongMap.empty(), PersistentLongMap.empty());
+
+  // InstallState.version() this was frozen at
+  final long version;
+
+  // install stamp -> installed id.. the installation order
+  private final PersistentLongMap<Integer> order;
+
+  // installed id -> install stamp
+  private final PersistentLongMap<Long> stamps;
+
+  // explicitly installed id -> TRUE
+  private final PersistentLongMap<Boolean> explicit;
+
+  /**
+   * ctor
+   * 
+   * @param version
+   * @param order
+   * @param stamps
+   * @param explicit
+   */
+  FrozenInstallState(long version, PersistentLongMap<Integer> order, PersistentLongMap<Long> stamps, PersistentLongMap<Boolean> explicit) {
+    this.version = version;
+    this.order = order;
+    this.stamps = stamps;
+    this.explicit = explicit;
+  }
+
+  /**
+   * of
+   * 
+   * @param version
+   * @param order installed ids in installation order
+   * @param stamps install stamps parallel to order.. ascending
+   * @param explicit explicitly installed ids
+   * @return
+   */
+  static FrozenInstallState of(long version, int[] order, long[] stamps, BitSet explicit) {
+    PersistentLongMap<Integer> orderMap = PersistentLongMap.empty();
+    PersistentLongMap<Long> stampMap = PersistentLongMap.empty();
+    PersistentLongMap<Boolean> explicitMap = PersistentLongMap.empty();
+    for (int i = 0; i < order.length; ++i) {
+      orderMap = orderMap.put(stamps[i], order[i]);
+      stampMap = stampMap.put(order[i], stamps[i]);
+    }
+    for (int id = explicit.nextSetBit(0); id >= 0; id = explicit.nextSetBit(id + 1))
+      explicitMap = explicitMap.put(id, Boolean.TRUE);
+    return new FrozenInstallState(version, orderMap, stampMap, explicitMap);
+  }
+
+  int size() {
+    return order.size();
+  }
+
+  boolean isInstalled(int id) {
+    return id >= 0 && stamps.get(id) != null;
+  }
+
+  /**
+   * stamp
+   * 
+   * @param id an installed id
+   * @return install stamp of id
+   */
+  long stamp(int id) {
+    return stamps.get(id);
+  }
+
+  boolean isExplicit(int id) {
+    return id >= 0 && explicit.get(id) != null;
+  }
+
+  /**
+   * cursor
+   * 
+   * @return cursor over (install stamp, id) in installation order
+   */
+  PersistentLongMap.Cursor<Integer> cursor() {
+    return order.cursor();
+  }
+
+  /**
+   * order
+   * 
+   * @return installed ids in installation order
+   */
+  int[] order() {
+    int[] ids = new int[order.size()];
+    int i = 0;
+    for (PersistentLongMap.Cursor<Integer> cursor = order.cursor(); cursor.next();)
+      ids[i++] = cursor.value();
+    return ids;
+  }
+
+  /**
+   * stamps
+   * 
+   * @return install stamps parallel to order().. ascending
+   */
+  long[] stamps() {
+    long[] result = new long[order.size()];
+    int i = 0;
+    for (PersistentLongMap.Cursor<Integer> cursor = order.cursor(); cursor.next();)
+      result[i++] = cursor.key();
+    return result;
+  }
+
+}
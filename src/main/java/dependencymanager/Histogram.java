@@ -0,0 +1,134 @@
+package dependencymanager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * fixed memory histogram of non-negative long values, e.g., latencies in nanoseconds
+ * 
+ * log-linear buckets like HdrHistogram: values below 64 are exact and every power of two above that
+ * is split into 32 buckets, so any recorded value is known to within ~3%.. record() is a few
+ * arithmetic ops and one atomic increment, no allocation and no locking
+ * 
+ * thread-safe.. reads taken while values are being recorded may be off by the values in flight
+ */
+public final class Histogram {
+
+  private static final int SUB_BITS = 5;
+  private static final int SUB = 1 << SUB_BITS;
+
+  // values of magnitude 5..62 each get SUB buckets, below that one bucket per value
+  private static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * record
+   * 
+   * @param value negative values are recorded as 0
+   */
+  public void record(long value) {
+    if (value < 0)
+      value = 0;
+    counts.incrementAndGet(index(value));
+    count.increment();
+    sum.add(value);
+    if (value > max.get())
+      max.accumulateAndGet(value, Math::max);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * mean
+   * 
+   * @return exact mean of the recorded values or 0 if none
+   */
+  public double mean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * percentile
+   * 
+   * @param percentile 0..100
+   * @return the highest value that is in the same bucket as the value at percentile, capped at max(),
+   *         or 0 if nothing was recorded
+   * @throws IllegalArgumentException if percentile is not in 0..100
+   */
+  public long percentile(double percentile) {
+
+    // validate
+    if (!(percentile >= 0 && percentile <= 100))
+      throw new IllegalArgumentException(String.format("percentile %s is not in 0..100", percentile));
+
+    long total = 0;
+    for (int i = 0; i < BUCKETS; ++i)
+      total += counts.get(i);
+    if (total == 0)
+      return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; ++i) {
+      seen += counts.get(i);
+      if (seen >= rank)
+        return Math.min(highest(i), max.get());
+    }
+    return max.get();
+  }
+
+  /**
+   * reset
+   * 
+   * forgets all recorded values
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; ++i)
+      counts.set(i, 0);
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  /**
+   * index
+   * 
+   * @param value >= 0
+   * @return bucket of value
+   */
+  static int index(long value) {
+    if (value < SUB)
+      return (int) value;
+    int magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+    int shift = magnitude - SUB_BITS;
+    int top = (int) (value >>> shift); // SUB..2*SUB-1
+    return (shift + 1) * SUB + top - SUB;
+  }
+
+  /**
+   * highest
+   * 
+   * @param index
+   * @return highest value of bucket index
+   */
+  static long highest(int index) {
+    if (index < 2 * SUB)
+      return index;
+    int shift = index / SUB - 1;
+    long top = SUB + index % SUB;
+    return ((top + 1) << shift) - 1;
+  }
+
+}
@@ -0,0 +1,235 @@
+package dependencymanager;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.exceptions.AlreadyInstalledException;
+
+/**
+ * runs install actions in parallel, honoring the static dependencies
+ * 
+ * install() takes the same plan DependencyManager.install() would follow and runs a user supplied
+ * action (download, unpack, ..) for each component on an executor.. a component's action starts as
+ * soon as the actions of all of its dependencies in the plan completed (in-degree counters, no waves)
+ * 
+ * the dependency manager is only ever touched from the calling thread: each component is recorded as
+ * installed (and its InstallingEvent is posted) when its action completes, so list() shows the order
+ * the actions actually completed in
+ * 
+ * typical usage:
+ * 
+ * <pre>
+ * try (InstallScheduler scheduler = new InstallScheduler(dependencyManager, 8)) {
+ *   scheduler.install("browser", component -&gt; download(component));
+ * }
+ * </pre>
+ * 
+ * not thread-safe, same as DependencyManager.. for a ConcurrentDependencyManager run it in write()
+ */
+public final class InstallScheduler implements AutoCloseable {
+
+  private final DependencyManager dependencyManager;
+
+  private final Executor executor;
+
+  // executor to shut down on close() or null if the executor isn't ours
+  private final ExecutorService owned;
+
+  /**
+   * ctor
+   * 
+   * runs the actions on a ForkJoinPool of its own.. close() shuts it down
+   * 
+   * @param dependencyManager
+   * @param parallelism max number of actions to run at the same time
+   * @throws IllegalArgumentException if parallelism is not positive
+   */
+  public InstallScheduler(DependencyManager dependencyManager, int parallelism) {
+    this(dependencyManager, pool(parallelism), true);
+  }
+
+  /**
+   * ctor
+   * 
+   * runs the actions on executor, e.g., a thread pool or a virtual thread per task executor.. the
+   * executor is not shut down by close()
+   * 
+   * @param dependencyManager
+   * @param executor
+   */
+  public InstallScheduler(DependencyManager dependencyManager, Executor executor) {
+    this(dependencyManager, executor, false);
+  }
+
+  private InstallScheduler(DependencyManager dependencyManager, Executor executor, boolean owned) {
+
+    // validate
+    if (dependencyManager == null)
+      throw new IllegalArgumentException("dependencyManager is null");
+    if (executor == null)
+      throw new IllegalArgumentException("executor is null");
+
+    this.dependencyManager = dependencyManager;
+    this.executor = executor;
+    this.owned = owned ? (ExecutorService) executor : null;
+  }
+
+  private static ForkJoinPool pool(int parallelism) {
+    if (parallelism < 1)
+      throw new IllegalArgumentException(String.format("parallelism %d is not positive", parallelism));
+    return new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * install
+   * 
+   * installs componentToBeInstalled and its dependencies, running action for each of them
+   * 
+   * if an action throws no further actions are started.. the ones already running are waited for,
+   * components whose actions completed stay installed and the first failure is rethrown (w/any later
+   * ones suppressed).. componentToBeInstalled itself is only installed if all of its actions completed
+   * 
+   * @param componentToBeInstalled
+   * @param action called w/each component to be installed, on the executor
+   * @return set of installed components in the order their actions completed
+   * @throws IllegalArgumentException
+   * @throws AlreadyInstalledException
+   * @see DependencyManager#install(String)
+   * @see InstallingEvent
+   */
+  public Set<String> install(String componentToBeInstalled, Consumer<String/*component*/> action) {
+
+    // validate
+    if (action == null)
+      throw new IllegalArgumentException("action is null");
+
+    ComponentGraph graph = dependencyManager.graph();
+    int[] plan = dependencyManager.installPlan(componentToBeInstalled);
+
+    // plan position of each id.. pending[i] is the number of dependencies of plan[i] not installed yet
+    Map<Integer/*id*/, Integer/*position*/> positions = new HashMap<>();
+    for (int i = 0; i < plan.length; ++i)
+      positions.put(plan[i], i);
+    int[] pending = new int[plan.length];
+    for (int i = 0; i < plan.length; ++i) {
+      for (int j = 0; j < graph.successorCount(plan[i]); ++j) {
+        if (positions.containsKey(graph.successor(plan[i], j)))
+          ++pending[i];
+      }
+    }
+
+    BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+    Set<String> installed = new LinkedHashSet<>();
+    Throwable failure = null;
+    int running = 0;
+    boolean interrupted = false;
+    try {
+      // leaves first
+      for (int i = 0; i < plan.length && failure == null; ++i) {
+        if (pending[i] == 0) {
+          try {
+            submit(i, graph.name(plan[i]), action, completions);
+            ++running;
+          } catch (RuntimeException e) { // e.g., RejectedExecutionException
+            failure = e;
+          }
+        }
+      }
+
+      while (running > 0) {
+        Completion completion;
+        try {
+          completion = completions.take();
+        } catch (InterruptedException e) {
+          interrupted = true; // the running actions still have to be waited for
+          continue;
+        }
+        --running;
+
+        if (completion.failure != null) {
+          if (failure == null)
+            failure = completion.failure;
+          else
+            failure.addSuppressed(completion.failure);
+          continue;
+        }
+
+        // record it
+        int id = plan[completion.position];
+        dependencyManager.installScheduled(id, completion.position == plan.length - 1);
+        installed.add(graph.name(id));
+
+        // start the dependents that are ready now
+        for (int j = 0; j < graph.predecessorCount(id) && failure == null; ++j) {
+          Integer position = positions.get(graph.predecessor(id, j));
+          if (position != null && --pending[position] == 0) {
+            try {
+              submit(position, graph.name(plan[position]), action, completions);
+              ++running;
+            } catch (RuntimeException e) {
+              failure = e;
+            }
+          }
+        }
+      }
+    } finally {
+      dependencyManager.installScheduledDone(installed);
+      if (interrupted)
+        Thread.currentThread().interrupt();
+    }
+
+    if (failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    if (failure instanceof Error)
+      throw (Error) failure;
+    if (failure != null)
+      throw new RuntimeException(failure); // sneaky checked exception
+
+    return installed;
+  }
+
+  private void submit(int position, String component, Consumer<String> action, BlockingQueue<Completion> completions) {
+    executor.execute(() -> {
+      Throwable failure = null;
+      try {
+        action.accept(component);
+      } catch (Throwable e) {
+        failure = e;
+      }
+      completions.add(new Completion(position, failure));
+    });
+  }
+
+  /**
+   * close
+   * 
+   * shuts down the ForkJoinPool created by the parallelism ctor
+   */
+  @Override
+  public void close() {
+    if (owned != null)
+      owned.shutdown();
+  }
+
+  /**
+   * an action that ran to completion
+   */
+  private static final class Completion {
+    final int position;
+    final Throwable failure; // null if the action succeeded
+    Completion(int position, Throwable failure) {
+      this.position = position;
+      this.failure = failure;
+    }
+  }
+
+}
@@ -0,0 +1,281 @@
+package dependencymanager;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.events.ListingEvent;
+import dependencymanager.events.RemovingEvent;
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.NotInstalledException;
+import dependencymanager.exceptions.StillNeededByException;
+
+/**
+ * install state of one host against the static dependencies of a DependencyCatalog
+ * 
+ * install()/remove()/list() behave like DependencyManager's (same results, exceptions and events)..
+ * the state is two bitsets over the catalog's component ids plus the installed ids in installation
+ * order, so a session costs a few bytes per installed component and nothing per known component
+ * 
+ * each operation works on the catalog's graph as of the start of the operation.. a concurrent
+ * depend() is seen by the next operation
+ * 
+ * not thread-safe.. create a session per host (or per thread)
+ */
+public final class InstallSession {
+
+  public final EventBus eventBus;
+
+  // traversal state.. one per thread since sessions of the same catalog run concurrently
+  private static final ThreadLocal<Orphans> ORPHANS = ThreadLocal.withInitial(Orphans::new);
+
+  private final DependencyCatalog catalog;
+
+  // explicitly installed/installed ids
+  private final BitSet explicit = new BitSet();
+  private BitSet installed = new BitSet();
+
+  // installed ids in installation order
+  private IntList order = new IntList(4);
+
+  // the last list() result or null if changed since.. shares installed and order, see unshare()
+  private Listing listing;
+
+  // true while order's array may still be read by a list() result.. outlives listing since installs only append
+  private boolean orderShared;
+
+  /**
+   * ctor
+   * 
+   * @param catalog
+   * @param eventBus
+   * @see DependencyCatalog#newSession(EventBus)
+   */
+  InstallSession(DependencyCatalog catalog, EventBus eventBus) {
+    this.catalog = catalog;
+    this.eventBus = eventBus;
+  }
+
+  /**
+   * install
+   * 
+   * installs componentToBeInstalled and its dependencies that are not installed yet, dependencies first
+   * 
+   * @param componentToBeInstalled
+   * @return set of installed components in the order they were installed
+   * @throws IllegalArgumentException
+   * @throws AlreadyInstalledException
+   * @see DependencyManager#install(String)
+   */
+  public Set<String> install(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled==null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+    DependencyCatalog.Version version = catalog.version();
+    int id = version.graph.id(componentToBeInstalled);
+    if (isInstalled(id))
+      throw new AlreadyInstalledException(componentToBeInstalled);
+
+    if (id == -1) { // unknown component.. needs an id to be installed
+      id = catalog.intern(componentToBeInstalled);
+      version = catalog.version();
+    }
+
+    // install.. dependencies first
+    unshare(false);
+    explicit.set(id);
+    Set<String> result = new LinkedHashSet<>();
+    for (int component : version.closure(id)) {
+      if (!installed.get(component)) {
+        String name = version.graph.name(component);
+
+        // notify listeners
+        eventBus.post(new InstallingEvent(name));
+
+        installed.set(component);
+        order.add(component);
+        result.add(name);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * remove
+   * 
+   * remove component and non-explicitly-installed dependencies from installed components
+   * 
+   * @param componentToBeRemoved
+   * @return set of removed components in the order they were removed
+   * @throws IllegalArgumentException
+   * @throws NotInstalledException
+   * @throws StillNeededByException
+   * @see DependencyManager#remove(String)
+   */
+  public Set<String> remove(String componentToBeRemoved) {
+
+    // validate
+    if (componentToBeRemoved==null)
+      throw new IllegalArgumentException("componentToBeRemoved is null");
+    ComponentGraph graph = catalog.version().graph;
+    int id = graph.id(componentToBeRemoved);
+    if (!isInstalled(id))
+      throw new NotInstalledException(componentToBeRemoved);
+    BitSet dependents = null;
+    for (int i = 0; i < graph.predecessorCount(id); ++i) {
+      int dependent = graph.predecessor(id, i);
+      if (installed.get(dependent)) {
+        if (dependents == null)
+          dependents = new BitSet();
+        dependents.set(dependent);
+      }
+    }
+    if (dependents != null) {
+      Set<String/*installedComponent*/> stillNeededBy = new LinkedHashSet<>();
+      for (int i = 0; i < order.size(); ++i) { // installation order
+        if (dependents.get(order.get(i)))
+          stillNeededBy.add(graph.name(order.get(i)));
+      }
+      throw new StillNeededByException(componentToBeRemoved, stillNeededBy);
+    }
+
+    // remove.. no neededBy counts here, count the installed dependents of each candidate instead
+    int[] orphans = ORPHANS.get().of(graph, id, dependency -> installed.get(dependency) && !explicit.get(dependency), dependency -> neededBy(graph, dependency));
+    unshare(true);
+    Set<String> result = new LinkedHashSet<>();
+    for (int component : orphans) {
+      String name = graph.name(component);
+
+      // notify listeners
+      eventBus.post(new RemovingEvent(name));
+
+      explicit.clear(component);
+      installed.clear(component);
+      result.add(name);
+    }
+
+    // compact the installation order
+    int size = 0;
+    for (int i = 0; i < order.size(); ++i) {
+      if (installed.get(order.get(i)))
+        order.set(size++, order.get(i));
+    }
+    while (order.size() > size)
+      order.removeLast();
+
+    return result;
+  }
+
+  /**
+   * list
+   * 
+   * @return immutable view of the installed components in installation order.. O(1), see DependencyManager.list()
+   * @see DependencyManager#list()
+   */
+  public Set<String> list() {
+    if (listing == null)
+      listing = new Listing(catalog.version().graph, order.array(), order.size(), installed);
+    orderShared = true;
+
+    // notify listeners
+    eventBus.post(new ListingEvent(listing));
+
+    return listing;
+  }
+
+  /**
+   * unshare
+   * 
+   * copy-on-write.. called before a change, copies what list() results still read: the installed
+   * bitset and, unless the change only appends to it, the installation order.. appending leaves the
+   * order shared w/the older results, so the next rewrite still copies it
+   * 
+   * @param rewritesOrder
+   */
+  private void unshare(boolean rewritesOrder) {
+    if (listing != null) {
+      listing = null;
+      installed = (BitSet) installed.clone();
+    }
+    if (rewritesOrder && orderShared) {
+      orderShared = false;
+      IntList copy = new IntList(order.size());
+      for (int i = 0; i < order.size(); ++i)
+        copy.add(order.get(i));
+      order = copy;
+    }
+  }
+
+  private boolean isInstalled(int id) {
+    return id != -1 && installed.get(id);
+  }
+
+  private int neededBy(ComponentGraph graph, int id) {
+    int neededBy = 0;
+    for (int i = 0; i < graph.predecessorCount(id); ++i) {
+      if (installed.get(graph.predecessor(id, i)))
+        ++neededBy;
+    }
+    return neededBy;
+  }
+
+  /**
+   * immutable view of the installed components as of a list()
+   */
+  private static final class Listing extends AbstractSet<String> {
+
+    // frozen graph.. knows every installed id
+    private final ComponentGraph graph;
+
+    // installed ids in installation order up to size.. entries below size are never changed
+    private final int[] order;
+    private final int size;
+
+    // installed ids.. no longer changed once shared, see unshare()
+    private final BitSet installed;
+
+    Listing(ComponentGraph graph, int[] order, int size, BitSet installed) {
+      this.graph = graph;
+      this.order = order;
+      this.size = size;
+      this.installed = installed;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int index;
+        @Override
+        public boolean hasNext() {
+          return index < size;
+        }
+        @Override
+        public String next() {
+          if (index >= size)
+            throw new NoSuchElementException();
+          return graph.name(order[index++]);
+        }
+      };
+    }
+    @Override
+    public int size() {
+      return size;
+    }
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof String))
+        return false;
+      int id = graph.id((String) o);
+      return id != -1 && installed.get(id);
+    }
+  }
+
+}
@@ -0,0 +1,341 @@
+package dependencymanager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.LongSupplier;
+
+/**
+ * install state over the component ids of a ComponentGraph
+ * 
+ * explicit/installed flags are bitsets, the installation order is a doubly linked list threaded
+ * through int arrays and neededBy counts the installed components that directly depend on each component
+ * 
+ * every install is stamped from a clock.. the installation order is always in stamp order, which lets
+ * install states that share a clock be merged back into one global order
+ * 
+ * the same state is also kept in persistent maps (O(log n) per change) so that freeze() is O(1)
+ */
+class InstallState {
+
+  private final ComponentGraph graph;
+
+  // source of install stamps.. strictly increasing
+  private final LongSupplier clock;
+
+  // set of explicitly installed components
+  private final BitSet explicit = new BitSet();
+
+  // set of installed components
+  private final BitSet installed = new BitSet();
+
+  // installation order.. doubly linked list of installed ids
+  private int[] prev = new int[16];
+  private int[] next = new int[16];
+  private int head = -1;
+  private int tail = -1;
+  private int size;
+
+  // id -> install stamp
+  private long[] stamps = new long[16];
+
+  // id -> number of installed components that directly depend on it
+  private int[] neededBy = new int[16];
+
+  // bumped whenever a component is installed or removed
+  private long version;
+
+  // persistent copies of the above for freeze().. install stamp -> id, id -> install stamp and explicit ids
+  private PersistentLongMap<Integer> orderMap = PersistentLongMap.empty();
+  private PersistentLongMap<Long> stampMap = PersistentLongMap.empty();
+  private PersistentLongMap<Boolean> explicitMap = PersistentLongMap.empty();
+
+  // orphans() traversal state
+  private final Orphans orphans = new Orphans();
+
+  /**
+   * ctor
+   * 
+   * @param graph
+   * @param clock source of install stamps
+   */
+  InstallState(ComponentGraph graph, LongSupplier clock) {
+    this.graph = graph;
+    this.clock = clock;
+  }
+
+  boolean isExplicit(int id) {
+    return explicit.get(id);
+  }
+
+  void setExplicit(int id, boolean value) {
+    if (explicit.get(id) != value) {
+      explicit.set(id, value);
+      explicitMap = value ? explicitMap.put(id, Boolean.TRUE) : explicitMap.remove(id);
+    }
+  }
+
+  boolean isInstalled(int id) {
+    return id >= 0 && installed.get(id);
+  }
+
+  /**
+   * neededBy
+   * 
+   * @param id
+   * @return number of installed components that directly depend on id
+   */
+  int neededBy(int id) {
+    return id < neededBy.length ? neededBy[id] : 0;
+  }
+
+  /**
+   * install
+   * 
+   * appends id to the installation order
+   * 
+   * @param id
+   */
+  void install(int id) {
+    ensureCapacity(graph.size());
+    link(id, tail, clock.getAsLong());
+  }
+
+  /**
+   * installAll
+   * 
+   * merges ids into the installation order by stamp in one pass
+   * 
+   * @param ids ids to install
+   * @param stamps their install stamps.. ascending
+   */
+  void installAll(int[] ids, long[] stamps) {
+    ensureCapacity(graph.size());
+    int after = -1;
+    int before = head;
+    for (int i = 0; i < ids.length; ++i) {
+      while (before != -1 && this.stamps[before] < stamps[i]) {
+        after = before;
+        before = next[before];
+      }
+      link(ids[i], after, stamps[i]);
+      after = ids[i];
+    }
+  }
+
+  /**
+   * link
+   * 
+   * @param id
+   * @param after the id to link id after or -1 for the head
+   * @param stamp
+   */
+  private void link(int id, int after, long stamp) {
+    installed.set(id);
+    stamps[id] = stamp;
+    orderMap = orderMap.put(stamp, id);
+    stampMap = stampMap.put(id, stamp);
+    prev[id] = after;
+    next[id] = after == -1 ? head : next[after];
+    if (after == -1)
+      head = id;
+    else
+      next[after] = id;
+    if (next[id] == -1)
+      tail = id;
+    else
+      prev[next[id]] = id;
+    ++size;
+    ++version;
+    for (int i = 0; i < graph.successorCount(id); ++i)
+      ++neededBy[graph.successor(id, i)];
+  }
+
+  /**
+   * restore
+   * 
+   * undoes remove().. links id back in after the id it followed w/its original stamp
+   * 
+   * @param id
+   * @param after the id to link id after or -1 for the head
+   * @param stamp
+   */
+  void restore(int id, int after, long stamp) {
+    link(id, after, stamp);
+  }
+
+  /**
+   * remove
+   * 
+   * unlinks id from the installation order
+   * 
+   * @param id
+   */
+  void remove(int id) {
+    installed.clear(id);
+    orderMap = orderMap.remove(stamps[id]);
+    stampMap = stampMap.remove(id);
+    if (prev[id] == -1)
+      head = next[id];
+    else
+      next[prev[id]] = next[id];
+    if (next[id] == -1)
+      tail = prev[id];
+    else
+      prev[next[id]] = prev[id];
+    --size;
+    ++version;
+    for (int i = 0; i < graph.successorCount(id); ++i)
+      --neededBy[graph.successor(id, i)];
+  }
+
+  /**
+   * removeEdge
+   * 
+   * undoes addEdge().. must be called while the edge component->dependency is still in the graph
+   * 
+   * @param component
+   * @param dependency
+   */
+  void removeEdge(int component, int dependency) {
+    if (isInstalled(component))
+      --neededBy[dependency];
+  }
+
+  /**
+   * orphans
+   * 
+   * @param id an installed id
+   * @return id plus the implicitly installed components that would be orphaned by removing it,
+   *         dependents first.. see Orphans
+   */
+  int[] orphans(int id) {
+    return orphans.of(graph, id, dependency -> isInstalled(dependency) && !isExplicit(dependency), this::neededBy);
+  }
+
+  // orphans() traversal counters.. see Orphans
+  long traversedNodes() {
+    return orphans.nodes;
+  }
+
+  long traversedEdges() {
+    return orphans.edges;
+  }
+
+  /**
+   * addEdge
+   * 
+   * must be called after the edge component->dependency was added to the graph
+   * 
+   * @param component
+   * @param dependency
+   */
+  void addEdge(int component, int dependency) {
+    if (isInstalled(component)) {
+      ensureCapacity(graph.size());
+      ++neededBy[dependency];
+    }
+  }
+
+  /**
+   * size
+   * 
+   * @return number of installed components
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * first
+   * 
+   * @return first installed id or -1
+   */
+  int first() {
+    return head;
+  }
+
+  /**
+   * next
+   * 
+   * @param id an installed id
+   * @return the id installed after id or -1
+   */
+  int next(int id) {
+    return next[id];
+  }
+
+  /**
+   * prev
+   * 
+   * @param id an installed id
+   * @return the id installed before id or -1
+   */
+  int prev(int id) {
+    return prev[id];
+  }
+
+  /**
+   * stamp
+   * 
+   * @param id an installed id
+   * @return install stamp of id
+   */
+  long stamp(int id) {
+    return stamps[id];
+  }
+
+  /**
+   * version
+   * 
+   * @return a number that changes whenever a component is installed or removed
+   */
+  long version() {
+    return version;
+  }
+
+  /**
+   * freeze
+   * 
+   * @return immutable copy of this state.. O(1)
+   */
+  FrozenInstallState freeze() {
+    return new FrozenInstallState(version, orderMap, stampMap, explicitMap);
+  }
+
+  /**
+   * order
+   * 
+   * @return installed ids in installation order
+   */
+  int[] order() {
+    int[] order = new int[size];
+    int i = 0;
+    for (int id = head; id != -1; id = next[id])
+      order[i++] = id;
+    return order;
+  }
+
+  /**
+   * stamps
+   * 
+   * @param ids installed ids
+   * @return install stamps of ids
+   */
+  long[] stamps(int[] ids) {
+    long[] result = new long[ids.length];
+    for (int i = 0; i < ids.length; ++i)
+      result[i] = stamps[ids[i]];
+    return result;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > prev.length) {
+      capacity = Math.max(capacity, prev.length * 2);
+      prev = Arrays.copyOf(prev, capacity);
+      next = Arrays.copyOf(next, capacity);
+      neededBy = Arrays.copyOf(neededBy, capacity);
+      stamps = Arrays.copyOf(stamps, capacity);
+    }
+  }
+
+}
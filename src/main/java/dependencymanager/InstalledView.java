@@ -0,0 +1,64 @@
+package dependencymanager;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * immutable view of the installed components of a frozen install state in installation order
+ * 
+ * O(1) to create.. names are looked up while iterating, nothing is copied unless the consumer copies it
+ * 
+ * thread-safe since immutable
+ */
+final class InstalledView extends AbstractSet<String> {
+
+  // component name -> id
+  private final ComponentGraph graph;
+
+  // id -> component name.. covers every installed id
+  private final String[] names;
+
+  final FrozenInstallState state;
+
+  /**
+   * ctor
+   * 
+   * @param graph frozen graph or a live one that won't be truncated below the installed ids
+   * @param state
+   */
+  InstalledView(ComponentGraph graph, FrozenInstallState state) {
+    this.graph = graph;
+    this.names = graph.names();
+    this.state = state;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<String>() {
+      private final PersistentLongMap.Cursor<Integer> cursor = state.cursor();
+      private boolean hasNext = cursor.next();
+      @Override
+      public boolean hasNext() {
+        return hasNext;
+      }
+      @Override
+      public String next() {
+        if (!hasNext)
+          throw new NoSuchElementException();
+        String component = names[cursor.value()];
+        hasNext = cursor.next();
+        return component;
+      }
+    };
+  }
+  @Override
+  public int size() {
+    return state.size();
+  }
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof String && state.isInstalled(graph.id((String) o));
+  }
+
+}
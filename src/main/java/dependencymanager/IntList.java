@@ -0,0 +1,68 @@
+package dependencymanager;
+
+import java.util.Arrays;
+
+/**
+ * growable list of primitive ints.. used as a stack/queue for traversals over component ids
+ */
+final class IntList {
+
+  private int[] elements;
+  private int size;
+
+  IntList() {
+    this(16);
+  }
+
+  IntList(int capacity) {
+    elements = new int[Math.max(capacity, 1)];
+  }
+
+  void add(int element) {
+    if (size == elements.length)
+      elements = Arrays.copyOf(elements, size * 2);
+    elements[size++] = element;
+  }
+
+  int get(int index) {
+    return elements[index];
+  }
+
+  void set(int index, int element) {
+    elements[index] = element;
+  }
+
+  int removeLast() {
+    return elements[--size];
+  }
+
+  int last() {
+    return elements[size - 1];
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  /**
+   * array
+   * 
+   * @return the backing array.. valid up to size() until the next set()/removeLast()/clear()
+   */
+  int[] array() {
+    return elements;
+  }
+
+  int[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+}
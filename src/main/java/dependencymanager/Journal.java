@@ -0,0 +1,109 @@
+package dependencymanager;
+
+import java.util.Arrays;
+
+/**
+ * undo log of a transaction
+ * 
+ * every change to the graph/install state is recorded as it is applied so rollback() can undo the
+ * changes in reverse order.. entries are kept in parallel primitive arrays so recording doesn't allocate
+ * 
+ * components interned during the transaction aren't recorded one by one.. they all have ids past
+ * the graph size at the start of the transaction, so rollback() just truncates the graph
+ */
+final class Journal {
+
+  // ops
+  private static final byte EDGE = 1; // id->arg was added
+  private static final byte EXPLICIT = 2; // explicit flag of id was arg
+  private static final byte INSTALL = 3; // id was installed
+  private static final byte REMOVE = 4; // id was removed.. it was linked after arg w/stamp
+
+  private final ComponentGraph graph;
+  private final InstallState state;
+
+  // graph size at the start of the transaction
+  private final int graphSize;
+
+  // entries
+  private byte[] ops = new byte[16];
+  private int[] ids = new int[16];
+  private int[] args = new int[16];
+  private long[] stamps = new long[16];
+  private int size;
+
+  /**
+   * ctor
+   * 
+   * @param graph
+   * @param state
+   */
+  Journal(ComponentGraph graph, InstallState state) {
+    this.graph = graph;
+    this.state = state;
+    this.graphSize = graph.size();
+  }
+
+  void edge(int component, int dependency) {
+    add(EDGE, component, dependency, 0);
+  }
+
+  void explicit(int id, boolean previous) {
+    add(EXPLICIT, id, previous ? 1 : 0, 0);
+  }
+
+  void install(int id) {
+    add(INSTALL, id, 0, 0);
+  }
+
+  void remove(int id, int after, long stamp) {
+    add(REMOVE, id, after, stamp);
+  }
+
+  /**
+   * rollback
+   * 
+   * undoes every recorded change, newest first, and then drops the components interned since the
+   * journal was created
+   */
+  void rollback() {
+    while (size > 0) {
+      --size;
+      int id = ids[size];
+      int arg = args[size];
+      switch (ops[size]) {
+        case EDGE:
+          state.removeEdge(id, arg);
+          graph.removeEdge(id, arg);
+          break;
+        case EXPLICIT:
+          state.setExplicit(id, arg != 0);
+          break;
+        case INSTALL:
+          state.remove(id);
+          break;
+        case REMOVE:
+          state.restore(id, arg, stamps[size]);
+          break;
+        default:
+          throw new IllegalStateException(String.format("unknown op %d", ops[size]));
+      }
+    }
+    graph.truncate(graphSize);
+  }
+
+  private void add(byte op, int id, int arg, long stamp) {
+    if (size == ops.length) {
+      ops = Arrays.copyOf(ops, size * 2);
+      ids = Arrays.copyOf(ids, size * 2);
+      args = Arrays.copyOf(args, size * 2);
+      stamps = Arrays.copyOf(stamps, size * 2);
+    }
+    ops[size] = op;
+    ids[size] = id;
+    args[size] = arg;
+    stamps[size] = stamp;
+    ++size;
+  }
+
+}
@@ -0,0 +1,507 @@
+package dependencymanager;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * read-only dependency manager state backed by a memory-mapped snapshot file
+ * 
+ * open() only maps the file and checks the header.. nothing is deserialized up front, list(), isdepend()
+ * and closure() read the mapped tables directly and only decode the names they return, so even a huge
+ * graph opens in about the time it takes to map the file
+ * 
+ * format (big endian, every section is a flat array so it can be indexed in place):
+ * 
+ * <pre>
+ * header      magic "DMMS", format version, lsn, name count n, edge count m, installed count k,
+ *             name table size t, crc32 of everything after the header
+ * nameOffsets int[n+1]   names[id] = nameBytes[nameOffsets[id]..nameOffsets[id+1])
+ * nameTable   int[t]     open addressing hash table (name.hashCode()) of id+1, 0 = empty
+ * edgeOffsets int[n+1]   successors of id = edges[edgeOffsets[id]..edgeOffsets[id+1])
+ * edges       int[m]
+ * order       int[k]     installed ids in installation order
+ * stamps      long[k]    install stamps parallel to order
+ * installed   long[(n+63)/64] bitmap
+ * explicit    long[(n+63)/64] bitmap
+ * nameBytes   utf-8
+ * </pre>
+ * 
+ * the file must be smaller than 2GB
+ * 
+ * all methods are read-only and safe to call from any number of threads w/o locking
+ */
+public final class MappedSnapshot {
+
+  private static final int MAGIC = 0x444d4d53; // "DMMS"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int HEADER_SIZE = 40;
+
+  private static final int BUFFER_SIZE = 64 << 10;
+
+  // traversal state.. one per thread since snapshots are shared
+  private static final ThreadLocal<Marks> MARKS = ThreadLocal.withInitial(Marks::new);
+
+  // only ever read w/absolute gets so it can be shared between threads
+  private final ByteBuffer buffer;
+
+  private final long lsn;
+  private final int size;
+  private final int installedCount;
+  private final int tableMask;
+  private final int checksum;
+
+  // section offsets
+  private final int nameOffsets;
+  private final int nameTable;
+  private final int edgeOffsets;
+  private final int edges;
+  private final int order;
+  private final int stamps;
+  private final int installed;
+  private final int explicit;
+  private final int nameBytes;
+
+  // installed components as a read-only view
+  private final Set<String/*component*/> installedComponents = new InstalledComponents();
+
+  /**
+   * ctor
+   * 
+   * @param buffer
+   * @param file for error messages
+   * @throws IOException if buffer is not a snapshot
+   */
+  private MappedSnapshot(ByteBuffer buffer, Path file) throws IOException {
+    this.buffer = buffer;
+
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+      throw new IOException(String.format("%s is not a snapshot", file));
+    int formatVersion = buffer.getInt(4);
+    if (formatVersion != FORMAT_VERSION)
+      throw new IOException(String.format("%s has unsupported snapshot format version %d", file, formatVersion));
+    lsn = buffer.getLong(8);
+    size = buffer.getInt(16);
+    int edgeCount = buffer.getInt(20);
+    installedCount = buffer.getInt(24);
+    int tableSize = buffer.getInt(28);
+    checksum = buffer.getInt(32);
+    if (size < 0 || edgeCount < 0 || installedCount < 0 || tableSize <= 0 || Integer.bitCount(tableSize) != 1)
+      throw new IOException(String.format("%s is corrupt", file));
+    tableMask = tableSize - 1;
+
+    long words = (size + 63) / 64;
+    long offset = HEADER_SIZE;
+    nameOffsets = (int) offset;
+    offset += 4L * (size + 1);
+    nameTable = (int) offset;
+    offset += 4L * tableSize;
+    edgeOffsets = (int) offset;
+    offset += 4L * (size + 1);
+    edges = (int) offset;
+    offset += 4L * edgeCount;
+    order = (int) offset;
+    offset += 4L * installedCount;
+    stamps = (int) offset;
+    offset += 8L * installedCount;
+    installed = (int) offset;
+    offset += 8L * words;
+    explicit = (int) offset;
+    offset += 8L * words;
+    nameBytes = (int) offset;
+    if (offset > buffer.capacity() || nameBytes + (long) buffer.getInt(nameOffsets + 4 * size) != buffer.capacity())
+      throw new IOException(String.format("%s is corrupt", file));
+  }
+
+  /**
+   * open
+   * 
+   * maps file.. the file must not be modified while the snapshot is in use
+   * 
+   * @param file
+   * @return
+   * @throws IOException if file is not a snapshot
+   */
+  public static MappedSnapshot open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException(String.format("%s is too large to map", file));
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new MappedSnapshot(buffer, file);
+    }
+  }
+
+  /**
+   * write
+   * 
+   * writes snapshot to file and forces it to disk
+   * 
+   * @param snapshot
+   * @param file
+   * @throws IOException
+   */
+  public static void write(DependencyManagerSnapshot snapshot, Path file) throws IOException {
+    write(snapshot, 0, file);
+  }
+
+  /**
+   * write
+   * 
+   * @param snapshot
+   * @param lsn write-ahead log lsn the snapshot reflects
+   * @param file
+   * @throws IOException
+   */
+  static void write(DependencyManagerSnapshot snapshot, long lsn, Path file) throws IOException {
+    ComponentGraph graph = snapshot.graph();
+    int size = graph.size();
+    int[] order = snapshot.order();
+    long[] stamps = snapshot.stamps();
+
+    // names
+    byte[][] names = new byte[size][];
+    int tableSize = Integer.highestOneBit(Math.max(1, size) * 2 - 1) * 2; // load factor <= 0.5
+    int[] table = new int[tableSize];
+    for (int id = 0; id < size; ++id) {
+      String name = graph.name(id);
+      names[id] = name.getBytes(StandardCharsets.UTF_8);
+      int slot = hash(name) & (tableSize - 1);
+      while (table[slot] != 0)
+        slot = (slot + 1) & (tableSize - 1);
+      table[slot] = id + 1;
+    }
+
+    // bitmaps
+    long[] installed = new long[(size + 63) / 64];
+    long[] explicit = new long[installed.length];
+    for (int id : order) {
+      installed[id >>> 6] |= 1L << id;
+      if (snapshot.isExplicit(id))
+        explicit[id >>> 6] |= 1L << id;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      CRC32 crc = new CRC32();
+      channel.position(HEADER_SIZE);
+      DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE), crc));
+
+      int offset = 0;
+      out.writeInt(offset);
+      for (byte[] name : names) {
+        offset += name.length;
+        out.writeInt(offset);
+      }
+      for (int slot : table)
+        out.writeInt(slot);
+      int edgeCount = 0;
+      out.writeInt(edgeCount);
+      for (int id = 0; id < size; ++id) {
+        edgeCount += graph.successorCount(id);
+        out.writeInt(edgeCount);
+      }
+      for (int id = 0; id < size; ++id) {
+        for (int i = 0; i < graph.successorCount(id); ++i)
+          out.writeInt(graph.successor(id, i));
+      }
+      for (int id : order)
+        out.writeInt(id);
+      for (long stamp : stamps)
+        out.writeLong(stamp);
+      for (long word : installed)
+        out.writeLong(word);
+      for (long word : explicit)
+        out.writeLong(word);
+      for (byte[] name : names)
+        out.write(name);
+      out.flush();
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC);
+      header.putInt(FORMAT_VERSION);
+      header.putLong(lsn);
+      header.putInt(size);
+      header.putInt(edgeCount);
+      header.putInt(order.length);
+      header.putInt(tableSize);
+      header.putInt((int) crc.getValue());
+      header.clear();
+      while (header.hasRemaining())
+        channel.write(header, header.position());
+      channel.force(true);
+    }
+  }
+
+  /**
+   * verify
+   * 
+   * reads the whole file.. use before trusting a snapshot that may have been damaged
+   * 
+   * @return true if the checksum matches
+   */
+  boolean verify() {
+    CRC32 crc = new CRC32();
+    ByteBuffer body = buffer.duplicate();
+    body.position(HEADER_SIZE);
+    byte[] bytes = new byte[BUFFER_SIZE];
+    while (body.hasRemaining()) {
+      int length = Math.min(bytes.length, body.remaining());
+      body.get(bytes, 0, length);
+      crc.update(bytes, 0, length);
+    }
+    return (int) crc.getValue() == checksum;
+  }
+
+  long lsn() {
+    return lsn;
+  }
+
+  /**
+   * size
+   * 
+   * @return number of components
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * id
+   * 
+   * @param component
+   * @return id of component or -1
+   */
+  int id(String component) {
+    byte[] bytes = null;
+    int slot = hash(component) & tableMask;
+    for (int probe = 0; probe <= tableMask; ++probe) {
+      int id = buffer.getInt(nameTable + 4 * slot) - 1;
+      if (id < 0 || id >= size)
+        return -1;
+      if (bytes == null)
+        bytes = component.getBytes(StandardCharsets.UTF_8);
+      if (nameEquals(id, bytes))
+        return id;
+      slot = (slot + 1) & tableMask;
+    }
+    return -1;
+  }
+
+  private boolean nameEquals(int id, byte[] bytes) {
+    int start = buffer.getInt(nameOffsets + 4 * id);
+    int end = buffer.getInt(nameOffsets + 4 * (id + 1));
+    if (end - start != bytes.length)
+      return false;
+    for (int i = 0; i < bytes.length; ++i) {
+      if (buffer.get(nameBytes + start + i) != bytes[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * name
+   * 
+   * @param id
+   * @return component name of id.. decoded on every call
+   */
+  String name(int id) {
+    int start = buffer.getInt(nameOffsets + 4 * id);
+    int end = buffer.getInt(nameOffsets + 4 * (id + 1));
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; ++i)
+      bytes[i] = buffer.get(nameBytes + start + i);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  int successorCount(int id) {
+    return buffer.getInt(edgeOffsets + 4 * (id + 1)) - buffer.getInt(edgeOffsets + 4 * id);
+  }
+
+  int successor(int id, int index) {
+    return buffer.getInt(edges + 4 * (buffer.getInt(edgeOffsets + 4 * id) + index));
+  }
+
+  int installedCount() {
+    return installedCount;
+  }
+
+  /**
+   * installed
+   * 
+   * @param index 0..installedCount()-1
+   * @return id of the index-th installed component
+   */
+  int installed(int index) {
+    return buffer.getInt(order + 4 * index);
+  }
+
+  /**
+   * stamp
+   * 
+   * @param index 0..installedCount()-1
+   * @return install stamp of the index-th installed component
+   */
+  long stamp(int index) {
+    return buffer.getLong(stamps + 8 * index);
+  }
+
+  boolean isInstalled(int id) {
+    return (buffer.getLong(installed + 8 * (id >>> 6)) & (1L << id)) != 0;
+  }
+
+  boolean isExplicit(int id) {
+    return (buffer.getLong(explicit + 8 * (id >>> 6)) & (1L << id)) != 0;
+  }
+
+  /**
+   * list
+   * 
+   * @return read-only set of installed components in installation order
+   */
+  public Set<String> list() {
+    return installedComponents;
+  }
+
+  /**
+   * isdepend - query static dependencies
+   * 
+   * @param component
+   * @param dependencies
+   * @return true if component directly depends on all of dependencies
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies == null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    int componentId = id(component);
+    for (String dependency : dependencies) {
+      int dependencyId = id(dependency);
+      if (componentId == -1 || dependencyId == -1 || !hasEdge(componentId, dependencyId))
+        return false;
+    }
+
+    return true;
+  }
+
+  private boolean hasEdge(int component, int dependency) {
+    for (int i = successorCount(component); --i >= 0;) {
+      if (successor(component, i) == dependency)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * closure
+   * 
+   * @param component
+   * @return component and everything it (transitively) depends on, in the order install() would install them
+   */
+  public List<String> closure(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    List<String> closure = new ArrayList<>();
+
+    int id = id(component);
+    if (id == -1) {
+      closure.add(component); // unknown component has no dependencies
+      return closure;
+    }
+
+    // iterative post-order dfs
+    Marks marks = MARKS.get();
+    IntList path = new IntList();
+    IntList positions = new IntList();
+    marks.clear();
+    marks.mark(id);
+    path.add(id);
+    positions.add(0);
+    while (!path.isEmpty()) {
+      int node = path.last();
+      int position = positions.last();
+      if (position < successorCount(node)) {
+        positions.set(positions.size() - 1, position + 1);
+        int next = successor(node, position);
+        if (marks.mark(next)) {
+          path.add(next);
+          positions.add(0);
+        }
+      } else {
+        path.removeLast();
+        positions.removeLast();
+        closure.add(name(node));
+      }
+    }
+
+    return closure;
+  }
+
+  /**
+   * hash
+   * 
+   * @param component
+   * @return name table hash of component.. String.hashCode() is specified, so it's stable across jvms
+   */
+  private static int hash(String component) {
+    int h = component.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * read-only view of the installed components in installation order
+   */
+  private class InstalledComponents extends AbstractSet<String> {
+    @Override
+    public Iterator<String> iterator() {
+      return new Iterator<String>() {
+        private int i;
+        @Override
+        public boolean hasNext() {
+          return i < installedCount;
+        }
+        @Override
+        public String next() {
+          if (i == installedCount)
+            throw new NoSuchElementException();
+          return name(installed(i++));
+        }
+      };
+    }
+    @Override
+    public int size() {
+      return installedCount;
+    }
+    @Override
+    public boolean contains(Object o) {
+      if (o instanceof String) {
+        int id = id((String) o);
+        return id != -1 && isInstalled(id);
+      }
+      return false;
+    }
+  }
+
+}
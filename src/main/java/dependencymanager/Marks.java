@@ -0,0 +1,52 @@
+package dependencymanager;
+
+import java.util.Arrays;
+
+/**
+ * reusable visited set over component ids
+ * 
+ * clear() is O(1).. each traversal gets a new epoch instead of wiping the array
+ */
+final class Marks {
+
+  private int[] stamps = new int[16];
+  private int epoch = 1;
+
+  /**
+   * clear
+   * 
+   * unmarks all ids
+   */
+  void clear() {
+    if (++epoch == 0) { // wrapped around
+      Arrays.fill(stamps, 0);
+      epoch = 1;
+    }
+  }
+
+  /**
+   * mark
+   * 
+   * @param id
+   * @return true if id was not already marked
+   */
+  boolean mark(int id) {
+    if (id >= stamps.length)
+      stamps = Arrays.copyOf(stamps, Math.max(stamps.length * 2, id + 1));
+    if (stamps[id] == epoch)
+      return false;
+    stamps[id] = epoch;
+    return true;
+  }
+
+  /**
+   * isMarked
+   * 
+   * @param id
+   * @return
+   */
+  boolean isMarked(int id) {
+    return id < stamps.length && stamps[id] == epoch;
+  }
+
+}
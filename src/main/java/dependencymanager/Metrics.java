@@ -0,0 +1,147 @@
+package dependencymanager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * named histograms and counters
+ * 
+ * opt-in instrumentation: a dependency manager (see DependencyManager.setMetrics()) or cli only
+ * records into a Metrics if it was given one, otherwise the cost is a null check per operation
+ * 
+ * what DependencyManager records:
+ * 
+ * <pre>
+ * depend, install, remove, list    latency in ns of each successful operation (bulk operations once per call)
+ * closure                          number of components in each install closure
+ * traversed.nodes, traversed.edges components/dependencies visited by closure and orphan traversals
+ * events                           number of events posted
+ * event.&lt;class&gt;                    time in ns to post an event of that class.. w/synchronous delivery
+ *                                  that is the time all its subscribers took, w/asynchronous
+ *                                  delivery the time to hand it to the dispatcher
+ * </pre>
+ * 
+ * thread-safe.. one Metrics can be shared by several dependency managers
+ */
+public final class Metrics {
+
+  // name -> histogram/counter.. sorted so exports are stable
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentSkipListMap<>();
+  private final ConcurrentMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+
+  // event class -> histogram.. saves building the name on every post
+  private final ConcurrentMap<Class<?>, Histogram> events = new ConcurrentHashMap<>();
+
+  // resolved once for the dependency manager hot paths
+  final Histogram depend = histogram("depend");
+  final Histogram install = histogram("install");
+  final Histogram remove = histogram("remove");
+  final Histogram list = histogram("list");
+  final Histogram closure = histogram("closure");
+  final LongAdder traversedNodes = counter("traversed.nodes");
+  final LongAdder traversedEdges = counter("traversed.edges");
+  final LongAdder posted = counter("events");
+
+  /**
+   * histogram
+   * 
+   * @param name
+   * @return the histogram named name.. created on first use
+   */
+  public Histogram histogram(String name) {
+
+    // validate
+    if (name == null)
+      throw new IllegalArgumentException("name is null");
+
+    return histograms.computeIfAbsent(name, n -> new Histogram());
+  }
+
+  /**
+   * counter
+   * 
+   * @param name
+   * @return the counter named name.. created on first use
+   */
+  public LongAdder counter(String name) {
+
+    // validate
+    if (name == null)
+      throw new IllegalArgumentException("name is null");
+
+    return counters.computeIfAbsent(name, n -> new LongAdder());
+  }
+
+  /**
+   * event
+   * 
+   * @param eventClass
+   * @return histogram of the time to post events of eventClass
+   */
+  Histogram event(Class<?> eventClass) {
+    Histogram histogram = events.get(eventClass);
+    return histogram != null ? histogram : events.computeIfAbsent(eventClass, c -> histogram("event." + c.getSimpleName()));
+  }
+
+  /**
+   * snapshot
+   * 
+   * flattens every histogram to name.count, name.mean, name.p50, name.p90, name.p99 and name.max and
+   * every counter to name, in name order
+   * 
+   * @param reset true to reset everything after reading it, e.g., for per-interval exports.. values
+   *              recorded while resetting may be lost
+   * @return name -> value
+   */
+  public Map<String, Long> snapshot(boolean reset) {
+    Map<String, Long> snapshot = new LinkedHashMap<>();
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      String name = entry.getKey();
+      Histogram histogram = entry.getValue();
+      snapshot.put(name + ".count", histogram.count());
+      snapshot.put(name + ".mean", Math.round(histogram.mean()));
+      snapshot.put(name + ".p50", histogram.percentile(50));
+      snapshot.put(name + ".p90", histogram.percentile(90));
+      snapshot.put(name + ".p99", histogram.percentile(99));
+      snapshot.put(name + ".max", histogram.max());
+      if (reset)
+        histogram.reset();
+    }
+    for (Map.Entry<String, LongAdder> entry : counters.entrySet())
+      snapshot.put(entry.getKey(), reset ? entry.getValue().sumThenReset() : entry.getValue().sum());
+    return snapshot;
+  }
+
+  /**
+   * export
+   * 
+   * periodically passes snapshot(true) to sink
+   * 
+   * @param scheduler
+   * @param period
+   * @param unit
+   * @param sink e.g., a logger or a push to a monitoring system
+   * @return cancel this to stop exporting
+   */
+  public ScheduledFuture<?> export(ScheduledExecutorService scheduler, long period, TimeUnit unit, Consumer<Map<String, Long>> sink) {
+
+    // validate
+    if (scheduler == null)
+      throw new IllegalArgumentException("scheduler is null");
+    if (unit == null)
+      throw new IllegalArgumentException("unit is null");
+    if (sink == null)
+      throw new IllegalArgumentException("sink is null");
+
+    return scheduler.scheduleAtFixedRate(() -> sink.accept(snapshot(true)), period, period, unit);
+  }
+
+}
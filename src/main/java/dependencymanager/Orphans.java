@@ -0,0 +1,98 @@
+package dependencymanager;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * reference counting cascade over a ComponentGraph
+ * 
+ * finds id plus the implicitly installed components that no installed component would directly
+ * depend on anymore once id and the other orphans are removed.. shared by InstallState (which keeps
+ * neededBy counts) and DependencyManagerSnapshot (which counts installed dependents on the fly)
+ * 
+ * reusable traversal state.. not thread-safe
+ */
+final class Orphans {
+
+  // remaining is only valid for ids marked in touched
+  private final Marks touched = new Marks();
+  private final Marks orphans = new Marks();
+  private final IntList queue = new IntList();
+  private final IntList path = new IntList();
+  private final IntList positions = new IntList();
+  private int[] remaining = new int[16];
+
+  // traversal counters.. cumulative, read by DependencyManager for Metrics
+  long nodes;
+  long edges;
+
+  /**
+   * of
+   * 
+   * linear in the number of orphans and their dependencies.. nothing is modified
+   * 
+   * @param graph
+   * @param id an installed id
+   * @param implicit true for installed ids that were not explicitly installed
+   * @param neededBy number of installed components that directly depend on an id
+   * @return the orphans, dependents first (the reverse of the dependency-first order of a dfs from
+   *         id that only enters orphans)
+   */
+  int[] of(ComponentGraph graph, int id, IntPredicate implicit, IntUnaryOperator neededBy) {
+
+    // STEP 1 cascade
+    touched.clear();
+    orphans.clear();
+    queue.clear();
+    orphans.mark(id);
+    queue.add(id);
+    for (int i = 0; i < queue.size(); ++i) {
+      int node = queue.get(i);
+      edges += graph.successorCount(node);
+      for (int j = 0; j < graph.successorCount(node); ++j) {
+        int dependency = graph.successor(node, j);
+        if (implicit.test(dependency)) {
+          if (touched.mark(dependency)) {
+            if (dependency >= remaining.length)
+              remaining = Arrays.copyOf(remaining, Math.max(graph.size(), remaining.length * 2));
+            remaining[dependency] = neededBy.applyAsInt(dependency);
+          }
+          if (--remaining[dependency] == 0 && orphans.mark(dependency))
+            queue.add(dependency);
+        }
+      }
+    }
+
+    nodes += queue.size();
+
+    // STEP 2 order.. post-order dfs restricted to the orphans, reversed
+    int[] order = new int[queue.size()];
+    int size = order.length;
+    touched.clear();
+    path.clear();
+    positions.clear();
+    touched.mark(id);
+    path.add(id);
+    positions.add(0);
+    while (!path.isEmpty()) {
+      int node = path.last();
+      int position = positions.last();
+      if (position < graph.successorCount(node)) {
+        positions.set(positions.size() - 1, position + 1);
+        int next = graph.successor(node, position);
+        if (orphans.isMarked(next) && touched.mark(next)) {
+          path.add(next);
+          positions.add(0);
+        }
+      } else {
+        path.removeLast();
+        positions.removeLast();
+        order[--size] = node;
+      }
+    }
+
+    return order;
+  }
+
+}
@@ -0,0 +1,383 @@
+package dependencymanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.events.ListingEvent;
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.NotInstalledException;
+
+/**
+ * thread-safe dependency manager that partitions the static dependencies into weakly connected components
+ * 
+ * every partition is a ConcurrentDependencyManager w/its own lock, so installs and removes in unrelated
+ * stacks run in parallel.. depend() merges the partitions it joins (smaller into larger)
+ * 
+ * all partitions share one install clock so list() can still return the global installation order
+ */
+public class PartitionedDependencyManager {
+
+  public final EventBus eventBus;
+
+  // asynchronous event delivery or null for synchronous delivery on eventBus
+  private final AsyncEventDispatcher dispatcher;
+
+  // shared source of install stamps
+  private final LongSupplier clock = new AtomicLong()::incrementAndGet;
+
+  // component -> partition
+  private final Map<String/*component*/, Partition> partitions = new ConcurrentHashMap<>();
+
+  // live partitions
+  private final Set<Partition> live = ConcurrentHashMap.newKeySet();
+
+  // read: partition lookups that must not race w/a merge.. write: creating/merging partitions
+  private final ReadWriteLock structure = new ReentrantReadWriteLock();
+
+  /**
+   * a weakly connected component of the static dependencies
+   */
+  private class Partition {
+    final ConcurrentDependencyManager dependencyManager = new ConcurrentDependencyManager(eventBus, new DependencyManager(eventBus, clock, dispatcher));
+    int size; // number of components.. guarded by structure write lock
+  }
+
+  /**
+   * ctor
+   * 
+   * @param eventBus event bus for dependency manager to publish intesting events to (see the "events" java package)
+   */
+  public PartitionedDependencyManager(EventBus eventBus) {
+    this.eventBus = eventBus;
+    this.dispatcher = null;
+  }
+
+  /**
+   * ctor
+   * 
+   * opt-in asynchronous event delivery.. all partitions share the dispatcher
+   * 
+   * @param dispatcher
+   */
+  public PartitionedDependencyManager(AsyncEventDispatcher dispatcher) {
+    this.eventBus = dispatcher.eventBus;
+    this.dispatcher = dispatcher;
+  }
+
+  /**
+   * depend
+   * 
+   * @see DependencyManager#depend(String, Set)
+   */
+  public void depend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies == null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    // fast path: everything already lives in the same partition
+    structure.readLock().lock();
+    try {
+      Partition partition = partitions.get(component);
+      if (partition != null && samePartition(partition, dependencies)) {
+        partition.dependencyManager.depend(component, dependencies);
+        return;
+      }
+    } finally {
+      structure.readLock().unlock();
+    }
+
+    // slow path: join partitions.. validate first, a rejected depend() must not join or register anything
+    structure.writeLock().lock();
+    try {
+      Partition existing = partitions.get(component);
+      if (existing != null) {
+        // only dependencies in the partition of component can close a cycle
+        existing.dependencyManager.write(dependencyManager -> {
+          dependencyManager.validateDepend(component, dependencies);
+          return null;
+        });
+      } else if (dependencies.contains(component)) {
+        throw new DependsOnException(component, component, Arrays.asList(component, component));
+      }
+      Partition partition = join(component, dependencies);
+      partition.dependencyManager.depend(component, dependencies);
+      partition.size = partition.dependencyManager.snapshot().graph().size();
+    } finally {
+      structure.writeLock().unlock();
+    }
+  }
+
+  /**
+   * install
+   * 
+   * @see DependencyManager#install(String)
+   */
+  public Set<String> install(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled == null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+
+    return write(componentToBeInstalled, true, dependencyManager -> dependencyManager.install(componentToBeInstalled));
+  }
+
+  /**
+   * remove
+   * 
+   * @see DependencyManager#remove(String)
+   */
+  public Set<String> remove(String componentToBeRemoved) {
+
+    // validate
+    if (componentToBeRemoved == null)
+      throw new IllegalArgumentException("componentToBeRemoved is null");
+
+    return write(componentToBeRemoved, false, dependencyManager -> dependencyManager.remove(componentToBeRemoved));
+  }
+
+  /**
+   * list
+   * 
+   * each partition is read from its latest snapshot w/o locking it.. the partitions are merged by install stamp
+   * 
+   * @return read-only set of installed components in installation order
+   */
+  public Set<String> list() {
+    List<DependencyManagerSnapshot> snapshots = new ArrayList<>();
+    structure.readLock().lock();
+    try {
+      for (Partition partition : live)
+        snapshots.add(partition.dependencyManager.snapshot());
+    } finally {
+      structure.readLock().unlock();
+    }
+
+    // k-way merge.. each snapshot is already in stamp order
+    int size = 0;
+    List<PersistentLongMap.Cursor<Integer>> cursors = new ArrayList<>(snapshots.size());
+    PriorityQueue<Integer/*snapshot*/> queue = new PriorityQueue<>((a, b) -> Long.compare(cursors.get(a).key(), cursors.get(b).key()));
+    for (int i = 0; i < snapshots.size(); ++i) {
+      size += snapshots.get(i).list().size();
+      cursors.add(snapshots.get(i).cursor());
+      if (cursors.get(i).next())
+        queue.add(i);
+    }
+    Set<String> installedComponents = new LinkedHashSet<>(size * 4 / 3 + 1);
+    while (!queue.isEmpty()) {
+      int i = queue.poll();
+      installedComponents.add(snapshots.get(i).graph().name(cursors.get(i).value()));
+      if (cursors.get(i).next())
+        queue.add(i);
+    }
+    installedComponents = Collections.unmodifiableSet(installedComponents);
+
+    // notify listeners
+    if (dispatcher == null)
+      eventBus.post(new ListingEvent(installedComponents));
+    else
+      dispatcher.dispatch(new ListingEvent(installedComponents));
+
+    return installedComponents;
+  }
+
+  /**
+   * isdepend
+   * 
+   * @see DependencyManagerSnapshot#isdepend(String, Set)
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+    if (dependencies == null)
+      throw new IllegalArgumentException("dependencies is null");
+
+    return read(component, () -> dependencies.isEmpty(), dependencyManager -> dependencyManager.isdepend(component, dependencies));
+  }
+
+  /**
+   * closure
+   * 
+   * @see DependencyManagerSnapshot#closure(String)
+   */
+  public List<String> closure(String component) {
+
+    // validate
+    if (component == null)
+      throw new IllegalArgumentException("component is null");
+
+    return read(component, () -> new ArrayList<>(Collections.singletonList(component)), dependencyManager -> dependencyManager.closure(component));
+  }
+
+  /**
+   * planInstall
+   * 
+   * @see DependencyManagerSnapshot#planInstall(String)
+   */
+  public Set<String> planInstall(String componentToBeInstalled) {
+
+    // validate
+    if (componentToBeInstalled == null)
+      throw new IllegalArgumentException("componentToBeInstalled is null");
+
+    return read(componentToBeInstalled, () -> new LinkedHashSet<>(Collections.singleton(componentToBeInstalled)), dependencyManager -> dependencyManager.planInstall(componentToBeInstalled));
+  }
+
+  /**
+   * planRemove
+   * 
+   * @see DependencyManagerSnapshot#planRemove(String)
+   */
+  public Set<String> planRemove(String componentToBeRemoved) {
+
+    // validate
+    if (componentToBeRemoved == null)
+      throw new IllegalArgumentException("componentToBeRemoved is null");
+
+    return read(componentToBeRemoved, () -> {
+      throw new NotInstalledException(componentToBeRemoved);
+    }, dependencyManager -> dependencyManager.planRemove(componentToBeRemoved));
+  }
+
+  /**
+   * partitions
+   * 
+   * @return number of partitions (weakly connected components)
+   */
+  public int partitions() {
+    return live.size();
+  }
+
+  /**
+   * read
+   * 
+   * runs query on the partition of component.. the structure read lock keeps a concurrent depend() from
+   * merging partitions between the lookup and the query
+   * 
+   * @param component
+   * @param unknown result for a component w/o partition
+   * @param query
+   * @return
+   */
+  private <T> T read(String component, Supplier<T> unknown, Function<ConcurrentDependencyManager, T> query) {
+    structure.readLock().lock();
+    try {
+      Partition partition = partitions.get(component);
+      if (partition == null)
+        return unknown.get();
+      return query.apply(partition.dependencyManager);
+    } finally {
+      structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * write
+   * 
+   * runs mutation in the partition of component.. only that partition is locked
+   * 
+   * @param component
+   * @param create true to create a partition for an unknown component
+   * @param mutation
+   * @return
+   */
+  private <T> T write(String component, boolean create, Function<DependencyManager, T> mutation) {
+    structure.readLock().lock();
+    try {
+      Partition partition = partitions.get(component);
+      if (partition == null) {
+        if (!create)
+          throw new NotInstalledException(component);
+        partition = partitions.computeIfAbsent(component, k -> {
+          Partition newPartition = new Partition();
+          newPartition.size = 1;
+          live.add(newPartition);
+          return newPartition;
+        });
+      }
+      return partition.dependencyManager.write(mutation);
+    } finally {
+      structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * join
+   * 
+   * merges the partitions of component and dependencies into the largest of them.. caller must hold the write lock
+   * 
+   * @param component
+   * @param dependencies
+   * @return the partition that now holds component and dependencies
+   */
+  private Partition join(String component, Set<String> dependencies) {
+    Set<String> components = new LinkedHashSet<>();
+    components.add(component);
+    components.addAll(dependencies);
+
+    // find the partitions involved.. the largest one survives
+    Set<Partition> joined = new LinkedHashSet<>();
+    Partition target = null;
+    for (String c : components) {
+      Partition partition = partitions.get(c);
+      if (partition != null && joined.add(partition)) {
+        if (target == null || partition.size > target.size)
+          target = partition;
+      }
+    }
+    if (target == null) {
+      target = new Partition();
+      live.add(target);
+    }
+
+    // merge
+    for (Partition partition : joined) {
+      if (partition != target) {
+        Partition source = partition;
+        target.dependencyManager.write(targetDependencyManager -> source.dependencyManager.write(sourceDependencyManager -> {
+          targetDependencyManager.absorb(sourceDependencyManager);
+          return null;
+        }));
+        ComponentGraph graph = source.dependencyManager.snapshot().graph();
+        for (int id = 0; id < graph.size(); ++id)
+          partitions.put(graph.name(id), target);
+        target.size += source.size;
+        live.remove(source);
+      }
+    }
+
+    // new components
+    for (String c : components)
+      partitions.putIfAbsent(c, target);
+
+    return target;
+  }
+
+  private boolean samePartition(Partition partition, Set<String> components) {
+    for (String component : components) {
+      if (partitions.get(component) != partition)
+        return false;
+    }
+    return true;
+  }
+
+}
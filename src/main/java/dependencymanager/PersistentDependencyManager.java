@@ -0,0 +1,299 @@
+package dependencymanager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * durable thread-safe dependency manager
+ * 
+ * every successful mutation (depend, install, remove) is appended to a write-ahead log in directory
+ * and is durable by the time the call returns.. concurrent writers share fsyncs (group commit)
+ * 
+ * every checkpointInterval mutations the state is written to a binary snapshot and the log is cut
+ * back, so opening a directory is snapshot-load + replay of a short log tail instead of a replay of
+ * the whole command history
+ * 
+ * reads are the same as ConcurrentDependencyManager's.. note a reader may see a mutation slightly
+ * before its writer has made it durable
+ * 
+ * a mutation is applied (visible to readers, events posted) before it is durable.. if writing or
+ * forcing the log fails, the call throws UncheckedIOException but the change stays visible in memory
+ * and is lost on restart.. the log is unusable from then on, so every later mutation fails (and is
+ * rolled back) until the directory is opened again
+ */
+public class PersistentDependencyManager implements Closeable {
+
+  public final EventBus eventBus;
+
+  private final Path directory;
+
+  private final ConcurrentDependencyManager dependencyManager;
+
+  private final WriteAheadLog log;
+
+  // number of mutations between snapshots
+  private final long checkpointInterval;
+
+  // lsn of the latest snapshot
+  private volatile long checkpointLsn;
+
+  // a checkpoint is running
+  private final AtomicBoolean checkpointing = new AtomicBoolean();
+
+  // default number of mutations between snapshots
+  public static final long CHECKPOINT_INTERVAL = 100_000;
+
+  /**
+   * ctor
+   * 
+   * @param eventBus event bus for dependency manager to publish intesting events to (see the "events" java package)
+   * @param directory where the write-ahead log and snapshots are kept.. created if needed
+   * @throws IOException if the directory can't be read or is corrupt
+   */
+  public PersistentDependencyManager(EventBus eventBus, Path directory) throws IOException {
+    this(eventBus, directory, CHECKPOINT_INTERVAL);
+  }
+
+  /**
+   * ctor
+   * 
+   * recovers the state kept in directory.. no events are posted for the recovered state
+   * 
+   * @param eventBus event bus for dependency manager to publish intesting events to (see the "events" java package)
+   * @param directory where the write-ahead log and snapshots are kept.. created if needed
+   * @param checkpointInterval number of mutations between snapshots
+   * @throws IOException if the directory can't be read or is corrupt
+   */
+  public PersistentDependencyManager(EventBus eventBus, Path directory, long checkpointInterval) throws IOException {
+
+    // validate
+    if (eventBus == null)
+      throw new IllegalArgumentException("eventBus is null");
+    if (directory == null)
+      throw new IllegalArgumentException("directory is null");
+    if (checkpointInterval <= 0)
+      throw new IllegalArgumentException("checkpointInterval is not positive");
+
+    this.eventBus = eventBus;
+    this.directory = directory;
+    this.checkpointInterval = checkpointInterval;
+
+    Files.createDirectories(directory);
+
+    // recover into a private dependency manager so the replay doesn't post events
+    AtomicLong clock = new AtomicLong();
+    DependencyManager recovered = new DependencyManager(new EventBus(), clock::incrementAndGet, null);
+
+    // STEP 1 latest snapshot
+    SnapshotFile snapshotFile = SnapshotFile.latest(directory);
+    if (snapshotFile != null) {
+      long[] stamps = snapshotFile.snapshot.stamps();
+      if (stamps.length > 0)
+        clock.set(stamps[stamps.length - 1]);
+      recovered.absorb(snapshotFile.snapshot);
+      checkpointLsn = snapshotFile.lsn;
+    }
+
+    // STEP 2 log tail
+    log = new WriteAheadLog(directory, checkpointLsn, (op, component, dependencies) -> {
+      switch (op) {
+        case WriteAheadLog.DEPEND:
+          recovered.depend(component, new LinkedHashSet<>(dependencies)); // insertion order
+          break;
+        case WriteAheadLog.INSTALL:
+          recovered.install(component);
+          break;
+        case WriteAheadLog.REMOVE:
+          recovered.remove(component);
+          break;
+        default:
+          throw new IllegalStateException(String.format("unknown op %d", op));
+      }
+    });
+
+    DependencyManager dependencyManager = new DependencyManager(eventBus, clock::incrementAndGet, null);
+    dependencyManager.absorb(recovered);
+    this.dependencyManager = new ConcurrentDependencyManager(eventBus, dependencyManager);
+  }
+
+  /**
+   * depend
+   * 
+   * @see DependencyManager#depend(String, Set)
+   * @throws UncheckedIOException if the mutation could not be logged
+   */
+  public void depend(String component, Set<String> dependencies) {
+    write(dependencyManager -> {
+      dependencyManager.depend(component, dependencies);
+      return null;
+    }, WriteAheadLog.DEPEND, component, dependencies);
+  }
+
+  /**
+   * install
+   * 
+   * @see DependencyManager#install(String)
+   * @throws UncheckedIOException if the mutation could not be logged
+   */
+  public Set<String> install(String componentToBeInstalled) {
+    return write(dependencyManager -> dependencyManager.install(componentToBeInstalled), WriteAheadLog.INSTALL, componentToBeInstalled, Collections.emptySet());
+  }
+
+  /**
+   * remove
+   * 
+   * @see DependencyManager#remove(String)
+   * @throws UncheckedIOException if the mutation could not be logged
+   */
+  public Set<String> remove(String componentToBeRemoved) {
+    return write(dependencyManager -> dependencyManager.remove(componentToBeRemoved), WriteAheadLog.REMOVE, componentToBeRemoved, Collections.emptySet());
+  }
+
+  /**
+   * write
+   * 
+   * applies mutation and, if it succeeds, logs it under the same lock so the log order is the
+   * apply order.. then waits for the log outside the lock
+   * 
+   * the mutation runs in a transaction that is only committed once it is appended, so a mutation the
+   * log doesn't take (it already failed) is rolled back and its events dropped.. append() only
+   * buffers though, a failure of the write/force in sync() comes after the commit (see the class doc)
+   */
+  private <T> T write(Function<DependencyManager, T> mutation, byte op, String component, Set<String> dependencies) {
+    long[] lsn = new long[1];
+    T result = dependencyManager.write(dependencyManager -> {
+      try (Transaction transaction = dependencyManager.begin()) {
+        T value = mutation.apply(dependencyManager);
+        lsn[0] = log.append(op, component, dependencies);
+        transaction.commit();
+        return value;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    try {
+      log.sync(lsn[0]);
+      if (lsn[0] - checkpointLsn >= checkpointInterval)
+        checkpoint();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return result;
+  }
+
+  /**
+   * checkpoint
+   * 
+   * writes a snapshot of the current state and deletes the log records it covers.. only the log roll
+   * holds up writers, the snapshot is written from an immutable DependencyManagerSnapshot
+   * 
+   * does nothing if another checkpoint is already running
+   * 
+   * @throws IOException
+   */
+  public void checkpoint() throws IOException {
+    if (checkpointing.compareAndSet(false, true)) {
+      try {
+        SnapshotFile[] snapshotFile = new SnapshotFile[1];
+        try {
+          dependencyManager.write(manager -> {
+            try {
+              // nothing can be applied or logged in between
+              snapshotFile[0] = new SnapshotFile(log.roll(), manager.snapshot(dependencyManager.snapshot()));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            return null;
+          });
+        } catch (UncheckedIOException e) {
+          throw e.getCause();
+        }
+        if (snapshotFile[0].lsn != checkpointLsn) {
+          snapshotFile[0].write(directory);
+          checkpointLsn = snapshotFile[0].lsn;
+          log.truncate(checkpointLsn);
+          SnapshotFile.truncate(directory, checkpointLsn);
+        }
+      } finally {
+        checkpointing.set(false);
+      }
+    }
+  }
+
+  /**
+   * list
+   * 
+   * @see ConcurrentDependencyManager#list()
+   */
+  public Set<String> list() {
+    return dependencyManager.list();
+  }
+
+  /**
+   * isdepend
+   * 
+   * @see ConcurrentDependencyManager#isdepend(String, Set)
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+    return dependencyManager.isdepend(component, dependencies);
+  }
+
+  /**
+   * closure
+   * 
+   * @see ConcurrentDependencyManager#closure(String)
+   */
+  public List<String> closure(String component) {
+    return dependencyManager.closure(component);
+  }
+
+  /**
+   * planInstall
+   * 
+   * @see ConcurrentDependencyManager#planInstall(String)
+   */
+  public Set<String> planInstall(String componentToBeInstalled) {
+    return dependencyManager.planInstall(componentToBeInstalled);
+  }
+
+  /**
+   * planRemove
+   * 
+   * @see ConcurrentDependencyManager#planRemove(String)
+   */
+  public Set<String> planRemove(String componentToBeRemoved) {
+    return dependencyManager.planRemove(componentToBeRemoved);
+  }
+
+  /**
+   * snapshot
+   * 
+   * @see ConcurrentDependencyManager#snapshot()
+   */
+  public DependencyManagerSnapshot snapshot() {
+    return dependencyManager.snapshot();
+  }
+
+  /**
+   * close
+   * 
+   * closes the log.. the next open replays it
+   */
+  @Override
+  public void close() throws IOException {
+    log.close();
+  }
+
+}
@@ -0,0 +1,255 @@
+package dependencymanager;
+
+/**
+ * immutable map from non-negative long keys to values w/structural sharing
+ * 
+ * a hash array mapped trie w/the key itself as the hash: every node has up to 32 children, indexed by
+ * 5 bits of the key, and only stores the children that exist (bitmap + packed array).. put() and remove()
+ * copy the O(log32 n) nodes on the path to the key and share everything else w/the old map, so keeping
+ * old versions around is cheap
+ * 
+ * because the key isn't scrambled the entries are iterated in ascending key order, e.g., a map from
+ * install stamp to id iterates in installation order
+ * 
+ * thread-safe since immutable
+ */
+final class PersistentLongMap<V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentLongMap<Object> EMPTY = new PersistentLongMap<>(null, 0, 0);
+
+  // null if empty
+  private final Node root;
+
+  // shift of the root level.. keys of the map are < 2^(shift+5)
+  private final int shift;
+
+  private final int size;
+
+  private PersistentLongMap(Node root, int shift, int size) {
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  /**
+   * empty
+   * 
+   * @return the empty map
+   */
+  @SuppressWarnings("unchecked")
+  static <V> PersistentLongMap<V> empty() {
+    return (PersistentLongMap<V>) EMPTY;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * get
+   * 
+   * @param key
+   * @return value of key or null
+   */
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    if (key < 0 || !fits(key, shift))
+      return null;
+    Node node = root;
+    for (int s = shift; node != null; s -= BITS) {
+      int bit = 1 << ((key >>> s) & MASK);
+      if ((node.bitmap & bit) == 0)
+        return null;
+      Object slot = node.slots[node.index(bit)];
+      if (s == 0)
+        return (V) slot;
+      node = (Node) slot;
+    }
+    return null;
+  }
+
+  /**
+   * put
+   * 
+   * @param key >= 0
+   * @param value not null
+   * @return map w/key mapped to value
+   */
+  PersistentLongMap<V> put(long key, V value) {
+    if (key < 0)
+      throw new IllegalArgumentException(String.format("key %d is negative", key));
+    if (value == null)
+      throw new IllegalArgumentException("value is null");
+
+    // grow upwards until key fits
+    Node newRoot = root;
+    int newShift = shift;
+    while (!fits(key, newShift)) {
+      if (newRoot != null)
+        newRoot = new Node(1, new Object[] { newRoot });
+      newShift += BITS;
+    }
+
+    int newSize = get(key) == null ? size + 1 : size;
+    return new PersistentLongMap<>(put(newRoot, newShift, key, value), newShift, newSize);
+  }
+
+  private static Node put(Node node, int shift, long key, Object value) {
+    int bit = 1 << ((key >>> shift) & MASK);
+    if (node == null)
+      return new Node(bit, new Object[] { shift == 0 ? value : put(null, shift - BITS, key, value) });
+    int index = node.index(bit);
+    if ((node.bitmap & bit) != 0) {
+      Object[] slots = node.slots.clone();
+      slots[index] = shift == 0 ? value : put((Node) slots[index], shift - BITS, key, value);
+      return new Node(node.bitmap, slots);
+    }
+    Object[] slots = new Object[node.slots.length + 1];
+    System.arraycopy(node.slots, 0, slots, 0, index);
+    slots[index] = shift == 0 ? value : put(null, shift - BITS, key, value);
+    System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+    return new Node(node.bitmap | bit, slots);
+  }
+
+  /**
+   * remove
+   * 
+   * @param key
+   * @return map w/o key
+   */
+  PersistentLongMap<V> remove(long key) {
+    if (get(key) == null)
+      return this;
+    return size == 1 ? empty() : new PersistentLongMap<>(remove(root, shift, key), shift, size - 1);
+  }
+
+  private static Node remove(Node node, int shift, long key) {
+    int bit = 1 << ((key >>> shift) & MASK);
+    int index = node.index(bit);
+    Object slot = shift == 0 ? null : remove((Node) node.slots[index], shift - BITS, key);
+    if (slot != null) {
+      Object[] slots = node.slots.clone();
+      slots[index] = slot;
+      return new Node(node.bitmap, slots);
+    }
+    if (node.bitmap == bit)
+      return null; // last one
+    Object[] slots = new Object[node.slots.length - 1];
+    System.arraycopy(node.slots, 0, slots, 0, index);
+    System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+    return new Node(node.bitmap & ~bit, slots);
+  }
+
+  /**
+   * cursor
+   * 
+   * @return cursor over the entries in ascending key order
+   */
+  Cursor<V> cursor() {
+    return new Cursor<>(this);
+  }
+
+  private static boolean fits(long key, int shift) {
+    return shift + BITS >= 63 || key >>> (shift + BITS) == 0;
+  }
+
+  /**
+   * trie node.. slots are child nodes or, at shift 0, values
+   */
+  private static final class Node {
+
+    final int bitmap;
+    final Object[] slots;
+
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    int index(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+  }
+
+  /**
+   * in-order cursor, e.g.,
+   * 
+   * <pre>
+   * for (Cursor&lt;V&gt; cursor = map.cursor(); cursor.next();)
+   *   use(cursor.key(), cursor.value());
+   * </pre>
+   */
+  static final class Cursor<V> {
+
+    // one entry per level.. the node, its children not visited yet and the key bits above it
+    private final Node[] nodes = new Node[64 / BITS + 1];
+    private final int[] remaining = new int[nodes.length];
+    private final long[] prefixes = new long[nodes.length];
+    private int depth;
+    private final int shift;
+
+    private long key;
+    private V value;
+
+    private Cursor(PersistentLongMap<V> map) {
+      shift = map.shift;
+      if (map.root == null) {
+        depth = -1;
+      } else {
+        nodes[0] = map.root;
+        remaining[0] = map.root.bitmap;
+      }
+    }
+
+    /**
+     * next
+     * 
+     * advances to the next entry
+     * 
+     * @return false if there are no more entries
+     */
+    @SuppressWarnings("unchecked")
+    boolean next() {
+      while (depth >= 0) {
+        if (remaining[depth] == 0) {
+          --depth;
+          continue;
+        }
+        int bit = Integer.lowestOneBit(remaining[depth]);
+        remaining[depth] &= ~bit;
+        Node node = nodes[depth];
+        Object slot = node.slots[node.index(bit)];
+        int s = shift - depth * BITS;
+        long k = prefixes[depth] | ((long) Integer.numberOfTrailingZeros(bit) << s);
+        if (s == 0) {
+          key = k;
+          value = (V) slot;
+          return true;
+        }
+        ++depth;
+        nodes[depth] = (Node) slot;
+        remaining[depth] = nodes[depth].bitmap;
+        prefixes[depth] = k;
+      }
+      return false;
+    }
+
+    long key() {
+      return key;
+    }
+
+    V value() {
+      return value;
+    }
+
+  }
+
+}
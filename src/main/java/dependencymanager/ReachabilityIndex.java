@@ -0,0 +1,285 @@
+package dependencymanager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * reachability index over the static dependencies
+ * 
+ * transitive dependencies (w/depth) and transitive dependents are computed on demand and cached as
+ * bitsets, least recently used first.. a traversal that runs into a cached component ors in its bitset
+ * instead of walking below it
+ * 
+ * uncached reachability/path queries are confined by the topological order: a component can only
+ * reach components that come after it, so components after the target are never visited
+ * 
+ * adding an edge component->dependency only drops the cached dependencies of component and of what
+ * depends on it and the cached dependents of dependency and of what it depends on.. the cached bitsets
+ * themselves tell which those are, so invalidating is a bit test per cached entry, not a traversal
+ */
+final class ReachabilityIndex {
+
+  private final ComponentGraph graph;
+  private final TopologicalOrder order;
+
+  // id -> transitive dependencies/dependents.. least recently used first
+  private final Map<Integer/*id*/, Dependencies> dependencies;
+  private final Map<Integer/*id*/, BitSet> dependents;
+
+  // traversal state.. depths and parents are only valid for marked ids
+  private final Marks marks = new Marks();
+  private final IntList path = new IntList();
+  private final IntList positions = new IntList();
+  private int[] depths = new int[16];
+  private int[] parents = new int[16];
+
+  /**
+   * transitive dependencies of a component
+   */
+  static final class Dependencies {
+    final BitSet ids;
+    final int depth; // longest chain of dependencies below the component
+    Dependencies(BitSet ids, int depth) {
+      this.ids = ids;
+      this.depth = depth;
+    }
+  }
+
+  /**
+   * ctor
+   * 
+   * @param graph
+   * @param order topological order of graph
+   * @param maximumSize max number of cached bitsets of either kind
+   */
+  ReachabilityIndex(ComponentGraph graph, TopologicalOrder order, int maximumSize) {
+    this.graph = graph;
+    this.order = order;
+    this.dependencies = new LinkedHashMap<Integer, Dependencies>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Dependencies> eldest) {
+        return size() > maximumSize;
+      }
+      private static final long serialVersionUID = 1L;
+    };
+    this.dependents = new LinkedHashMap<Integer, BitSet>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, BitSet> eldest) {
+        return size() > maximumSize;
+      }
+      private static final long serialVersionUID = 1L;
+    };
+  }
+
+  /**
+   * dependencies
+   * 
+   * @param id
+   * @return transitive dependencies of id (w/o id).. callers must not modify them
+   */
+  Dependencies dependencies(int id) {
+    Dependencies cached = dependencies.get(id);
+    if (cached == null)
+      dependencies.put(id, cached = computeDependencies(id));
+    return cached;
+  }
+
+  /**
+   * dependents
+   * 
+   * @param id
+   * @return transitive dependents of id (w/o id).. callers must not modify it
+   */
+  BitSet dependents(int id) {
+    BitSet cached = dependents.get(id);
+    if (cached == null)
+      dependents.put(id, cached = computeDependents(id));
+    return cached;
+  }
+
+  /**
+   * reaches
+   * 
+   * @param from
+   * @param to
+   * @return true if from (transitively) depends on to
+   */
+  boolean reaches(int from, int to) {
+    if (from == to || order.ord(from) >= order.ord(to))
+      return false; // can't be reached from above
+
+    Dependencies cachedDependencies = dependencies.get(from);
+    if (cachedDependencies != null)
+      return cachedDependencies.ids.get(to);
+    BitSet cachedDependents = dependents.get(to);
+    if (cachedDependents != null)
+      return cachedDependents.get(from);
+
+    return path(from, to) != null;
+  }
+
+  /**
+   * path
+   * 
+   * bfs confined to the components between from and to in topological order
+   * 
+   * @param from
+   * @param to
+   * @return a shortest path [from, ..., to] of dependencies or null if from doesn't depend on to
+   */
+  int[] path(int from, int to) {
+    if (from == to || order.ord(from) >= order.ord(to))
+      return null;
+
+    int bound = order.ord(to);
+    ensureCapacity();
+    marks.clear();
+    path.clear(); // used as the bfs queue here
+    marks.mark(from);
+    parents[from] = -1;
+    path.add(from);
+    for (int i = 0; i < path.size(); ++i) {
+      int node = path.get(i);
+      for (int j = 0; j < graph.successorCount(node); ++j) {
+        int successor = graph.successor(node, j);
+        if (successor == to) {
+          IntList reversed = new IntList();
+          reversed.add(to);
+          for (int n = node; n != -1; n = parents[n])
+            reversed.add(n);
+          int[] result = new int[reversed.size()];
+          for (int k = 0; k < result.length; ++k)
+            result[k] = reversed.get(result.length - 1 - k);
+          return result;
+        }
+        if (order.ord(successor) < bound && marks.mark(successor)) {
+          parents[successor] = node;
+          path.add(successor);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * addEdge
+   * 
+   * must be called after the edge component->dependency was added to the graph
+   * 
+   * @param component
+   * @param dependency
+   */
+  void addEdge(int component, int dependency) {
+    for (Iterator<Map.Entry<Integer, Dependencies>> iter = dependencies.entrySet().iterator(); iter.hasNext();) {
+      Map.Entry<Integer, Dependencies> entry = iter.next();
+      if (entry.getKey() == component || entry.getValue().ids.get(component))
+        iter.remove();
+    }
+    for (Iterator<Map.Entry<Integer, BitSet>> iter = dependents.entrySet().iterator(); iter.hasNext();) {
+      Map.Entry<Integer, BitSet> entry = iter.next();
+      if (entry.getKey() == dependency || entry.getValue().get(dependency))
+        iter.remove();
+    }
+  }
+
+  /**
+   * clear
+   * 
+   * drops everything.. e.g., after edges were removed
+   */
+  void clear() {
+    dependencies.clear();
+    dependents.clear();
+  }
+
+  /**
+   * computeDependencies
+   * 
+   * iterative post-order dfs.. the depth of a component is known once all of its dependencies are done
+   * 
+   * @param id
+   * @return
+   */
+  private Dependencies computeDependencies(int id) {
+    BitSet ids = new BitSet();
+    ensureCapacity();
+    marks.clear();
+    path.clear();
+    positions.clear();
+    marks.mark(id);
+    depths[id] = 0;
+    path.add(id);
+    positions.add(0);
+    while (!path.isEmpty()) {
+      int node = path.last();
+      int position = positions.last();
+      if (position < graph.successorCount(node)) {
+        positions.set(positions.size() - 1, position + 1);
+        int next = graph.successor(node, position);
+        if (marks.mark(next)) {
+          Dependencies cached = dependencies.get(next);
+          if (cached != null) {
+            ids.set(next);
+            ids.or(cached.ids);
+            depths[next] = cached.depth;
+          } else {
+            depths[next] = 0;
+            path.add(next);
+            positions.add(0);
+            continue;
+          }
+        }
+        depths[node] = Math.max(depths[node], depths[next] + 1);
+      } else {
+        path.removeLast();
+        positions.removeLast();
+        if (node != id) {
+          ids.set(node);
+          int parent = path.last();
+          depths[parent] = Math.max(depths[parent], depths[node] + 1);
+        }
+      }
+    }
+    return new Dependencies(ids, depths[id]);
+  }
+
+  /**
+   * computeDependents
+   * 
+   * @param id
+   * @return
+   */
+  private BitSet computeDependents(int id) {
+    BitSet ids = new BitSet();
+    marks.clear();
+    path.clear();
+    marks.mark(id);
+    path.add(id);
+    while (!path.isEmpty()) {
+      int node = path.removeLast();
+      for (int i = 0; i < graph.predecessorCount(node); ++i) {
+        int predecessor = graph.predecessor(node, i);
+        if (marks.mark(predecessor)) {
+          ids.set(predecessor);
+          BitSet cached = dependents.get(predecessor);
+          if (cached != null)
+            ids.or(cached); // marks don't know about these.. harmless, they are only set twice
+          else
+            path.add(predecessor);
+        }
+      }
+    }
+    return ids;
+  }
+
+  private void ensureCapacity() {
+    if (depths.length < graph.size()) {
+      depths = Arrays.copyOf(depths, Math.max(graph.size(), depths.length * 2));
+      parents = Arrays.copyOf(parents, depths.length);
+    }
+  }
+
+}
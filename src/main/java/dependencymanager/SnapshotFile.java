@@ -0,0 +1,145 @@
+package dependencymanager;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.TreeMap;
+
+/**
+ * binary snapshot of a dependency manager's state as of some write-ahead log lsn
+ * 
+ * snapshot files are named "snapshot-<lsn>.bin" and use the MappedSnapshot format, so they can also be
+ * opened read-only w/MappedSnapshot.open().. a snapshot is written to a temp file, forced and then
+ * atomically renamed, so a snapshot file is either complete or not there at all
+ */
+final class SnapshotFile {
+
+  // lsn of the last write-ahead log record reflected in snapshot
+  final long lsn;
+
+  final DependencyManagerSnapshot snapshot;
+
+  /**
+   * ctor
+   * 
+   * @param lsn
+   * @param snapshot
+   */
+  SnapshotFile(long lsn, DependencyManagerSnapshot snapshot) {
+    this.lsn = lsn;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * write
+   * 
+   * @param directory
+   * @throws IOException
+   */
+  void write(Path directory) throws IOException {
+    Path file = path(directory, lsn);
+    Path temp = directory.resolve(file.getFileName() + ".tmp");
+    MappedSnapshot.write(snapshot, lsn, temp);
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * read
+   * 
+   * @param file
+   * @return
+   * @throws IOException if file is not a snapshot or is corrupt
+   */
+  static SnapshotFile read(Path file) throws IOException {
+    MappedSnapshot mapped = MappedSnapshot.open(file);
+    if (!mapped.verify())
+      throw new IOException(String.format("%s is corrupt", file));
+
+    // names
+    ComponentGraph graph = new ComponentGraph();
+    int size = mapped.size();
+    for (int id = 0; id < size; ++id) {
+      if (graph.intern(mapped.name(id)) != id)
+        throw new IOException(String.format("%s is corrupt", file));
+    }
+
+    // static dependencies
+    for (int id = 0; id < size; ++id) {
+      for (int i = 0; i < mapped.successorCount(id); ++i)
+        graph.addEdge(id, checkId(mapped.successor(id, i), size, file));
+    }
+
+    // installed components
+    BitSet explicit = new BitSet(size);
+    int[] order = new int[mapped.installedCount()];
+    long[] stamps = new long[order.length];
+    for (int i = 0; i < order.length; ++i) {
+      order[i] = checkId(mapped.installed(i), size, file);
+      stamps[i] = mapped.stamp(i);
+      explicit.set(order[i], mapped.isExplicit(order[i]));
+    }
+
+    return new SnapshotFile(mapped.lsn(), new DependencyManagerSnapshot(graph.freeze(), FrozenInstallState.of(0, order, stamps, explicit)));
+  }
+
+  /**
+   * latest
+   * 
+   * @param directory
+   * @return the snapshot w/the highest lsn in directory or null
+   * @throws IOException
+   */
+  static SnapshotFile latest(Path directory) throws IOException {
+    TreeMap<Long, Path> snapshots = snapshots(directory);
+    return snapshots.isEmpty() ? null : read(snapshots.lastEntry().getValue());
+  }
+
+  /**
+   * truncate
+   * 
+   * deletes the snapshots older than lsn
+   * 
+   * @param directory
+   * @param lsn
+   * @throws IOException
+   */
+  static void truncate(Path directory, long lsn) throws IOException {
+    for (Path snapshot : snapshots(directory).headMap(lsn).values())
+      Files.deleteIfExists(snapshot);
+  }
+
+  private static int checkId(int id, int size, Path file) throws IOException {
+    if (id < 0 || id >= size)
+      throw new IOException(String.format("%s is corrupt", file));
+    return id;
+  }
+
+  static Path path(Path directory, long lsn) {
+    return directory.resolve(String.format("snapshot-%016x.bin", lsn));
+  }
+
+  /**
+   * snapshots
+   * 
+   * @param directory
+   * @return lsn -> snapshot file
+   */
+  static TreeMap<Long, Path> snapshots(Path directory) throws IOException {
+    TreeMap<Long, Path> snapshots = new TreeMap<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "snapshot-*.bin")) {
+      for (Path path : paths) {
+        String name = path.getFileName().toString();
+        try {
+          snapshots.put(Long.parseUnsignedLong(name.substring(9, name.length() - 4), 16), path);
+        } catch (NumberFormatException e) {
+          // not ours
+        }
+      }
+    }
+    return snapshots;
+  }
+
+}
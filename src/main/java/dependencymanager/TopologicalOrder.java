@@ -0,0 +1,222 @@
+package dependencymanager;
+
+import java.util.Arrays;
+
+/**
+ * dynamic topological order of the static dependency graph
+ * 
+ * pearce-kelly: ord(component) < ord(dependency) holds for every edge, so adding an edge only
+ * needs to visit the components whose ord lies between the two endpoints (the "affected region")
+ * instead of doing a full dfs
+ */
+class TopologicalOrder {
+
+  private final ComponentGraph graph;
+
+  // id -> topological index.. always a permutation of the ids
+  private int[] ord = new int[0];
+
+  // traversal state
+  private final Marks marks = new Marks();
+  private final IntList stack = new IntList();
+  private int[] parents = new int[0];
+
+  /**
+   * ctor
+   * 
+   * @param graph the graph to keep an order for
+   */
+  TopologicalOrder(ComponentGraph graph) {
+    this.graph = graph;
+  }
+
+  /**
+   * ord
+   * 
+   * new components go to the end of the order.. a component w/no edges can go anywhere
+   * 
+   * @param id
+   * @return topological index of id
+   */
+  int ord(int id) {
+    if (id >= ord.length) {
+      int length = ord.length;
+      ord = Arrays.copyOf(ord, Math.max(Math.max(graph.size(), id + 1), length * 2));
+      for (int i = length; i < ord.length; ++i)
+        ord[i] = i;
+    }
+    return ord[id];
+  }
+
+  /**
+   * sort
+   * 
+   * static topological sort.. O(n+m)
+   * 
+   * @param graph an acyclic graph
+   * @return all ids of graph ordered so that every component comes before its dependencies
+   */
+  static int[] sort(ComponentGraph graph) {
+    int[] sorted = new int[graph.size()];
+    int k = sorted.length; // post-order filled in from the back
+
+    Marks marks = new Marks();
+    IntList path = new IntList();
+    IntList positions = new IntList();
+    for (int root = 0; root < sorted.length; ++root) {
+      if (marks.mark(root)) {
+        path.add(root);
+        positions.add(0);
+        while (!path.isEmpty()) {
+          int node = path.last();
+          int position = positions.last();
+          if (position < graph.successorCount(node)) {
+            positions.set(positions.size() - 1, position + 1);
+            int next = graph.successor(node, position);
+            if (marks.mark(next)) {
+              path.add(next);
+              positions.add(0);
+            }
+          } else {
+            path.removeLast();
+            positions.removeLast();
+            sorted[--k] = node;
+          }
+        }
+      }
+    }
+
+    return sorted;
+  }
+
+  /**
+   * findCycle
+   * 
+   * @param component
+   * @param dependency
+   * @return the cycle [component, dependency, ..., component] that adding the edge component->dependency
+   *         would create, or null if the edge is safe to add
+   */
+  int[] findCycle(int component, int dependency) {
+
+    if (component == dependency)
+      return new int[] { component, component };
+
+    int lb = ord(dependency);
+    int ub = ord(component);
+
+    // only a path dependency->...->component can close a cycle and such a path
+    // can only exist if dependency currently comes before component
+    if (lb > ub)
+      return null;
+
+    if (parents.length < graph.size())
+      parents = new int[Math.max(graph.size(), parents.length * 2)];
+
+    // forward dfs from dependency, confined to the affected region
+    marks.clear();
+    stack.clear();
+    marks.mark(dependency);
+    parents[dependency] = -1;
+    stack.add(dependency);
+    while (!stack.isEmpty()) {
+      int node = stack.removeLast();
+      for (int i = 0; i < graph.successorCount(node); ++i) {
+        int successor = graph.successor(node, i);
+        if (successor == component) {
+          // found dependency->...->node->component.. walk the parents back up
+          IntList cycle = new IntList();
+          cycle.add(component);
+          for (int n = node; n != -1; n = parents[n])
+            cycle.add(n);
+          cycle.add(component);
+          int[] path = cycle.toArray();
+          for (int l = 0, r = path.length - 1; l < r; ++l, --r) {
+            int tmp = path[l];
+            path[l] = path[r];
+            path[r] = tmp;
+          }
+          return path;
+        }
+        if (ord(successor) < ub && marks.mark(successor)) {
+          parents[successor] = node;
+          stack.add(successor);
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * addEdge
+   * 
+   * restores the order after the edge component->dependency was added to the graph
+   * 
+   * the caller must have checked findCycle first
+   * 
+   * @param component
+   * @param dependency
+   */
+  void addEdge(int component, int dependency) {
+    int lb = ord(dependency);
+    int ub = ord(component);
+
+    if (lb > ub)
+      return; // already in order
+
+    // forward: everything in the region reachable from dependency
+    long[] forward = visit(dependency, ub, true);
+    // backward: everything in the region that reaches component
+    long[] backward = visit(component, lb, false);
+
+    // reuse the same indices.. backward goes first, then forward
+    int[] indices = new int[forward.length + backward.length];
+    int i = 0;
+    for (long node : backward)
+      indices[i++] = (int) (node >>> 32);
+    for (long node : forward)
+      indices[i++] = (int) (node >>> 32);
+    Arrays.sort(indices);
+
+    i = 0;
+    for (long node : backward)
+      ord[(int) node] = indices[i++];
+    for (long node : forward)
+      ord[(int) node] = indices[i++];
+  }
+
+  /**
+   * visit
+   * 
+   * @param start
+   * @param bound forward: visit while ord < bound.. backward: visit while ord > bound
+   * @param forward true to follow dependencies, false to follow dependents
+   * @return visited components as (ord << 32 | id), sorted by ord
+   */
+  private long[] visit(int start, int bound, boolean forward) {
+    IntList visited = new IntList();
+    marks.clear();
+    stack.clear();
+    marks.mark(start);
+    stack.add(start);
+    while (!stack.isEmpty()) {
+      int node = stack.removeLast();
+      visited.add(node);
+      int count = forward ? graph.successorCount(node) : graph.predecessorCount(node);
+      for (int i = 0; i < count; ++i) {
+        int next = forward ? graph.successor(node, i) : graph.predecessor(node, i);
+        int o = ord(next);
+        if ((forward ? o < bound : o > bound) && marks.mark(next))
+          stack.add(next);
+      }
+    }
+    long[] result = new long[visited.size()];
+    for (int i = 0; i < result.length; ++i) {
+      int id = visited.get(i);
+      result[i] = ((long) ord[id] << 32) | id;
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+}
@@ -0,0 +1,184 @@
+package dependencymanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * transaction over a dependency manager
+ * 
+ * changes are applied to the dependency manager as they are made and recorded in an undo log, so
+ * reads within the transaction see them.. events are held back until commit(), so subscribers only
+ * ever see committed changes, and rollback() undoes every change made since begin()
+ * 
+ * while a transaction is open every mutation of the dependency manager is part of it.. one
+ * transaction at a time, not thread-safe
+ * 
+ * typical usage:
+ * 
+ * <pre>
+ * try (Transaction tx = dependencyManager.begin()) {
+ *   tx.depend("a", dependencies);
+ *   tx.install("a");
+ *   tx.commit();
+ * } // rolled back unless committed
+ * </pre>
+ * 
+ * @see DependencyManager#transact(java.util.function.Consumer)
+ */
+public final class Transaction implements AutoCloseable {
+
+  private final DependencyManager dependencyManager;
+
+  // undo log
+  final Journal journal;
+
+  // held back events in the order they were posted
+  final List<Object> events = new ArrayList<>();
+
+  // DependencyManager.operation() at begin()
+  final long operation;
+
+  // false once committed or rolled back
+  private boolean open = true;
+
+  /**
+   * ctor
+   * 
+   * @param dependencyManager
+   * @param journal
+   * @param operation
+   */
+  Transaction(DependencyManager dependencyManager, Journal journal, long operation) {
+    this.dependencyManager = dependencyManager;
+    this.journal = journal;
+    this.operation = operation;
+  }
+
+  /**
+   * depend
+   * 
+   * @see DependencyManager#depend(String, Set)
+   */
+  public void depend(String component, Set<String> dependencies) {
+    check().depend(component, dependencies);
+  }
+
+  /**
+   * dependAll
+   * 
+   * @see DependencyManager#dependAll(Map)
+   */
+  public void dependAll(Map<String, ? extends Set<String>> dependencies) {
+    check().dependAll(dependencies);
+  }
+
+  /**
+   * isdepend
+   * 
+   * @see DependencyManager#isdepend(String, Set)
+   */
+  public boolean isdepend(String component, Set<String> dependencies) {
+    return check().isdepend(component, dependencies);
+  }
+
+  /**
+   * install
+   * 
+   * @see DependencyManager#install(String)
+   */
+  public Set<String> install(String componentToBeInstalled) {
+    return check().install(componentToBeInstalled);
+  }
+
+  /**
+   * installAll
+   * 
+   * @see DependencyManager#installAll(Collection)
+   */
+  public List<Set<String>> installAll(Collection<String> componentsToBeInstalled) {
+    return check().installAll(componentsToBeInstalled);
+  }
+
+  /**
+   * remove
+   * 
+   * @see DependencyManager#remove(String)
+   */
+  public Set<String> remove(String componentToBeRemoved) {
+    return check().remove(componentToBeRemoved);
+  }
+
+  /**
+   * removeAll
+   * 
+   * @see DependencyManager#removeAll(Collection)
+   */
+  public List<Set<String>> removeAll(Collection<String> componentsToBeRemoved) {
+    return check().removeAll(componentsToBeRemoved);
+  }
+
+  /**
+   * list
+   * 
+   * @see DependencyManager#list()
+   */
+  public Set<String> list() {
+    return check().list();
+  }
+
+  /**
+   * commit
+   * 
+   * keeps the changes and posts the held back events
+   * 
+   * @throws IllegalStateException if the transaction is not open
+   */
+  public void commit() {
+    check();
+    open = false;
+    dependencyManager.commit(this);
+  }
+
+  /**
+   * rollback
+   * 
+   * undoes the changes and drops the held back events
+   * 
+   * @throws IllegalStateException if the transaction is not open
+   */
+  public void rollback() {
+    check();
+    open = false;
+    dependencyManager.rollback(this);
+  }
+
+  /**
+   * isOpen
+   * 
+   * @return false once committed or rolled back
+   */
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * close
+   * 
+   * rolls back unless committed
+   */
+  @Override
+  public void close() {
+    if (open)
+      rollback();
+  }
+
+  private DependencyManager check() {
+    if (!open)
+      throw new IllegalStateException("transaction is not open");
+    return dependencyManager;
+  }
+
+}
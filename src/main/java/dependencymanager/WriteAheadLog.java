@@ -0,0 +1,443 @@
+package dependencymanager;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * append-only log of the mutations (depend, install, remove) applied to a dependency manager
+ * 
+ * the log is a sequence of segment files "wal-<lsn>.log" in one directory.. segment <lsn> holds the
+ * records after log sequence number <lsn>, so records are numbered 1, 2, 3.. across segments and a
+ * new segment is started whenever a snapshot is taken
+ * 
+ * each record is [length][crc32][op][count][strings..].. a torn record at the end of the last segment
+ * (crash in the middle of a write) is truncated when the log is opened
+ * 
+ * group commit: append() only buffers the record.. sync() writes and forces everything buffered so far
+ * w/one write+force, so concurrent writers share the cost of the fsync
+ * 
+ * thread-safe
+ */
+class WriteAheadLog implements Closeable {
+
+  // record ops
+  static final byte DEPEND = 'D';
+  static final byte INSTALL = 'I';
+  static final byte REMOVE = 'R';
+
+  // record header: length + crc32
+  private static final int HEADER_SIZE = 8;
+
+  // sanity limit for a record's length
+  private static final int MAX_RECORD_SIZE = 64 << 20;
+
+  private static final int BUFFER_SIZE = 64 << 10;
+
+  /**
+   * applies a replayed record
+   */
+  interface Replay {
+    void apply(byte op, String component, List<String> dependencies);
+  }
+
+  private final Path directory;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition synced = lock.newCondition();
+
+  // guarded by lock
+  private FileChannel channel; // current segment
+  private long base; // lsn the current segment starts after
+  private long lsn; // lsn of the last appended record
+  private long durable; // lsn of the last forced record
+  private ByteBuffer pending = ByteBuffer.allocate(BUFFER_SIZE); // appended, not yet written
+  private ByteBuffer writing = ByteBuffer.allocate(BUFFER_SIZE); // being written by the sync leader
+  private boolean syncing; // a sync leader is writing
+  private IOException failure; // sticky.. the log is unusable after a failed write
+
+  private final CRC32 crc = new CRC32();
+
+  /**
+   * ctor
+   * 
+   * opens the log in directory and replays every record after lsn start
+   * 
+   * @param directory
+   * @param start lsn to replay from.. e.g., the lsn of the latest snapshot
+   * @param replay
+   * @throws IOException if the log is missing records after start or is corrupt
+   */
+  WriteAheadLog(Path directory, long start, Replay replay) throws IOException {
+    this.directory = directory;
+
+    // segments that can hold records after start
+    TreeMap<Long, Path> segments = segments(directory);
+    Long first = segments.floorKey(start);
+    if (first == null && !segments.isEmpty())
+      throw new IOException(String.format("write-ahead log is missing records after %d", start));
+
+    lsn = start;
+    base = start;
+    Path last = null;
+    long valid = 0;
+    if (first != null) {
+      lsn = first;
+      for (long segmentBase : segments.tailMap(first).keySet()) {
+        if (segmentBase != lsn)
+          throw new IOException(String.format("write-ahead log is missing records %d..%d", lsn + 1, segmentBase));
+        if (last != null && valid != Files.size(last))
+          throw new IOException(String.format("write-ahead log segment %s is corrupt", last));
+        last = segments.get(segmentBase);
+        base = segmentBase;
+        valid = replay(last, start, replay);
+      }
+      if (lsn < start)
+        throw new IOException(String.format("write-ahead log is missing records %d..%d", lsn + 1, start));
+    }
+
+    // continue appending to the last segment
+    if (last == null)
+      last = segment(directory, base);
+    channel = FileChannel.open(last, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    channel.truncate(valid); // torn tail
+    channel.position(valid);
+    durable = lsn;
+  }
+
+  /**
+   * replay
+   * 
+   * @param segment
+   * @param start records up to and including start are skipped
+   * @param replay
+   * @return length of the valid prefix of segment
+   */
+  private long replay(Path segment, long start, Replay replay) throws IOException {
+    long position = 0;
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+      byte[] header = new byte[HEADER_SIZE];
+      byte[] payload = new byte[0];
+      while (true) {
+        // header
+        if (!readFully(in, header, HEADER_SIZE))
+          break;
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        int length = headerBuffer.getInt();
+        int checksum = headerBuffer.getInt();
+        if (length < 5 || length > MAX_RECORD_SIZE)
+          break;
+
+        // payload
+        if (payload.length < length)
+          payload = new byte[Math.max(length, payload.length * 2)];
+        if (!readFully(in, payload, length))
+          break;
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum)
+          break;
+
+        position += HEADER_SIZE + length;
+        if (++lsn > start) {
+          try {
+            apply(ByteBuffer.wrap(payload, 0, length), replay);
+          } catch (RuntimeException e) {
+            throw new IOException(String.format("can't replay write-ahead log record %d", lsn), e);
+          }
+        }
+      }
+    }
+    return position;
+  }
+
+  /**
+   * apply
+   * 
+   * @param payload
+   * @param replay
+   */
+  private static void apply(ByteBuffer payload, Replay replay) {
+    byte op = payload.get();
+    int count = payload.getInt();
+    List<String> strings = new ArrayList<>(count);
+    for (int i = 0; i < count; ++i) {
+      int length = payload.getInt();
+      strings.add(new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8));
+      payload.position(payload.position() + length);
+    }
+    replay.apply(op, strings.get(0), strings.subList(1, count));
+  }
+
+  /**
+   * readFully
+   * 
+   * @return false if in ended before length bytes were read
+   */
+  private static boolean readFully(DataInputStream in, byte[] bytes, int length) throws IOException {
+    try {
+      in.readFully(bytes, 0, length);
+      return true;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * append
+   * 
+   * buffers a record.. call sync() to make it durable
+   * 
+   * @param op DEPEND, INSTALL or REMOVE
+   * @param component
+   * @param dependencies dependencies for DEPEND, empty otherwise
+   * @return the record's lsn
+   * @throws IOException if the log has failed
+   */
+  long append(byte op, String component, Collection<String> dependencies) throws IOException {
+    byte[][] strings = new byte[1 + dependencies.size()][];
+    int length = 5;
+    int i = 0;
+    strings[i++] = component.getBytes(StandardCharsets.UTF_8);
+    for (String dependency : dependencies)
+      strings[i++] = dependency.getBytes(StandardCharsets.UTF_8);
+    for (byte[] string : strings)
+      length += 4 + string.length;
+
+    lock.lock();
+    try {
+      checkFailure();
+
+      if (pending.remaining() < HEADER_SIZE + length) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_SIZE + length));
+        pending.flip();
+        grown.put(pending);
+        pending = grown;
+      }
+
+      int start = pending.position();
+      pending.putInt(length);
+      pending.putInt(0); // crc32.. filled in below
+      pending.put(op);
+      pending.putInt(strings.length);
+      for (byte[] string : strings) {
+        pending.putInt(string.length);
+        pending.put(string);
+      }
+      crc.reset();
+      crc.update(pending.array(), start + HEADER_SIZE, length);
+      pending.putInt(start + 4, (int) crc.getValue());
+
+      return ++lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * sync
+   * 
+   * blocks until the record w/the given lsn is durable.. the first waiting thread writes and forces
+   * every buffered record, the others wait for it
+   * 
+   * @param lsn
+   * @throws IOException
+   */
+  void sync(long lsn) throws IOException {
+    lock.lock();
+    try {
+      while (durable < lsn) {
+        checkFailure();
+        if (syncing) {
+          synced.awaitUninterruptibly();
+        } else {
+          // lead this group
+          syncing = true;
+          ByteBuffer buffer = pending;
+          pending = writing;
+          writing = buffer;
+          long target = this.lsn;
+          FileChannel channel = this.channel;
+          lock.unlock();
+          IOException failure = null;
+          try {
+            write(channel, buffer);
+            channel.force(false);
+          } catch (IOException e) {
+            failure = e;
+          } finally {
+            lock.lock();
+            syncing = false;
+            if (failure == null)
+              durable = target;
+            else
+              this.failure = failure;
+            synced.signalAll();
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * roll
+   * 
+   * makes everything appended so far durable and starts a new segment.. the caller must make sure
+   * nothing is appended concurrently if the returned lsn is to match some state
+   * 
+   * @return lsn of the last record in the previous segment
+   * @throws IOException
+   */
+  long roll() throws IOException {
+    lock.lock();
+    try {
+      while (syncing)
+        synced.awaitUninterruptibly();
+      checkFailure();
+      if (lsn == base)
+        return lsn; // current segment is empty
+      try {
+        write(channel, pending);
+        channel.force(false);
+        channel.close();
+        channel = FileChannel.open(segment(directory, lsn), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      } catch (IOException e) {
+        failure = e;
+        throw e;
+      }
+      base = lsn;
+      durable = lsn;
+      return lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * truncate
+   * 
+   * deletes the segments that only hold records up to and including lsn
+   * 
+   * @param lsn e.g., the lsn of a durable snapshot
+   * @throws IOException
+   */
+  void truncate(long lsn) throws IOException {
+    TreeMap<Long, Path> segments = segments(directory);
+    Long keep = segments.floorKey(lsn);
+    if (keep != null) {
+      for (Path segment : segments.headMap(keep).values())
+        Files.deleteIfExists(segment);
+    }
+  }
+
+  /**
+   * lsn
+   * 
+   * @return lsn of the last appended record
+   */
+  long lsn() {
+    lock.lock();
+    try {
+      return lsn;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * close
+   * 
+   * makes everything appended so far durable
+   */
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      while (syncing)
+        synced.awaitUninterruptibly();
+      try {
+        if (failure == null) {
+          write(channel, pending);
+          channel.force(false);
+          durable = lsn;
+        }
+      } finally {
+        channel.close();
+        if (failure == null)
+          failure = new IOException("write-ahead log is closed");
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null)
+      throw new IOException("write-ahead log failed", failure);
+  }
+
+  /**
+   * write
+   * 
+   * writes and clears buffer
+   */
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+    buffer.clear();
+  }
+
+  /**
+   * segment
+   * 
+   * @param directory
+   * @param base
+   * @return path of the segment holding the records after lsn base
+   */
+  static Path segment(Path directory, long base) {
+    return directory.resolve(String.format("wal-%016x.log", base));
+  }
+
+  /**
+   * segments
+   * 
+   * @param directory
+   * @return base -> segment
+   */
+  static TreeMap<Long, Path> segments(Path directory) throws IOException {
+    TreeMap<Long, Path> segments = new TreeMap<>();
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "wal-*.log")) {
+      for (Path path : paths) {
+        String name = path.getFileName().toString();
+        try {
+          segments.put(Long.parseUnsignedLong(name.substring(4, name.length() - 4), 16), path);
+        } catch (NumberFormatException e) {
+          // not ours
+        }
+      }
+    }
+    return segments;
+  }
+
+}
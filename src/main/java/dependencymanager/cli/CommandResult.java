@@ -0,0 +1,121 @@
+package dependencymanager.cli;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.StillNeededByException;
+
+/**
+ * typed result of one cli command line
+ * 
+ * what DependencyManagerCli.batch() renders as text (echo, "\tInstalling x", "\tx is still needed.", ..)
+ * w/o the rendering: the components come straight from the dependency manager and a failure is the
+ * exception itself, so nothing needs to be parsed back out of the output
+ * 
+ * @see DependencyManagerCli#result(String)
+ * @see CommandResultEncoder
+ */
+public final class CommandResult {
+
+  /**
+   * cli commands
+   */
+  public enum Command {
+    DEPEND,
+    INSTALL,
+    REMOVE,
+    LIST,
+    END,
+  }
+
+  public enum Status {
+    OK,
+    FAILED,
+  }
+
+  // the input line as given
+  public final String line;
+
+  // the command or null for an empty line or a bad command
+  public final Command command;
+
+  public final Status status;
+
+  // installed/removed/listed components in order.. empty for DEPEND, END and failures
+  public final List<String/*component*/> components;
+
+  // why the command failed or null if it didn't
+  public final RuntimeException failure;
+
+  /**
+   * ctor
+   * 
+   * @param line
+   * @param command
+   * @param components not copied.. must not change afterwards, e.g., what list() returns
+   * @param failure
+   */
+  CommandResult(String line, Command command, Collection<String> components, RuntimeException failure) {
+    this.line = line;
+    this.command = command;
+    this.status = failure == null ? Status.OK : Status.FAILED;
+    this.components = components instanceof List ? Collections.unmodifiableList((List<String>) components) : new CollectionList(components);
+    this.failure = failure;
+  }
+
+  /**
+   * stillNeededBy
+   * 
+   * @return the installed components that still need the component if REMOVE failed because of them, else empty
+   */
+  public Set<String> stillNeededBy() {
+    return failure instanceof StillNeededByException ? Collections.unmodifiableSet(((StillNeededByException) failure).stillNeededBy) : Collections.emptySet();
+  }
+
+  /**
+   * cycle
+   * 
+   * @return the cycle if DEPEND failed because of circular dependencies, else empty
+   */
+  public List<String> cycle() {
+    return failure instanceof DependsOnException ? Collections.unmodifiableList(((DependsOnException) failure).cycle) : Collections.emptyList();
+  }
+
+  /**
+   * read-only list view of a collection that doesn't change.. iterating goes straight to the
+   * collection, only indexing copies it (into an array, once)
+   */
+  private static final class CollectionList extends AbstractList<String> {
+    private final Collection<String> collection;
+    private volatile Object[] array;
+    CollectionList(Collection<String> collection) {
+      this.collection = collection;
+    }
+    @Override
+    public String get(int index) {
+      Object[] array = this.array;
+      if (array == null)
+        this.array = array = collection.toArray();
+      return (String) array[index];
+    }
+    @Override
+    public Iterator<String> iterator() {
+      return Collections.unmodifiableCollection(collection).iterator();
+    }
+    @Override
+    public int size() {
+      return collection.size();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return status == Status.OK ? String.format("%s %s", line, components) : String.format("%s %s", line, failure);
+  }
+
+}
@@ -0,0 +1,222 @@
+package dependencymanager.cli;
+
+import java.io.BufferedOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * encodes CommandResults for shipping them downstream
+ * 
+ * json() writes one json object per line (ndjson), e.g.,
+ * 
+ * <pre>
+ * {"line":"INSTALL a","command":"INSTALL","status":"OK","components":["b","a"]}
+ * {"line":"REMOVE b","command":"REMOVE","status":"FAILED","components":[],"error":"StillNeededByException","message":"b is still needed by [a].","stillNeededBy":["a"]}
+ * {"line":"DEPEND b a","command":"DEPEND","status":"FAILED","components":[],"error":"DependsOnException","message":"a depends on b. Ignoring command.","cycle":["b","a","b"]}
+ * </pre>
+ * 
+ * binary() writes a compact binary stream.. every component name is written once and referred to
+ * by index afterwards, so e.g. a replay that LISTs a lot costs a few bytes per listed component:
+ * 
+ * <pre>
+ * stream     "DMR" 1 record*
+ * record     command(byte: 0 = none, 1 = DEPEND, .. 5 = END) status(byte: 0 = OK, 1 = FAILED) line(string) names
+ *            [error(string) message(string) names]                  (FAILED only.. stillNeededBy or cycle, else none)
+ * names      count(varint) name*
+ * name       0(varint) string   new name, gets the next index (0, 1, ..)
+ *            index+1(varint)    name seen before
+ * string     length(varint) utf-8 bytes
+ * varint     unsigned leb128
+ * </pre>
+ * 
+ * not thread-safe.. the underlying writer/stream is neither closed nor flushed except by flush()
+ */
+public abstract class CommandResultEncoder implements Consumer<CommandResult>, Flushable {
+
+  /**
+   * json
+   * 
+   * @param out
+   * @return ndjson encoder
+   */
+  public static CommandResultEncoder json(Writer out) {
+
+    // validate
+    if (out == null)
+      throw new IllegalArgumentException("out is null");
+
+    return new Json(out);
+  }
+
+  /**
+   * binary
+   * 
+   * @param out
+   * @return binary encoder.. buffered, call flush() when done
+   */
+  public static CommandResultEncoder binary(OutputStream out) {
+
+    // validate
+    if (out == null)
+      throw new IllegalArgumentException("out is null");
+
+    return new Binary(out);
+  }
+
+  /**
+   * write
+   * 
+   * @param result
+   * @throws IOException
+   */
+  public abstract void write(CommandResult result) throws IOException;
+
+  /**
+   * accept
+   * 
+   * same as write() for use as a DependencyManagerCli.batchResults() sink
+   * 
+   * @throws UncheckedIOException
+   */
+  @Override
+  public void accept(CommandResult result) {
+    try {
+      write(result);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * the failure details of result
+   */
+  private static Collection<String> details(CommandResult result) {
+    return !result.stillNeededBy().isEmpty() ? result.stillNeededBy() : result.cycle();
+  }
+
+  /**
+   * ndjson
+   */
+  private static final class Json extends CommandResultEncoder {
+
+    private final Writer out;
+
+    Json(Writer out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(CommandResult result) throws IOException {
+      JsonWriter json = new JsonWriter(out); // unbuffered.. one per record keeps each record a top-level value
+      json.beginObject();
+      json.name("line").value(result.line);
+      if (result.command != null)
+        json.name("command").value(result.command.name());
+      json.name("status").value(result.status.name());
+      names(json.name("components"), result.components);
+      if (result.failure != null) {
+        json.name("error").value(result.failure.getClass().getSimpleName());
+        json.name("message").value(result.failure.getMessage());
+        if (!result.stillNeededBy().isEmpty())
+          names(json.name("stillNeededBy"), result.stillNeededBy());
+        if (!result.cycle().isEmpty())
+          names(json.name("cycle"), result.cycle());
+      }
+      json.endObject();
+      out.write('\n');
+    }
+
+    private static void names(JsonWriter json, Collection<String> names) throws IOException {
+      json.beginArray();
+      for (String name : names)
+        json.value(name);
+      json.endArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+  }
+
+  /**
+   * records w/a name table (see class doc).. records are not length prefixed, a reader skips one by parsing it
+   */
+  private static final class Binary extends CommandResultEncoder {
+
+    private static final byte[] MAGIC = { 'D', 'M', 'R', 1 };
+
+    private final OutputStream out;
+    private boolean started;
+
+    // name -> index
+    private final Map<String, Integer> names = new HashMap<>();
+
+    Binary(OutputStream out) {
+      this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 64 << 10);
+    }
+
+    @Override
+    public void write(CommandResult result) throws IOException {
+      if (!started) {
+        out.write(MAGIC);
+        started = true;
+      }
+      out.write(result.command == null ? 0 : result.command.ordinal() + 1);
+      out.write(result.status.ordinal());
+      string(result.line);
+      names(result.components);
+      if (result.failure != null) {
+        string(result.failure.getClass().getSimpleName());
+        string(String.valueOf(result.failure.getMessage()));
+        names(details(result));
+      }
+    }
+
+    private void names(Collection<String> names) throws IOException {
+      varint(names.size());
+      for (String name : names) {
+        Integer index = this.names.get(name);
+        if (index != null) {
+          varint(index + 1);
+        } else {
+          this.names.put(name, this.names.size());
+          varint(0);
+          string(name);
+        }
+      }
+    }
+
+    private void string(String string) throws IOException {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      varint(bytes.length);
+      out.write(bytes);
+    }
+
+    private void varint(int value) throws IOException {
+      while ((value & ~0x7f) != 0) {
+        out.write((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+  }
+
+}
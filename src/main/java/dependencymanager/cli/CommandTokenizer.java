@@ -0,0 +1,103 @@
+package dependencymanager.cli;
+
+import com.google.common.base.CharMatcher;
+
+/**
+ * splits a command line into whitespace separated tokens in place
+ * 
+ * a token is only materialized as a String when token() is called.. matching a token against a
+ * constant (e.g., the command name) doesn't allocate
+ * 
+ * reusable.. not thread-safe
+ */
+class CommandTokenizer {
+
+  // same definition of whitespace as Splitter.on(CharMatcher.whitespace())
+  private static final CharMatcher WHITESPACE = CharMatcher.whitespace();
+
+  private CharSequence line = "";
+
+  // current token is line[start..end)
+  private int start;
+  private int end;
+
+  /**
+   * reset
+   * 
+   * @param line the line to tokenize
+   * @return this
+   */
+  CommandTokenizer reset(CharSequence line) {
+    this.line = line;
+    this.start = 0;
+    this.end = 0;
+    return this;
+  }
+
+  /**
+   * next
+   * 
+   * advances to the next token
+   * 
+   * @return false if there are no more tokens
+   */
+  boolean next() {
+    int length = line.length();
+    start = end;
+    while (start < length && WHITESPACE.matches(line.charAt(start)))
+      ++start;
+    end = start;
+    while (end < length && !WHITESPACE.matches(line.charAt(end)))
+      ++end;
+    return start < end;
+  }
+
+  /**
+   * hasNext
+   * 
+   * @return true if there is another token after the current one
+   */
+  boolean hasNext() {
+    int length = line.length();
+    for (int i = end; i < length; ++i) {
+      if (!WHITESPACE.matches(line.charAt(i)))
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * length
+   * 
+   * @return length of the current token
+   */
+  int length() {
+    return end - start;
+  }
+
+  /**
+   * is
+   * 
+   * @param token
+   * @return true if the current token equals token
+   */
+  boolean is(String token) {
+    if (token.length() != end - start)
+      return false;
+    for (int i = 0; i < token.length(); ++i) {
+      if (line.charAt(start + i) != token.charAt(i))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * token
+   * 
+   * @return the current token
+   */
+  String token() {
+    return line.subSequence(start, end).toString();
+  }
+
+}
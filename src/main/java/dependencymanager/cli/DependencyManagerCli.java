@@ -1,52 +1,51 @@
 package dependencymanager.cli;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.function.Consumer;
 
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Iterators;
-import com.google.common.eventbus.Subscribe;
+import com.google.common.collect.ImmutableSet;
 
 import dependencymanager.DependencyManager;
-import dependencymanager.events.InstallingEvent;
-import dependencymanager.events.ListingEvent;
-import dependencymanager.events.RemovingEvent;
+import dependencymanager.Histogram;
+import dependencymanager.Metrics;
 import dependencymanager.exceptions.StillNeededByException;
 
-class OutputLines {
-  public final List<String> outputLines = new ArrayList<>();
-  @Subscribe
-  public void handle(InstallingEvent event) {
-    outputLines.add(String.format("\tInstalling %s", event.component));
-  }
-  @Subscribe
-  public void handle(RemovingEvent event) {
-    outputLines.add(String.format("\tRemoving %s", event.component));
-  }
-  @Subscribe
-  public void handle(ListingEvent event) {
-    for (String component : event.components)
-      outputLines.add(String.format("\t%s", component));
-  }
-}
-
 /**
  * command line interface for dependency manager
  * 
  * wraps the "pure-java" DependencyManager with a command-line-like interface
+ * 
+ * the output of a command is built from the return values of the dependency manager (installed/removed/listed
+ * components in order) rather than by subscribing to its event bus for every command, so commands don't
+ * register/unregister subscribers and the output is the same whether events are delivered synchronously
+ * or asynchronously
+ * 
+ * not thread-safe
  */
 public class DependencyManagerCli {
 
   private final DependencyManager dependencyManager;
-  private final Map<String, Function<Iterator<String>, List<String>>> commands = new HashMap<>();
+
+  // reused for every command
+  private final CommandTokenizer tokenizer = new CommandTokenizer();
+
+  // command -> latency of the command or null if not instrumented
+  private final Histogram[] latencies;
 
   /**
    * ctor
@@ -54,47 +53,28 @@ public class DependencyManagerCli {
    * @param dependencyManager
    */
   public DependencyManagerCli(DependencyManager dependencyManager) {
+    this(dependencyManager, null);
+  }
+
+  /**
+   * ctor
+   * 
+   * @param dependencyManager
+   * @param metrics where to record the latency in ns of each successful command (parsing and output
+   *                included) as cli.depend, cli.install, cli.remove, cli.list and cli.end or null
+   */
+  public DependencyManagerCli(DependencyManager dependencyManager, Metrics metrics) {
     this.dependencyManager = dependencyManager;
-    
-    // register commands
-
-    commands.put("DEPEND", (iter)->{
-      if (!iter.hasNext())
-        throw new MissingArgumentException("INSTALL");
-      String component = iter.next();
-      Set<String> dependencies = new LinkedHashSet<>(); // insertion order
-      Iterators.addAll(dependencies, iter);
-      dependencyManager.depend(component, dependencies);
-      return new ArrayList<>();
-    });
-    
-    commands.put("INSTALL", (iter)->{
-      if (!iter.hasNext())
-        throw new MissingArgumentException("INSTALL");
-      String component = iter.next();
-      if (iter.hasNext())
-        throw new TooManyArgumentsException("INSTALL");
-      return new ArrayList<>(dependencyManager.install(component));
-    });
-    
-    commands.put("REMOVE", (iter)->{
-      if (!iter.hasNext())
-        throw new MissingArgumentException("REMOVE");
-      String component = iter.next();
-      if (iter.hasNext())
-        throw new TooManyArgumentsException("REMOVE");
-      return new ArrayList<>(dependencyManager.remove(component));
-    });
-    
-    commands.put("LIST", (iter)->{
-      if (iter.hasNext())
-        throw new TooManyArgumentsException("LIST");
-      return new ArrayList<>(dependencyManager.list());
-    });
-    
-    commands.put("END", (iter)->{
-      return new ArrayList<>();
-    });
+    if (metrics == null) {
+      latencies = null;
+    } else {
+      latencies = new Histogram[END + 1];
+      latencies[DEPEND] = metrics.histogram("cli.depend");
+      latencies[INSTALL] = metrics.histogram("cli.install");
+      latencies[REMOVE] = metrics.histogram("cli.remove");
+      latencies[LIST] = metrics.histogram("cli.list");
+      latencies[END] = metrics.histogram("cli.end");
+    }
   }
 
   /**
@@ -110,30 +90,148 @@ public class DependencyManagerCli {
     if (line == null)
       throw new IllegalArgumentException("line is null");
 
-    OutputLines outputLines = new OutputLines();
-    dependencyManager.eventBus.register(outputLines);
-    try {
+    List<String> outputLines = new ArrayList<>();
+    command(line, (prefix, text) -> outputLines.add(prefix + text));
+    return outputLines;
+  }
+
+  /**
+   * command
+   * 
+   * @param line
+   * @param outputLines
+   */
+  private <E extends Exception> void command(CharSequence line, LineSink<E> outputLines) throws E {
 
-      // split line into tokens
-      Iterator<String> iter = Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().split(line).iterator();
-      if (iter.hasNext()) {
-        String cmd = iter.next();
+    long start = latencies != null ? System.nanoTime() : 0;
 
-        Function<Iterator<String>, List<String>> commandFunction = commands.get(cmd);
+    // split line into tokens
+    CommandTokenizer iter = tokenizer.reset(line);
+    if (!iter.next())
+      return; // empty command line is ok
 
-        if (commandFunction==null)
-          throw new BadCommandException(cmd);
+    int command = command(iter);
+    for (String component : execute(command, iter))
+      outputLines.add(PREFIXES[command], component);
 
-        /*dontCare*/commandFunction.apply(iter);
-      } else {
-        // empty command line is ok
-      }
+    if (latencies != null)
+      latencies[command].record(System.nanoTime() - start);
+  }
 
-    } finally {
-      dependencyManager.eventBus.unregister(outputLines);
+  /**
+   * result
+   * 
+   * executes one command line.. same as command() but the outcome is returned as a typed result
+   * instead of being rendered as output lines, and a failed command is a result rather than an exception
+   * 
+   * @param line e.g., "INSTALL foo"
+   * @return result of the command
+   * @throws IllegalArgumentException if line is null
+   */
+  public CommandResult result(String line) {
+
+    if (line == null)
+      throw new IllegalArgumentException("line is null");
+
+    long start = latencies != null ? System.nanoTime() : 0;
+
+    // split line into tokens
+    CommandTokenizer iter = tokenizer.reset(line);
+    if (!iter.next())
+      return new CommandResult(line, null, Collections.emptyList(), null); // empty command line is ok
+
+    int command = command(iter);
+    Set<String> components;
+    try {
+      components = execute(command, iter);
+    } catch (RuntimeException e) {
+      return new CommandResult(line, COMMANDS[command], Collections.emptyList(), e);
+    }
+
+    if (latencies != null)
+      latencies[command].record(System.nanoTime() - start);
+
+    return new CommandResult(line, COMMANDS[command], components, null);
+  }
+
+  /**
+   * execute
+   * 
+   * @param command
+   * @param iter positioned at the command name
+   * @return installed/removed/listed components in order.. empty for DEPEND and END
+   */
+  private Set<String> execute(int command, CommandTokenizer iter) {
+    switch (command) {
+      case DEPEND: {
+        if (!iter.next())
+          throw new MissingArgumentException("INSTALL");
+        String component = iter.token();
+        ImmutableSet.Builder<String> dependencies = ImmutableSet.builder(); // insertion order.. DependEvent keeps it w/o copying
+        while (iter.next())
+          dependencies.add(iter.token());
+        dependencyManager.depend(component, dependencies.build());
+        return Collections.emptySet();
+      }
+      case INSTALL: {
+        if (!iter.next())
+          throw new MissingArgumentException("INSTALL");
+        String component = iter.token();
+        if (iter.hasNext())
+          throw new TooManyArgumentsException("INSTALL");
+        return dependencyManager.install(component);
+      }
+      case REMOVE: {
+        if (!iter.next())
+          throw new MissingArgumentException("REMOVE");
+        String component = iter.token();
+        if (iter.hasNext())
+          throw new TooManyArgumentsException("REMOVE");
+        return dependencyManager.remove(component);
+      }
+      case LIST: {
+        if (iter.hasNext())
+          throw new TooManyArgumentsException("LIST");
+        return dependencyManager.list();
+      }
+      case END:
+        return Collections.emptySet();
+      default:
+        throw new BadCommandException(iter.token());
     }
+  }
+
+  // commands
+  private static final int BAD = 0;
+  private static final int DEPEND = 1;
+  private static final int INSTALL = 2;
+  private static final int REMOVE = 3;
+  private static final int LIST = 4;
+  private static final int END = 5;
 
-    return outputLines.outputLines;
+  // command -> typed command/prefix of its output lines
+  private static final CommandResult.Command[] COMMANDS = { null, CommandResult.Command.DEPEND, CommandResult.Command.INSTALL, CommandResult.Command.REMOVE, CommandResult.Command.LIST, CommandResult.Command.END };
+  private static final String[] PREFIXES = { null, null, "\tInstalling ", "\tRemoving ", "\t", null };
+
+  /**
+   * command
+   * 
+   * @param iter positioned at the command name
+   * @return the command or BAD
+   */
+  private static int command(CommandTokenizer iter) {
+    switch (iter.length()) {
+      case 3:
+        return iter.is("END") ? END : BAD;
+      case 4:
+        return iter.is("LIST") ? LIST : BAD;
+      case 6:
+        return iter.is("DEPEND") ? DEPEND : iter.is("REMOVE") ? REMOVE : BAD;
+      case 7:
+        return iter.is("INSTALL") ? INSTALL : BAD;
+      default:
+        return BAD;
+    }
   }
 
   /**
@@ -145,9 +243,7 @@ public class DependencyManagerCli {
    * if success then the output (if any) is output to outputLines
    * if failure then the failure message is output to outputLines
    * 
-   * ###TODO have a way to determine per-command success vs failure
-   * ###TODO have a way to determine per-command success vs failure
-   * ###TODO have a way to determine per-command success vs failure
+   * see batchResults() for per-command success vs failure
    * 
    * @return outputLines the output as per the assignment
    * 
@@ -160,21 +256,162 @@ public class DependencyManagerCli {
 
     List<String> outputLines = new ArrayList<>();
 
-    for (String inputLine : inputLines) {
-      // echo
-      outputLines.add(inputLine);
-      try {
-        outputLines.addAll(command(inputLine));
-      } catch (StillNeededByException e) {
-        // need to 'dump down' this message for unit test's sake.. omit stillNeededBy components
-        outputLines.add(String.format("\t%s is still needed.", e.component));
-      } catch (Exception e) {
-        // all other exception messages can be rendered as-is
-        outputLines.add(String.format("\t%s", e.getMessage()));
-      }
-    }
+    LineSink<RuntimeException> sink = (prefix, text) -> outputLines.add(prefix.isEmpty() ? text : prefix + text);
+    for (String inputLine : inputLines)
+      batch(inputLine, sink);
 
     return outputLines;
   }
 
-}
\ No newline at end of file
+  /**
+   * batch
+   * 
+   * streaming batch.. same as batch(List) but reads input line by line and writes each output line
+   * (terminated w/'\n') as soon as its command has executed, so memory use doesn't grow w/the input
+   * 
+   * neither input nor output is closed.. output is flushed at the end
+   * 
+   * @param input
+   * @param output
+   * @throws IOException
+   * @throws IllegalArgumentException if input or output is null
+   */
+  public void batch(Reader input, Writer output) throws IOException {
+
+    if (input==null)
+      throw new IllegalArgumentException("input is null");
+    if (output==null)
+      throw new IllegalArgumentException("output is null");
+
+    BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, BUFFER_SIZE);
+    BufferedWriter writer = output instanceof BufferedWriter ? (BufferedWriter) output : new BufferedWriter(output, BUFFER_SIZE);
+    LineSink<IOException> sink = (prefix, text) -> {
+      writer.write(prefix);
+      writer.write(text);
+      writer.write('\n');
+    };
+
+    String inputLine;
+    while ((inputLine = reader.readLine()) != null)
+      batch(inputLine, sink);
+
+    writer.flush();
+  }
+
+  /**
+   * batch
+   * 
+   * streaming batch over utf-8 encoded streams
+   * 
+   * @see #batch(Reader, Writer)
+   */
+  public void batch(InputStream input, OutputStream output) throws IOException {
+
+    if (input==null)
+      throw new IllegalArgumentException("input is null");
+    if (output==null)
+      throw new IllegalArgumentException("output is null");
+
+    batch(new InputStreamReader(input, StandardCharsets.UTF_8), new OutputStreamWriter(output, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * batch
+   * 
+   * streaming batch from one utf-8 file to another
+   * 
+   * @see #batch(Reader, Writer)
+   */
+  public void batch(Path input, Path output) throws IOException {
+
+    if (input==null)
+      throw new IllegalArgumentException("input is null");
+    if (output==null)
+      throw new IllegalArgumentException("output is null");
+
+    try (InputStream in = Files.newInputStream(input);
+         OutputStream out = Files.newOutputStream(output)) {
+      batch(in, out);
+    }
+  }
+
+  /**
+   * batchResults
+   * 
+   * excutes a batch of commands like batch() but returns a typed result per input line instead of
+   * output lines, so callers can tell success from failure (and why) w/o parsing text
+   * 
+   * @param inputLines
+   * @return one result per input line, in order
+   * @throws IllegalArgumentException if inputLines is null
+   */
+  public List<CommandResult> batchResults(List<String> inputLines) {
+
+    if (inputLines==null)
+      throw new IllegalArgumentException("inputLines is null");
+
+    List<CommandResult> results = new ArrayList<>(inputLines.size());
+    for (String inputLine : inputLines)
+      results.add(result(inputLine));
+    return results;
+  }
+
+  /**
+   * batchResults
+   * 
+   * streaming batchResults.. reads input line by line and passes each result to results as soon as
+   * its command has executed, e.g., a CommandResultEncoder
+   * 
+   * input is not closed
+   * 
+   * @param input
+   * @param results
+   * @throws IOException
+   * @throws IllegalArgumentException if input or results is null
+   */
+  public void batchResults(Reader input, Consumer<CommandResult> results) throws IOException {
+
+    if (input==null)
+      throw new IllegalArgumentException("input is null");
+    if (results==null)
+      throw new IllegalArgumentException("results is null");
+
+    BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, BUFFER_SIZE);
+    String inputLine;
+    while ((inputLine = reader.readLine()) != null)
+      results.accept(result(inputLine));
+  }
+
+  /**
+   * batch
+   * 
+   * executes one input line and sends its echo + output to outputLines
+   * 
+   * @param inputLine
+   * @param outputLines
+   */
+  <E extends Exception> void batch(String inputLine, LineSink<E> outputLines) throws E {
+    // echo
+    outputLines.add("", inputLine);
+    try {
+      command(inputLine, outputLines);
+    } catch (StillNeededByException e) {
+      // need to 'dump down' this message for unit test's sake.. omit stillNeededBy components
+      outputLines.add("\t", e.component + " is still needed.");
+    } catch (RuntimeException e) {
+      // all other exception messages can be rendered as-is
+      outputLines.add("\t", e.getMessage());
+    }
+  }
+
+  /**
+   * where output lines go.. a line is prefix + text
+   */
+  interface LineSink<E extends Exception> {
+    void add(String prefix, String text) throws E;
+  }
+
+  // buffer size for streaming batches
+  private static final int BUFFER_SIZE = 64 << 10;
+
+}
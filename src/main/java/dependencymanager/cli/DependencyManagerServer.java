@@ -0,0 +1,426 @@
+package dependencymanager.cli;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.eventbus.EventBus;
+
+import dependencymanager.ConcurrentDependencyManager;
+
+/**
+ * tcp front-end for dependency manager
+ * 
+ * speaks the cli line protocol: each request is a command line (DEPEND/INSTALL/REMOVE/LIST/END,
+ * utf-8, terminated w/'\n' or "\r\n") and its response is exactly what DependencyManagerCli.batch()
+ * outputs for it: the echo of the line followed by its output lines, each of which starts w/a tab..
+ * END is answered and then the connection is closed
+ * 
+ * requests can be pipelined: a client may send any number of lines w/o waiting and gets the
+ * responses back in the same order
+ * 
+ * one selector thread does all the i/o (non-blocking nio).. each round it reads whatever all ready
+ * connections sent and runs every complete line in one ConcurrentDependencyManager.write(), so a busy
+ * server takes the lock and publishes a snapshot once per round instead of once per command.. other
+ * in-process users of the dependency manager keep working alongside
+ * 
+ * a connection that doesn't read its responses stops being read from once MAX_PENDING bytes of
+ * output are queued for it (backpressure).. at most MAX_QUEUED of its lines run per round, so a
+ * pipelined burst can't produce more than that on top.. a line longer than MAX_LINE closes the
+ * connection
+ * 
+ * a last line w/o '\n' is run once the client shut down its output, like DependencyManagerCli.batch()
+ * runs it
+ */
+public class DependencyManagerServer implements AutoCloseable {
+
+  private final ConcurrentDependencyManager dependencyManager;
+
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final Thread loop;
+  private volatile boolean closed;
+
+  // cli over the guarded dependency manager.. only used in write()
+  private DependencyManagerCli cli;
+
+  // complete lines read in the current round in arrival order and the connections that sent them
+  private final List<String> lines = new ArrayList<>();
+  private final List<Connection> senders = new ArrayList<>();
+
+  // connections that had i/o or got output in the current round
+  private final List<Connection> touched = new ArrayList<>();
+
+  // recognizes END while parsing
+  private final CommandTokenizer tokenizer = new CommandTokenizer();
+
+  // per connection limits
+  private static final int MAX_LINE = 1 << 20;
+  private static final int MAX_PENDING = 1 << 20;
+  private static final int MAX_QUEUED = 256;
+  private static final int BUFFER_SIZE = 64 << 10;
+
+  /**
+   * ctor
+   * 
+   * binds address and starts the selector thread
+   * 
+   * @param dependencyManager
+   * @param address e.g., new InetSocketAddress(InetAddress.getLoopbackAddress(), 0) for an ephemeral port
+   * @throws IOException if address can't be bound
+   */
+  public DependencyManagerServer(ConcurrentDependencyManager dependencyManager, InetSocketAddress address) throws IOException {
+
+    // validate
+    if (dependencyManager == null)
+      throw new IllegalArgumentException("dependencyManager is null");
+    if (address == null)
+      throw new IllegalArgumentException("address is null");
+
+    this.dependencyManager = dependencyManager;
+    this.selector = Selector.open();
+    try {
+      this.server = ServerSocketChannel.open();
+      server.bind(address);
+      server.configureBlocking(false);
+      server.register(selector, SelectionKey.OP_ACCEPT);
+    } catch (IOException e) {
+      selector.close();
+      throw e;
+    }
+    this.loop = new Thread(this::run, "dependency-manager-server");
+    this.loop.setDaemon(true);
+    this.loop.start();
+  }
+
+  /**
+   * address
+   * 
+   * @return the bound address, e.g., to find out the ephemeral port
+   */
+  public InetSocketAddress address() throws IOException {
+    return (InetSocketAddress) server.getLocalAddress();
+  }
+
+  /**
+   * close
+   * 
+   * stops the selector thread and closes all connections.. responses not written yet are lost
+   */
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+    if (Thread.currentThread() != loop) {
+      try {
+        loop.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    try {
+      while (!closed) {
+        if (lines.isEmpty())
+          selector.select();
+        else
+          selector.selectNow(); // lines held back by MAX_QUEUED/backpressure were queued by the last flush
+        for (Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext();) {
+          SelectionKey key = iter.next();
+          iter.remove();
+          if (!key.isValid())
+            continue;
+          if (key.isAcceptable()) {
+            accept();
+            continue;
+          }
+          Connection connection = (Connection) key.attachment();
+          try {
+            if (key.isWritable())
+              connection.flush();
+            if (key.isReadable())
+              connection.read();
+            touch(connection);
+          } catch (IOException e) {
+            connection.close(); // e.g., reset by peer
+          }
+        }
+
+        // run everything read in this round under one lock
+        execute();
+
+        // write what can be written right away and update the interest sets
+        for (Connection connection : touched) {
+          connection.touched = false;
+          try {
+            connection.flush();
+            connection.update();
+          } catch (IOException e) {
+            connection.close();
+          }
+        }
+        touched.clear();
+      }
+    } catch (IOException e) {
+      // selector failed.. nothing left to serve w/
+    } finally {
+      for (SelectionKey key : selector.keys()) {
+        try {
+          key.channel().close();
+        } catch (IOException e) {
+          // closing anyway
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException e) {
+        // closing anyway
+      }
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel channel;
+    while ((channel = server.accept()) != null) {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      Connection connection = new Connection(channel);
+      connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+  }
+
+  private void touch(Connection connection) {
+    if (!connection.touched) {
+      connection.touched = true;
+      touched.add(connection);
+    }
+  }
+
+  /**
+   * execute
+   * 
+   * runs the lines read in this round in order, appending each response to its connection's output
+   */
+  private void execute() {
+    if (lines.isEmpty())
+      return;
+    try {
+      dependencyManager.write(dependencyManager -> {
+        if (cli == null)
+          cli = new DependencyManagerCli(dependencyManager); // always the same guarded instance
+        for (int i = 0; i < lines.size(); ++i) {
+          Connection sender = senders.get(i);
+          cli.batch(lines.get(i), sender);
+          --sender.queued;
+          touch(sender);
+        }
+        return null;
+      });
+    } finally {
+      lines.clear();
+      senders.clear();
+    }
+  }
+
+  /**
+   * one client connection
+   */
+  private class Connection implements DependencyManagerCli.LineSink<RuntimeException> {
+
+    final SocketChannel channel;
+    SelectionKey key;
+    boolean touched;
+
+    // number of lines waiting for execute()
+    int queued;
+
+    // bytes read but not parsed into lines yet are in.position() <= i < in.limit() (read mode)
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+
+    // responses not written yet are out[outStart..outEnd)
+    private byte[] out = new byte[BUFFER_SIZE];
+    private int outStart;
+    private int outEnd;
+
+    // true once the client shut down its output/sent END
+    private boolean eof;
+    private boolean ending;
+
+    // true while complete lines are held back in in by MAX_QUEUED/MAX_PENDING
+    private boolean held;
+
+    Connection(SocketChannel channel) {
+      this.channel = channel;
+      in.flip(); // nothing to parse yet
+    }
+
+    /**
+     * read
+     * 
+     * reads what is available and queues the complete lines
+     */
+    void read() throws IOException {
+      if (eof || ending || held)
+        return;
+      in.compact();
+      if (!in.hasRemaining()) { // no '\n' in a full buffer
+        if (in.capacity() >= MAX_LINE) {
+          in.flip();
+          close();
+          return;
+        }
+        in.flip();
+        in = ByteBuffer.allocate(in.capacity() * 2).put(in);
+      }
+      int n = channel.read(in);
+      in.flip();
+      if (n == -1)
+        eof = true;
+      parse();
+    }
+
+    /**
+     * parse
+     * 
+     * queues complete lines for execute() until END, MAX_QUEUED lines are queued or too much output
+     * is pending.. after eof also the last line w/o '\n'
+     */
+    private void parse() {
+      byte[] bytes = in.array();
+      int start = in.position();
+      held = false;
+      for (int i = start; i < in.limit() && !ending && !held; ++i) {
+        if (bytes[i] == '\n') {
+          if (full()) {
+            held = true;
+          } else {
+            queue(bytes, start, i);
+            start = i + 1;
+          }
+        }
+      }
+      if (eof && !ending && !held && start < in.limit()) {
+        if (full()) {
+          held = true;
+        } else {
+          queue(bytes, start, in.limit());
+          start = in.limit();
+        }
+      }
+      in.position(start);
+    }
+
+    private boolean full() {
+      return queued >= MAX_QUEUED || outEnd - outStart >= MAX_PENDING;
+    }
+
+    private void queue(byte[] bytes, int start, int end) {
+      if (end > start && bytes[end - 1] == '\r')
+        --end;
+      String line = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+      lines.add(line);
+      senders.add(this);
+      ++queued;
+      ending = tokenizer.reset(line).next() && tokenizer.is("END");
+    }
+
+    /**
+     * add
+     * 
+     * appends a response line to the output
+     */
+    @Override
+    public void add(String prefix, String text) {
+      append(prefix.getBytes(StandardCharsets.UTF_8));
+      append(text.getBytes(StandardCharsets.UTF_8));
+      append(NEWLINE);
+    }
+
+    private void append(byte[] bytes) {
+      if (outEnd + bytes.length > out.length) {
+        if (outStart > 0) { // make room in front first
+          System.arraycopy(out, outStart, out, 0, outEnd - outStart);
+          outEnd -= outStart;
+          outStart = 0;
+        }
+        if (outEnd + bytes.length > out.length)
+          out = Arrays.copyOf(out, Math.max(out.length * 2, outEnd + bytes.length));
+      }
+      System.arraycopy(bytes, 0, out, outEnd, bytes.length);
+      outEnd += bytes.length;
+    }
+
+    /**
+     * flush
+     * 
+     * writes as much output as the socket takes and resumes parsing once the output drained
+     */
+    void flush() throws IOException {
+      if (outStart < outEnd) {
+        outStart += channel.write(ByteBuffer.wrap(out, outStart, outEnd - outStart));
+        if (outStart == outEnd)
+          outStart = outEnd = 0;
+      }
+      if (held)
+        parse(); // lines held back by MAX_QUEUED/backpressure
+    }
+
+    /**
+     * update
+     * 
+     * sets the interest set to what this connection waits for.. closes it once it is done
+     */
+    void update() throws IOException {
+      if (!channel.isOpen())
+        return;
+      boolean pending = outStart < outEnd;
+      if (!pending && (ending || eof) && queued == 0 && !held) {
+        close();
+        return;
+      }
+      int ops = 0;
+      if (pending)
+        ops |= SelectionKey.OP_WRITE;
+      if (!eof && !ending && !held && outEnd - outStart < MAX_PENDING)
+        ops |= SelectionKey.OP_READ;
+      key.interestOps(ops);
+    }
+
+    void close() {
+      try {
+        channel.close(); // also cancels key
+      } catch (IOException e) {
+        // closing anyway
+      }
+    }
+
+  }
+
+  private static final byte[] NEWLINE = { '\n' };
+
+  /**
+   * main
+   * 
+   * standalone server on the given port (default 7070) until killed
+   * 
+   * @param args [port]
+   */
+  public static void main(String[] args) throws Exception {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+    DependencyManagerServer server = new DependencyManagerServer(new ConcurrentDependencyManager(new EventBus()), new InetSocketAddress(port));
+    System.out.println("listening on " + server.address());
+    server.loop.join();
+  }
+
+}
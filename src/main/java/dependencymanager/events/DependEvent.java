@@ -1,16 +1,21 @@
 package dependencymanager.events;
 
-import java.util.LinkedHashSet;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * a depend command was invoked
+ * 
+ * dependencies is an immutable copy.. not copied again if already an ImmutableSet (the cli passes
+ * one), otherwise copied since the event may be delivered after depend() returned (asynchronous
+ * delivery, a transaction's held back events) when the caller's set may have changed
  */
 public class DependEvent {
   public final String component;
-  public final Set<String> dependencies = new LinkedHashSet<>();
+  public final Set<String> dependencies;
   public DependEvent(String component, Set<String> dependencies) {
     this.component = component;
-    this.dependencies.addAll(dependencies);
+    this.dependencies = ImmutableSet.copyOf(dependencies);
   }
-}
\ No newline at end of file
+}
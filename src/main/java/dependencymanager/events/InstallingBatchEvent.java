@@ -0,0 +1,20 @@
+package dependencymanager.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * after-the-fact: components were installed by one install
+ * 
+ * only posted w/asynchronous event delivery (see AsyncEventDispatcher).. in installation order
+ */
+public class InstallingBatchEvent {
+  public final List<String> components;
+  public InstallingBatchEvent(Iterable<String> components) {
+    List<String> list = new ArrayList<>();
+    for (String component : components)
+      list.add(component);
+    this.components = Collections.unmodifiableList(list);
+  }
+}
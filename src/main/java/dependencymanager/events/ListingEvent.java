@@ -1,14 +1,17 @@
 package dependencymanager.events;
 
-import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.Set;
 
 /**
  * after-the-fact: installed components were listed
+ * 
+ * components is the listed set itself, not a copy.. dependency managers list immutable views, so
+ * it can be kept as is and only needs copying if it is to outlive a change of a set posted by hand
  */
 public class ListingEvent {
-  public final Set<String> components = new LinkedHashSet<>();
+  public final Set<String> components;
   public ListingEvent(Set<String> components) {
-    this.components.addAll(components);
+    this.components = Collections.unmodifiableSet(components);
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package dependencymanager.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * after-the-fact: components were removed by one remove
+ * 
+ * only posted w/asynchronous event delivery (see AsyncEventDispatcher).. in removal order
+ */
+public class RemovingBatchEvent {
+  public final List<String> components;
+  public RemovingBatchEvent(Iterable<String> components) {
+    List<String> list = new ArrayList<>();
+    for (String component : components)
+      list.add(component);
+    this.components = Collections.unmodifiableList(list);
+  }
+}
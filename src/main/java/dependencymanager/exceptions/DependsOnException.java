@@ -1,10 +1,31 @@
 package dependencymanager.exceptions;
 
-// circular dependency
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * depend: the dependency (directly or transitively) depends on the component
+ */
 public class DependsOnException extends ClientException {
+  // the component that was given the dependency
+  public final String component;
+  // the dependency that would have closed the cycle
+  public final String dependency;
+  // the full cycle, e.g., [component, dependency, ..., component]
+  public final List<String/*component*/> cycle = new ArrayList<>();
+
+  // cycle unknown.. cycle is empty
   public DependsOnException(String component, String dependency) {
+    this(component, dependency, Collections.emptyList());
+  }
+
+  public DependsOnException(String component, String dependency, List<String> cycle) {
     super(String.format("%s depends on %s. Ignoring command.", dependency, component));
+    this.component = component;
+    this.dependency = dependency;
+    this.cycle.addAll(cycle); // deep copy
   }
 
   private static final long serialVersionUID = 1L;
-}
\ No newline at end of file
+}
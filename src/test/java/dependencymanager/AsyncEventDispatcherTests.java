@@ -0,0 +1,181 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.AsyncEventDispatcher.Backpressure;
+import dependencymanager.events.DependEvent;
+import dependencymanager.events.InstallingBatchEvent;
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.events.RemovingBatchEvent;
+import dependencymanager.events.RemovingEvent;
+
+public class AsyncEventDispatcherTests {
+
+  private EventBus eventBus;
+  private List<String> received;
+  private AsyncEventDispatcher dispatcher;
+
+  // first DependEvent blocks the consumer until released
+  private CountDownLatch blocked;
+  private CountDownLatch release;
+
+  @BeforeEach
+  public void setUp() {
+    eventBus = new EventBus();
+    received = Collections.synchronizedList(new ArrayList<>());
+    blocked = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+    eventBus.register(new Object() {
+      @Subscribe
+      public void handle(DependEvent event) throws InterruptedException {
+        received.add("depend " + event.component);
+        if (event.component.equals("block")) {
+          blocked.countDown();
+          release.await();
+        }
+      }
+      @Subscribe
+      public void handle(InstallingBatchEvent event) {
+        received.add("installing " + event.components);
+      }
+      @Subscribe
+      public void handle(InstallingEvent event) {
+        received.add("installing " + event.component);
+      }
+      @Subscribe
+      public void handle(RemovingBatchEvent event) {
+        received.add("removing " + event.components);
+      }
+      @Subscribe
+      public void handle(RemovingEvent event) {
+        received.add("removing " + event.component);
+      }
+    });
+  }
+
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    dispatcher.close();
+  }
+
+  @Test
+  public void testBatchEvents() {
+    dispatcher = new AsyncEventDispatcher(eventBus, 16, Backpressure.BLOCK);
+    DependencyManager dependencyManager = new DependencyManager(dispatcher);
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.install("a");
+    dependencyManager.remove("a");
+    dispatcher.flush();
+    assertEquals(ImmutableList.of(
+      "depend a",
+      "installing [b, a]", "installing b", "installing a",
+      "removing [a, b]", "removing a", "removing b"), ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testBulkBatchEvents() {
+    dispatcher = new AsyncEventDispatcher(eventBus, 16, Backpressure.BLOCK);
+    DependencyManager dependencyManager = new DependencyManager(dispatcher);
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.installAll(ImmutableList.of("a", "c"));
+    dependencyManager.removeAll(ImmutableList.of("c", "a"));
+    dispatcher.flush();
+    assertEquals(ImmutableList.of(
+      "depend a",
+      "installing [b, a, c]", "installing b", "installing a", "installing c",
+      "removing [c, a, b]", "removing c", "removing a", "removing b"), ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testOffMutationPath() throws InterruptedException {
+    dispatcher = new AsyncEventDispatcher(eventBus, 16, Backpressure.BLOCK);
+    DependencyManager dependencyManager = new DependencyManager(dispatcher);
+    dependencyManager.depend("block", ImmutableSet.of());
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    // the consumer is stuck in a subscriber but mutations carry on
+    assertEquals(ImmutableSet.of("a"), dependencyManager.install("a"));
+    assertEquals(ImmutableSet.of("a"), dependencyManager.remove("a"));
+    assertEquals(ImmutableList.of("depend block"), ImmutableList.copyOf(received));
+
+    release.countDown();
+    dispatcher.flush();
+    assertEquals(ImmutableList.of("depend block", "installing [a]", "installing a", "removing [a]", "removing a"), ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testDrop() throws InterruptedException {
+    dispatcher = new AsyncEventDispatcher(eventBus, 1, Backpressure.DROP);
+    dispatcher.dispatch(new DependEvent("block", ImmutableSet.of()));
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    dispatcher.dispatch(new DependEvent("a", ImmutableSet.of()));
+    dispatcher.dispatch(new DependEvent("b", ImmutableSet.of())); // full
+    assertEquals(1, dispatcher.dropped());
+
+    release.countDown();
+    dispatcher.flush();
+    assertEquals(ImmutableList.of("depend block", "depend a"), ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testCoalesce() throws InterruptedException {
+    dispatcher = new AsyncEventDispatcher(eventBus, 1, Backpressure.COALESCE);
+    dispatcher.dispatch(new DependEvent("block", ImmutableSet.of()));
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+
+    dispatcher.dispatch(new InstallingBatchEvent(ImmutableList.of("a", "b")));
+    dispatcher.dispatch(new InstallingBatchEvent(ImmutableList.of("c"))); // full
+    assertEquals(1, dispatcher.coalesced());
+
+    release.countDown();
+    dispatcher.flush();
+    assertEquals(ImmutableList.of("depend block", "installing [a, b, c]", "installing a", "installing b", "installing c"), ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testBlock() throws InterruptedException {
+    dispatcher = new AsyncEventDispatcher(eventBus, 2, Backpressure.BLOCK);
+    DependencyManager dependencyManager = new DependencyManager(dispatcher);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      dependencyManager.install("c" + i);
+      expected.add("installing [c" + i + "]");
+      expected.add("installing c" + i);
+    }
+    dispatcher.flush();
+    assertEquals(expected, ImmutableList.copyOf(received));
+  }
+
+  @Test
+  public void testClosed() {
+    dispatcher = new AsyncEventDispatcher(eventBus, 2, Backpressure.BLOCK);
+    DependencyManager dependencyManager = new DependencyManager(dispatcher);
+    dispatcher.close();
+
+    // dropped and counted.. the operation itself succeeds
+    dispatcher.dispatch(new DependEvent("a", ImmutableSet.of()));
+    assertEquals(1, dispatcher.dropped());
+    assertEquals(ImmutableSet.of("a"), dependencyManager.install("a"));
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.list()));
+    assertEquals(3, dispatcher.dropped()); // InstallingBatchEvent, ListingEvent
+  }
+
+}
@@ -0,0 +1,200 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.exceptions.StillNeededByException;
+
+public class ConcurrentDependencyManagerTests {
+
+  private ConcurrentDependencyManager dependencyManager;
+
+  @BeforeEach
+  public void setUp() {
+    dependencyManager = new ConcurrentDependencyManager(new EventBus());
+  }
+
+  @Test
+  public void testBasic() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    assertTrue(dependencyManager.isdepend("a", ImmutableSet.of("b")));
+    assertFalse(dependencyManager.isdepend("a", ImmutableSet.of("c")));
+    assertEquals(ImmutableList.of("c", "b", "a"), dependencyManager.closure("a"));
+    assertEquals(ImmutableList.of("x"), dependencyManager.closure("x"));
+
+    assertEquals(ImmutableSet.of("c", "b", "a"), dependencyManager.install("a"));
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+    assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("b");
+    });
+    assertEquals(ImmutableSet.of("a", "b", "c"), dependencyManager.remove("a"));
+    assertEquals(ImmutableSet.of(), dependencyManager.list());
+  }
+
+  @Test
+  public void testPlan() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.planInstall("a")));
+    dependencyManager.install("a");
+    assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.planRemove("b");
+    });
+    assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(dependencyManager.planRemove("a")));
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testSnapshotIsolation() {
+    dependencyManager.install("a");
+    DependencyManagerSnapshot snapshot = dependencyManager.snapshot();
+    dependencyManager.depend("b", ImmutableSet.of("a"));
+    dependencyManager.install("b");
+    dependencyManager.remove("b");
+
+    // the old snapshot does not see any of it
+    assertEquals(ImmutableSet.of("a"), snapshot.list());
+    assertFalse(snapshot.isdepend("b", ImmutableSet.of("a")));
+    assertEquals(ImmutableList.of("b"), snapshot.closure("b"));
+
+    assertTrue(dependencyManager.isdepend("b", ImmutableSet.of("a")));
+  }
+
+  @Test
+  public void testStress() throws Exception {
+    int writers = 4;
+    int readers = 2;
+    int operations = 2000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(writers + readers);
+    try {
+      AtomicBoolean done = new AtomicBoolean();
+
+      // readers: record what each writer's components look like in the snapshots they see
+      List<Future<List<List<String>>>> readerFutures = new ArrayList<>();
+      for (int r = 0; r < readers; ++r) {
+        readerFutures.add(executor.submit(() -> {
+          List<List<String>> observed = new ArrayList<>();
+          while (!done.get()) {
+            DependencyManagerSnapshot snapshot = dependencyManager.snapshot();
+            Set<String> installed = snapshot.list();
+            int size = 0;
+            for (String component : installed) {
+              assertTrue(installed.contains(component));
+              ++size;
+            }
+            assertEquals(installed.size(), size);
+            if (observed.size() < 1000 * writers) {
+              for (int w = 0; w < writers; ++w)
+                observed.add(filter(installed, "w" + w + "."));
+            }
+          }
+          return observed;
+        }));
+      }
+
+      // writers: each works on its own components so it can be replayed on its own afterwards
+      List<Future<List<String>>> writerFutures = new ArrayList<>();
+      for (int w = 0; w < writers; ++w) {
+        String prefix = "w" + w + ".";
+        long seed = w;
+        writerFutures.add(executor.submit(() -> run(prefix, seed, operations, dependencyManager::write)));
+      }
+
+      List<List<String>> results = new ArrayList<>();
+      for (Future<List<String>> future : writerFutures)
+        results.add(future.get());
+      done.set(true);
+
+      // replay each writer sequentially and compare
+      Set<List<String>> states = new HashSet<>();
+      for (int w = 0; w < writers; ++w) {
+        String prefix = "w" + w + ".";
+        DependencyManager expected = new DependencyManager(new EventBus());
+        states.add(filter(expected.list(), prefix));
+        assertEquals(run(prefix, w, operations, mutation -> {
+          try {
+            return mutation.apply(expected);
+          } finally {
+            states.add(filter(expected.list(), prefix));
+          }
+        }), results.get(w));
+        assertEquals(filter(expected.list(), prefix), filter(dependencyManager.list(), prefix));
+      }
+
+      // every snapshot a reader saw must be a state the sequential replay went through
+      for (Future<List<List<String>>> future : readerFutures) {
+        List<List<String>> observed = future.get();
+        assertFalse(observed.isEmpty());
+        for (List<String> state : observed)
+          assertTrue(states.contains(state), state.toString());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<String> filter(Set<String> installed, String prefix) {
+    List<String> components = new ArrayList<>();
+    for (String component : installed) {
+      if (component.startsWith(prefix))
+        components.add(component);
+    }
+    return components;
+  }
+
+  /**
+   * run
+   * 
+   * @return the outcome of each operation
+   */
+  private List<String> run(String prefix, long seed, int operations, Function<Function<DependencyManager, Object>, Object> write) {
+    List<String> results = new ArrayList<>();
+    Random random = new Random(seed);
+    for (int i = 0; i < operations; ++i) {
+      String component = prefix + random.nextInt(30);
+      String dependency = prefix + random.nextInt(30);
+      int op = random.nextInt(3);
+      Object result;
+      try {
+        result = write.apply(dependencyManager -> {
+          switch (op) {
+            case 0:
+              dependencyManager.depend(component, ImmutableSet.of(dependency));
+              return "depend";
+            case 1:
+              return dependencyManager.install(component);
+            default:
+              return dependencyManager.remove(component);
+          }
+        });
+      } catch (RuntimeException e) {
+        result = e.getMessage();
+      }
+      results.add(String.valueOf(result));
+    }
+    return results;
+  }
+
+}
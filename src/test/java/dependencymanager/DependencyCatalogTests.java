@@ -0,0 +1,273 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.events.RemovingEvent;
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.ClientException;
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.NotInstalledException;
+import dependencymanager.exceptions.StillNeededByException;
+
+public class DependencyCatalogTests {
+
+  private DependencyCatalog catalog;
+
+  @BeforeEach
+  public void setUp() {
+    catalog = new DependencyCatalog(new EventBus());
+  }
+
+  @Test
+  public void testSessions() {
+    catalog.depend("a", ImmutableSet.of("b"));
+    catalog.depend("b", ImmutableSet.of("c"));
+    assertTrue(catalog.isdepend("a", ImmutableSet.of("b")));
+    assertFalse(catalog.isdepend("a", ImmutableSet.of("c")));
+    assertThrows(DependsOnException.class, ()->{
+      catalog.depend("c", ImmutableSet.of("a"));
+    });
+
+    InstallSession host1 = catalog.newSession();
+    InstallSession host2 = catalog.newSession();
+    assertEquals(ImmutableSet.of("c", "b", "a"), host1.install("a"));
+    assertEquals(ImmutableSet.of("c", "b"), host2.install("b"));
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(host1.list()));
+    assertEquals(ImmutableList.of("c", "b"), ImmutableList.copyOf(host2.list()));
+
+    // each session has its own install state
+    assertThrows(StillNeededByException.class, ()->{
+      host1.remove("b");
+    });
+    assertEquals(ImmutableSet.of("b", "c"), host2.remove("b"));
+    assertEquals(ImmutableSet.of(), host2.list());
+    assertThrows(NotInstalledException.class, ()->{
+      host2.remove("a");
+    });
+    assertThrows(AlreadyInstalledException.class, ()->{
+      host1.install("c");
+    });
+    assertEquals(ImmutableSet.of("a", "b", "c"), host1.remove("a"));
+    assertEquals(ImmutableSet.of(), host1.list());
+  }
+
+  @Test
+  public void testListing() {
+    catalog.depend("a", ImmutableSet.of("b"));
+    InstallSession host = catalog.newSession();
+    host.install("a");
+    Set<String> list = host.list();
+    assertTrue(list == host.list());
+
+    // later changes don't show through.. installs append, removes compact
+    host.install("c");
+    Set<String> list2 = host.list();
+    host.remove("a");
+    host.install("d");
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(list));
+    assertTrue(list.contains("a"));
+    assertFalse(list.contains("c"));
+    assertFalse(list.contains("d"));
+    assertEquals(ImmutableList.of("b", "a", "c"), ImmutableList.copyOf(list2));
+    assertTrue(list2.contains("c"));
+    assertEquals(ImmutableList.of("c", "d"), ImmutableList.copyOf(host.list()));
+  }
+
+  @Test
+  public void testListingInstallRemove() {
+    // a remove after an install w/o a list() in between still must not compact the listed order
+    InstallSession host = catalog.newSession();
+    host.install("a");
+    host.install("b");
+    host.install("c");
+    Set<String> list = host.list();
+    host.install("d");
+    host.remove("a");
+    host.remove("b");
+    assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(list));
+    assertEquals(ImmutableList.of("c", "d"), ImmutableList.copyOf(host.list()));
+  }
+
+  @Test
+  public void testUnknownComponent() {
+    InstallSession session = catalog.newSession();
+    assertEquals(ImmutableSet.of("x"), session.install("x"));
+    assertTrue(session.list().contains("x"));
+    assertFalse(session.list().contains("y"));
+    assertEquals(1, catalog.size());
+    assertEquals(ImmutableSet.of("x"), session.remove("x"));
+    assertThrows(NotInstalledException.class, ()->{
+      session.remove("y");
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      session.install(null);
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      session.remove(null);
+    });
+  }
+
+  @Test
+  public void testUnknownComponentsAppended() {
+    catalog.depend("a", ImmutableSet.of("b"));
+    InstallSession session = catalog.newSession();
+    session.install("a");
+    Set<String> listing = session.list();
+    int[] closure = catalog.version().closure(catalog.version().graph.id("a"));
+
+    // unknown components are appended to the current version.. no refreeze, so the cached closure survives
+    List<String> expected = new ArrayList<>(ImmutableList.of("b", "a"));
+    for (int i = 0; i < 100; ++i) {
+      assertEquals(ImmutableSet.of("x" + i), session.install("x" + i));
+      expected.add("x" + i);
+    }
+    assertTrue(closure == catalog.version().closure(catalog.version().graph.id("a")));
+    assertEquals(102, catalog.size());
+    assertEquals(expected, ImmutableList.copyOf(session.list()));
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(listing));
+    assertFalse(listing.contains("x0"));
+
+    // a depend() on appended components refreezes
+    catalog.depend("x0", ImmutableSet.of("x1"));
+    assertTrue(catalog.isdepend("x0", ImmutableSet.of("x1")));
+    assertEquals(ImmutableList.of("x0"), ImmutableList.copyOf(assertThrows(StillNeededByException.class, ()->{
+      session.remove("x1");
+    }).stillNeededBy));
+  }
+
+  @Test
+  public void testDependAfterInstall() {
+    // a depend() is seen by every session's next operation
+    InstallSession host1 = catalog.newSession();
+    InstallSession host2 = catalog.newSession();
+    host1.install("a");
+    catalog.depend("a", ImmutableSet.of("b"));
+    assertEquals(ImmutableSet.of("b", "a"), host2.install("a"));
+    host1.install("b");
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(assertThrows(StillNeededByException.class, ()->{
+      host1.remove("b");
+    }).stillNeededBy));
+  }
+
+  @Test
+  public void testEvents() {
+    EventBus eventBus = new EventBus();
+    List<String> events = new ArrayList<>();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onInstalling(InstallingEvent event) {
+        events.add("+" + event.component);
+      }
+      @Subscribe
+      public void onRemoving(RemovingEvent event) {
+        events.add("-" + event.component);
+      }
+    });
+    catalog.depend("a", ImmutableSet.of("b"));
+    InstallSession session = catalog.newSession(eventBus);
+    session.install("a");
+    session.remove("a");
+    catalog.newSession().install("a"); // not on eventBus
+    assertEquals(ImmutableList.of("+b", "+a", "-a", "-b"), events);
+  }
+
+  @Test
+  public void testSameAsDependencyManager() {
+    // a few sessions against one catalog vs a dependency manager per session
+    Random random = new Random(42);
+    List<InstallSession> sessions = new ArrayList<>();
+    List<DependencyManager> expected = new ArrayList<>();
+    for (int i = 0; i < 4; ++i) {
+      sessions.add(catalog.newSession());
+      expected.add(new DependencyManager(new EventBus()));
+    }
+    for (int i = 0; i < 4000; ++i) {
+      String component = "c" + random.nextInt(30);
+      int host = random.nextInt(sessions.size());
+      switch (random.nextInt(3)) {
+        case 0: {
+          String dependency = "c" + random.nextInt(30);
+          String result = apply(() -> {
+            catalog.depend(component, ImmutableSet.of(dependency));
+            return ImmutableSet.of();
+          });
+          for (DependencyManager dependencyManager : expected) {
+            assertEquals(result, apply(() -> {
+              dependencyManager.depend(component, ImmutableSet.of(dependency));
+              return ImmutableSet.of();
+            }));
+          }
+          break;
+        }
+        case 1:
+          assertEquals(apply(() -> expected.get(host).install(component)), apply(() -> sessions.get(host).install(component)));
+          break;
+        default:
+          assertEquals(apply(() -> expected.get(host).remove(component)), apply(() -> sessions.get(host).remove(component)));
+          break;
+      }
+      assertEquals(ImmutableList.copyOf(expected.get(host).list()), ImmutableList.copyOf(sessions.get(host).list()));
+    }
+  }
+
+  @Test
+  public void testConcurrentSessions() throws Exception {
+    for (int i = 0; i < 100; ++i)
+      catalog.depend("c" + i, i == 0 ? ImmutableSet.of() : ImmutableSet.of("c" + (i - 1)));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; ++t) {
+        int seed = t;
+        futures.add(executor.submit(() -> {
+          Random random = new Random(seed);
+          for (int i = 0; i < 50; ++i) {
+            InstallSession session = catalog.newSession();
+            int top = random.nextInt(100);
+            assertEquals(top + 1, session.install("c" + top).size());
+            assertEquals(top + 1, session.list().size());
+            assertEquals(top + 1, session.remove("c" + top).size());
+            // concurrent depend()s only add components nobody installs
+            catalog.depend("x" + seed + "." + i, ImmutableSet.of("c" + top));
+          }
+        }));
+      }
+      for (Future<?> future : futures)
+        future.get();
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(100 + 4 * 50, catalog.size());
+  }
+
+  private static String apply(Supplier<Set<String>> operation) {
+    try {
+      return operation.get().toString();
+    } catch (ClientException e) {
+      return e.getClass().getSimpleName() + " " + e.getMessage();
+    }
+  }
+
+}
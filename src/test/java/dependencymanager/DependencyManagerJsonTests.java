@@ -0,0 +1,172 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.StillNeededByException;
+
+public class DependencyManagerJsonTests {
+
+  private DependencyManager dependencyManager;
+
+  @BeforeEach
+  public void setUp() {
+    dependencyManager = new DependencyManager(new EventBus());
+  }
+
+  @Test
+  public void testRead() throws IOException {
+    EventBus eventBus = new EventBus();
+    List<String> events = new ArrayList<>();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onInstalling(InstallingEvent event) {
+        events.add(event.component);
+      }
+    });
+    dependencyManager = new DependencyManager(eventBus);
+
+    // "installed" first, unknown members and a late dependency (installed before its dependent needed it)
+    DependencyManagerJson.read(new StringReader("{"
+        + "\"version\": {\"ignored\": [1, 2]},"
+        + "\"installed\": [{\"component\": \"netcard\"}, {\"component\": \"tcpip\"}, {\"component\": \"browser\", \"explicit\": true}, {\"component\": \"html\", \"comment\": \"late\"}],"
+        + "\"dependencies\": {\"browser\": [\"tcpip\", \"html\"], \"tcpip\": [\"netcard\"], \"foo\": []}"
+        + "}"), dependencyManager);
+
+    assertTrue(dependencyManager.isdepend("browser", ImmutableSet.of("tcpip", "html")));
+    assertTrue(dependencyManager.isdepend("tcpip", ImmutableSet.of("netcard")));
+    assertEquals(ImmutableList.of("netcard", "tcpip", "browser", "html"), ImmutableList.copyOf(dependencyManager.list()));
+    assertEquals(ImmutableList.of("netcard", "tcpip", "browser", "html"), events);
+
+    // explicit flags and needed-by counts are as if installed by hand
+    assertEquals(ImmutableSet.of("browser"), assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("html");
+    }).stillNeededBy);
+    assertEquals(ImmutableSet.of("browser", "tcpip", "html", "netcard"), dependencyManager.remove("browser"));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    // random operations.. export, import into a new dependency manager and export again
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      String component = "c" + random.nextInt(60);
+      try {
+        switch (random.nextInt(3)) {
+          case 0:
+            dependencyManager.depend(component, ImmutableSet.of("c" + random.nextInt(60), "c" + random.nextInt(60)));
+            break;
+          case 1:
+            dependencyManager.install(component);
+            break;
+          default:
+            dependencyManager.remove(component);
+            break;
+        }
+      } catch (RuntimeException e) {
+        // client errors are part of the mix
+      }
+    }
+    dependencyManager.install("isolated");
+    dependencyManager.remove("isolated");
+
+    StringWriter json = new StringWriter();
+    DependencyManagerJson.write(dependencyManager, json);
+    DependencyManager copy = new DependencyManager(new EventBus());
+    DependencyManagerJson.read(new StringReader(json.toString()), copy);
+    StringWriter again = new StringWriter();
+    DependencyManagerJson.write(copy.snapshot(), again);
+
+    // same graph and install state.. the dependencies may come out in a different order
+    assertEquals(JsonParser.parseString(json.toString()), JsonParser.parseString(again.toString()));
+    assertEquals(JsonParser.parseString(json.toString()).getAsJsonObject().get("installed"), JsonParser.parseString(again.toString()).getAsJsonObject().get("installed"));
+    assertEquals(ImmutableList.copyOf(dependencyManager.list()), ImmutableList.copyOf(copy.list()));
+    assertTrue(json.toString().contains("\"isolated\":[]"));
+
+    // same behavior from here on
+    for (String component : ImmutableList.copyOf(dependencyManager.list())) {
+      assertEquals(attempt(() -> dependencyManager.planRemove(component)), attempt(() -> copy.planRemove(component)));
+    }
+  }
+
+  @Test
+  public void testLarge() throws IOException {
+    // chain of more components than fit in one chunk
+    StringBuilder json = new StringBuilder("{\"dependencies\": {");
+    for (int i = 0; i < 10000; ++i)
+      json.append(i == 0 ? "" : ",").append(String.format("\"c%d\": [\"c%d\"]", i + 1, i));
+    json.append("}, \"installed\": [");
+    for (int i = 0; i <= 10000; ++i)
+      json.append(i == 0 ? "" : ",").append(String.format("{\"component\": \"c%d\"%s}", i, i == 10000 ? ", \"explicit\": true" : ""));
+    json.append("]}");
+    DependencyManagerJson.read(new StringReader(json.toString()), dependencyManager);
+    assertEquals(10001, dependencyManager.list().size());
+    assertEquals(10001, dependencyManager.remove("c10000").size());
+  }
+
+  @Test
+  public void testErrors() throws IOException {
+    assertThrows(IOException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"dependencies\": [\"a\"]}"), dependencyManager);
+    });
+    assertThrows(IOException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"dependencies\": {\"a\": [\"b\"]"), dependencyManager);
+    });
+    assertThrows(IOException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"installed\": [{\"explicit\": true}]}"), dependencyManager);
+    });
+    assertThrows(DependsOnException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"dependencies\": {\"x\": [\"y\"], \"y\": [\"x\"]}}"), dependencyManager);
+    });
+    assertThrows(AlreadyInstalledException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"installed\": [{\"component\": \"z\"}, {\"component\": \"z\"}]}"), dependencyManager);
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      DependencyManagerJson.read(null, dependencyManager);
+    });
+
+    // installed before its dependency
+    DependencyManager other = new DependencyManager(new EventBus());
+    assertThrows(IOException.class, ()->{
+      DependencyManagerJson.read(new StringReader("{\"dependencies\": {\"p\": [\"q\"]}, \"installed\": [{\"component\": \"p\", \"explicit\": true}]}"), other);
+    });
+    assertEquals(ImmutableSet.of(), other.list());
+    DependencyManagerJson.read(new StringReader("{\"installed\": [{\"component\": \"q\"}, {\"component\": \"p\", \"explicit\": true}]}"), other);
+    assertEquals(ImmutableSet.of("p", "q"), other.remove("p"));
+
+    // what was loaded before the error stays
+    assertFalse(dependencyManager.isdepend("a", ImmutableSet.of("b")));
+    assertTrue(dependencyManager.isdepend("x", ImmutableSet.of("y")));
+    assertEquals(ImmutableSet.of("z"), dependencyManager.list());
+  }
+
+  private static String attempt(java.util.function.Supplier<?> operation) {
+    try {
+      return String.valueOf(operation.get());
+    } catch (RuntimeException e) {
+      return e.getMessage();
+    }
+  }
+
+}
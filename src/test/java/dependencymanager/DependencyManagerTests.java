@@ -1,19 +1,38 @@
 package dependencymanager;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.graph.GraphBuilder;
+import com.google.common.graph.Graphs;
+import com.google.common.graph.MutableGraph;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import dependencymanager.events.DependEvent;
+import dependencymanager.events.ListingEvent;
 import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.ClientException;
 import dependencymanager.exceptions.DependsOnException;
 import dependencymanager.exceptions.NotInstalledException;
 import dependencymanager.exceptions.StillNeededByException;
@@ -61,9 +80,58 @@ public class DependencyManagerTests {
   @Test
   public void testDependsOnException() {
     dependencyManager.depend("foo", ImmutableSet.of("bar"));
-    assertThrows(DependsOnException.class, ()->{
+    DependsOnException e = assertThrows(DependsOnException.class, ()->{
       dependencyManager.depend("bar", ImmutableSet.of("foo"));
     });
+
+    // same message w/o a known cycle
+    DependsOnException legacy = new DependsOnException("bar", "foo");
+    assertEquals(e.getMessage(), legacy.getMessage());
+    assertEquals(ImmutableList.of(), legacy.cycle);
+  }
+
+  @Test
+  public void testDependsOnExceptionTransitive() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    DependsOnException e = assertThrows(DependsOnException.class, ()->{
+      dependencyManager.depend("c", ImmutableSet.of("a"));
+    });
+    assertEquals(Arrays.asList("c", "a", "b", "c"), e.cycle);
+    assertFalse(dependencyManager.isdepend("c", ImmutableSet.of("a")));
+  }
+
+  @Test
+  public void testDependsOnExceptionSelf() {
+    assertEquals(Arrays.asList("a", "a"), assertThrows(DependsOnException.class, ()->{
+      dependencyManager.depend("a", ImmutableSet.of("a"));
+    }).cycle);
+  }
+
+  @Test
+  public void testDependsOnExceptionRandom() {
+    // compare against a brute force reachability check
+    MutableGraph<String> expected = GraphBuilder.directed().build();
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      String component = "c" + random.nextInt(60);
+      String dependency = "c" + random.nextInt(60);
+      expected.addNode(component);
+      expected.addNode(dependency);
+      boolean circular = Graphs.reachableNodes(expected, dependency).contains(component);
+      try {
+        dependencyManager.depend(component, ImmutableSet.of(dependency));
+        assertFalse(circular);
+        expected.putEdge(component, dependency);
+      } catch (DependsOnException e) {
+        assertTrue(circular);
+        assertEquals(component, e.cycle.get(0));
+        assertEquals(dependency, e.cycle.get(1));
+        assertEquals(component, e.cycle.get(e.cycle.size() - 1));
+        for (int j = 1; j < e.cycle.size() - 1; ++j)
+          assertTrue(expected.hasEdgeConnecting(e.cycle.get(j), e.cycle.get(j + 1)));
+      }
+    }
   }
 
   @Test
@@ -129,6 +197,28 @@ public class DependencyManagerTests {
     assertEquals(ImmutableSet.of("c", "b", "a"), dependencyManager.list());
   }
 
+  @Test
+  public void testInstallTopologicalOrder() {
+    // "c" needs "b" so "b" must be installed before "c"
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("c", ImmutableSet.of("b"));
+
+    assertEquals(ImmutableList.of("b", "c", "a"), ImmutableList.copyOf(dependencyManager.install("a")));
+    assertEquals(ImmutableList.of("a", "c", "b"), ImmutableList.copyOf(dependencyManager.remove("a")));
+  }
+
+  @Test
+  public void testInstallAfterDepend() {
+    // closure of "a" is cached by the first install and must be invalidated by depend
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(dependencyManager.install("a")));
+    dependencyManager.remove("a");
+
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.install("a")));
+    assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(dependencyManager.remove("a")));
+  }
+
   @Test
   public void testRemoveNull() {
     assertThrows(IllegalArgumentException.class, ()->{
@@ -157,6 +247,39 @@ public class DependencyManagerTests {
     assertEquals(ImmutableSet.of(), dependencyManager.list());
   }
 
+  @Test
+  public void testRemoveImplicitDependenciesCascade() {
+    // a -> b -> c -> d and a -> c, x -> c
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    dependencyManager.depend("c", ImmutableSet.of("d"));
+    dependencyManager.depend("x", ImmutableSet.of("c"));
+    dependencyManager.install("a");
+    dependencyManager.install("x");
+
+    // c is still needed by x
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.remove("a")));
+    assertEquals(ImmutableList.of("x", "c", "d"), ImmutableList.copyOf(dependencyManager.remove("x")));
+    assertEquals(ImmutableSet.of(), dependencyManager.list());
+
+    // a long chain goes in one remove.. dependents first
+    List<String> chain = new ArrayList<>();
+    for (int i = 0; i < 10000; ++i) {
+      chain.add("c" + i);
+      if (i > 0)
+        dependencyManager.depend("c" + (i - 1), ImmutableSet.of("c" + i));
+    }
+    dependencyManager.install("c0");
+    assertEquals(chain, ImmutableList.copyOf(dependencyManager.remove("c0")));
+  }
+
+  @Test
+  public void testRemoveOnlyInstalled() {
+    dependencyManager.install("a");
+    dependencyManager.depend("a", ImmutableSet.of("b")); // a is installed w/o b
+    assertEquals(ImmutableSet.of("a"), dependencyManager.remove("a"));
+  }
+
   @Test
   public void testInstallRemoveExplicit() {
     dependencyManager.depend("a", ImmutableSet.of("b"));
@@ -167,6 +290,24 @@ public class DependencyManagerTests {
     assertEquals(ImmutableSet.of("b"), dependencyManager.list());
   }
 
+  @Test
+  public void testRemoveAfterDependOnInstalled() {
+    // only installed direct dependents count.. A reaches C through B, which isn't installed
+    dependencyManager.install("A");
+    dependencyManager.install("C");
+    dependencyManager.depend("A", ImmutableSet.of("B"));
+    dependencyManager.depend("B", ImmutableSet.of("C"));
+    assertEquals(ImmutableSet.of("C"), dependencyManager.remove("C"));
+    assertEquals(ImmutableList.of("A"), ImmutableList.copyOf(dependencyManager.list()));
+
+    // installing the intermediate protects it again
+    dependencyManager.install("B");
+    assertEquals(ImmutableList.of("A", "C", "B"), ImmutableList.copyOf(dependencyManager.list()));
+    assertEquals(ImmutableSet.of("B"), assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("C");
+    }).stillNeededBy);
+  }
+
   @Test
   public void testRemoveNotInstalledException() {
     assertThrows(NotInstalledException.class, ()->{
@@ -183,6 +324,438 @@ public class DependencyManagerTests {
     });
   }
 
+  @Test
+  public void testRemoveStillNeededByDirectDependents() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    dependencyManager.install("a");
+    assertEquals(ImmutableSet.of("b"), assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("c");
+    }).stillNeededBy);
+
+    // depend after install.. "d" now needs "c" too
+    dependencyManager.install("d");
+    dependencyManager.depend("d", ImmutableSet.of("c"));
+    assertEquals(ImmutableSet.of("b", "d"), assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("c");
+    }).stillNeededBy);
+
+    // once "a" and "b" are gone only "d" still needs "c"
+    dependencyManager.remove("a");
+    assertEquals(ImmutableSet.of("d"), assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("c");
+    }).stillNeededBy);
+  }
+
+  @Test
+  public void testQueries() {
+    dependencyManager.depend("browser", ImmutableSet.of("tcpip", "html"));
+    dependencyManager.depend("tcpip", ImmutableSet.of("netcard"));
+    dependencyManager.depend("dns", ImmutableSet.of("tcpip"));
+    dependencyManager.depend("html", ImmutableSet.of("netcard")); // not really
+
+    assertEquals(ImmutableList.of("netcard", "tcpip", "html"), ImmutableList.copyOf(dependencyManager.dependencies("browser")));
+    assertEquals(ImmutableSet.of("browser", "dns", "tcpip", "html"), dependencyManager.dependents("netcard"));
+    List<String> dependents = ImmutableList.copyOf(dependencyManager.dependents("netcard"));
+    assertTrue(dependents.indexOf("browser") < dependents.indexOf("tcpip")); // dependents first
+    assertTrue(dependencyManager.dependsOn("browser", "netcard"));
+    assertFalse(dependencyManager.dependsOn("netcard", "browser"));
+    assertFalse(dependencyManager.dependsOn("dns", "html"));
+    assertFalse(dependencyManager.dependsOn("browser", "browser"));
+    assertEquals(2, dependencyManager.depth("browser"));
+    assertEquals(0, dependencyManager.depth("netcard"));
+    assertEquals(ImmutableList.of("browser", "tcpip", "netcard"), dependencyManager.path("browser", "netcard")); // bfs in declaration order
+    assertEquals(ImmutableList.of(), dependencyManager.path("netcard", "browser"));
+
+    // unknown components
+    assertEquals(ImmutableSet.of(), dependencyManager.dependencies("foo"));
+    assertEquals(ImmutableSet.of(), dependencyManager.dependents("foo"));
+    assertFalse(dependencyManager.dependsOn("foo", "netcard"));
+    assertEquals(0, dependencyManager.depth("foo"));
+
+    // depend() invalidates
+    dependencyManager.depend("netcard", ImmutableSet.of("driver"));
+    assertEquals(3, dependencyManager.depth("browser"));
+    assertTrue(dependencyManager.dependsOn("dns", "driver"));
+    assertEquals(ImmutableSet.of("browser", "dns", "tcpip", "html", "netcard"), dependencyManager.dependents("driver"));
+    assertEquals(ImmutableList.of("dns", "tcpip", "netcard", "driver"), dependencyManager.path("dns", "driver"));
+  }
+
+  @Test
+  public void testQueriesSameAsGuava() {
+    Random random = new Random(42);
+    MutableGraph<String> expected = GraphBuilder.directed().build();
+    for (int i = 0; i < 3000; ++i) {
+      String component = "c" + random.nextInt(60);
+      String dependency = "c" + random.nextInt(60);
+      if (random.nextInt(3) == 0) {
+        boolean circular = component.equals(dependency)
+            || expected.nodes().contains(dependency) && Graphs.reachableNodes(expected, dependency).contains(component);
+        if (!circular) {
+          dependencyManager.depend(component, ImmutableSet.of(dependency));
+          expected.putEdge(component, dependency);
+        }
+        continue;
+      }
+      boolean reachable = expected.nodes().contains(component) && expected.nodes().contains(dependency)
+          && !component.equals(dependency) && Graphs.reachableNodes(expected, component).contains(dependency);
+      assertEquals(reachable, dependencyManager.dependsOn(component, dependency));
+      if (expected.nodes().contains(component)) {
+        Set<String> reachableNodes = new HashSet<>(Graphs.reachableNodes(expected, component));
+        reachableNodes.remove(component);
+        assertEquals(reachableNodes, dependencyManager.dependencies(component));
+        Set<String> dependents = new HashSet<>(Graphs.reachableNodes(Graphs.transpose(expected), component));
+        dependents.remove(component);
+        assertEquals(dependents, dependencyManager.dependents(component));
+        assertEquals(depth(expected, component), dependencyManager.depth(component));
+      }
+      List<String> path = dependencyManager.path(component, dependency);
+      assertEquals(reachable, !path.isEmpty());
+      if (reachable) {
+        assertEquals(distance(expected, component, dependency) + 1, path.size());
+        for (int j = 1; j < path.size(); ++j)
+          assertTrue(expected.hasEdgeConnecting(path.get(j - 1), path.get(j)));
+      }
+    }
+  }
+
+  private static int depth(MutableGraph<String> graph, String node) {
+    return depth(graph, node, new HashMap<>());
+  }
+
+  private static int depth(MutableGraph<String> graph, String node, Map<String, Integer> memo) {
+    Integer memoized = memo.get(node);
+    if (memoized != null)
+      return memoized;
+    int depth = 0;
+    for (String successor : graph.successors(node))
+      depth = Math.max(depth, depth(graph, successor, memo) + 1);
+    memo.put(node, depth);
+    return depth;
+  }
+
+  private static int distance(MutableGraph<String> graph, String from, String to) {
+    Map<String, Integer> distances = new LinkedHashMap<>();
+    List<String> queue = new ArrayList<>();
+    distances.put(from, 0);
+    queue.add(from);
+    for (int i = 0; i < queue.size(); ++i) {
+      for (String successor : graph.successors(queue.get(i))) {
+        if (!distances.containsKey(successor)) {
+          distances.put(successor, distances.get(queue.get(i)) + 1);
+          queue.add(successor);
+        }
+      }
+    }
+    return distances.get(to);
+  }
+
+  @Test
+  public void testInstallAll() {
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("d", ImmutableSet.of("c", "e"));
+    dependencyManager.install("e");
+    assertEquals(ImmutableList.of(ImmutableSet.of("b", "c", "a"), ImmutableSet.of("d"), ImmutableSet.of("x")),
+        dependencyManager.installAll(ImmutableList.of("a", "d", "x")));
+    assertEquals(ImmutableList.of("e", "b", "c", "a", "d", "x"), ImmutableList.copyOf(dependencyManager.list()));
+
+    // explicit
+    assertEquals(ImmutableSet.of("a", "b"), dependencyManager.remove("a"));
+  }
+
+  @Test
+  public void testInstallAllAlreadyInstalled() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    assertEquals("b", assertThrows(AlreadyInstalledException.class, ()->{
+      dependencyManager.installAll(ImmutableList.of("x", "a", "b", "y"));
+    }).component);
+    assertEquals(ImmutableList.of("x", "b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+
+    assertThrows(AlreadyInstalledException.class, ()->{
+      dependencyManager.installAll(ImmutableList.of("y", "x"));
+    });
+    assertEquals(ImmutableList.of("x", "b", "a", "y"), ImmutableList.copyOf(dependencyManager.list()));
+
+    assertThrows(IllegalArgumentException.class, ()->{
+      dependencyManager.installAll(Arrays.asList("z", null));
+    });
+    assertFalse(dependencyManager.list().contains("z"));
+  }
+
+  @Test
+  public void testRemoveAll() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("c", ImmutableSet.of("b"));
+    dependencyManager.installAll(ImmutableList.of("a", "c", "d"));
+    assertEquals(ImmutableList.of(ImmutableSet.of("a"), ImmutableSet.of("c", "b")),
+        dependencyManager.removeAll(ImmutableList.of("a", "c")));
+    assertThrows(NotInstalledException.class, ()->{
+      dependencyManager.removeAll(ImmutableList.of("d", "d"));
+    });
+    assertTrue(dependencyManager.list().isEmpty());
+  }
+
+  @Test
+  public void testDependAll() {
+    Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+    dependencies.put("a", ImmutableSet.of("b"));
+    dependencies.put("b", ImmutableSet.of("c"));
+    dependencyManager.install("a");
+    dependencyManager.remove("a");
+    dependencyManager.dependAll(dependencies);
+    assertTrue(dependencyManager.isdepend("b", ImmutableSet.of("c")));
+    assertEquals(ImmutableSet.of("c", "b", "a"), dependencyManager.install("a")); // not the stale closure
+
+    dependencies.clear();
+    dependencies.put("e", ImmutableSet.of("d"));
+    dependencies.put("c", ImmutableSet.of("a"));
+    dependencies.put("f", ImmutableSet.of("g"));
+    assertThrows(DependsOnException.class, ()->{
+      dependencyManager.dependAll(dependencies);
+    });
+    assertTrue(dependencyManager.isdepend("e", ImmutableSet.of("d")));
+    assertFalse(dependencyManager.isdepend("f", ImmutableSet.of("g")));
+  }
+
+  @Test
+  public void testBulkSameAsSequential() {
+    Random random = new Random(42);
+    DependencyManager sequential = new DependencyManager(new EventBus());
+    for (int i = 0; i < 500; ++i) {
+      List<String> components = new ArrayList<>();
+      for (int j = random.nextInt(5); j > 0; --j)
+        components.add("c" + random.nextInt(30));
+      switch (random.nextInt(3)) {
+        case 0: {
+          Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+          for (String component : components)
+            dependencies.put(component, ImmutableSet.of("c" + random.nextInt(30)));
+          assertEquals(apply(() -> dependencies.forEach(sequential::depend)), apply(() -> dependencyManager.dependAll(dependencies)));
+          break;
+        }
+        case 1: {
+          List<Set<String>> expected = new ArrayList<>();
+          assertEquals(apply(() -> components.forEach(c -> expected.add(sequential.install(c)))), apply(() -> {
+            assertEquals(expected, dependencyManager.installAll(components));
+          }));
+          break;
+        }
+        default: {
+          List<Set<String>> expected = new ArrayList<>();
+          assertEquals(apply(() -> components.forEach(c -> expected.add(sequential.remove(c)))), apply(() -> {
+            assertEquals(expected, dependencyManager.removeAll(components));
+          }));
+          break;
+        }
+      }
+      assertEquals(ImmutableList.copyOf(sequential.list()), ImmutableList.copyOf(dependencyManager.list()));
+    }
+  }
+
+  private static String apply(Runnable operation) {
+    try {
+      operation.run();
+      return "ok";
+    } catch (ClientException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void testListAsOf() {
+    dependencyManager.retainHistory(3);
+    assertEquals(0, dependencyManager.operation());
+    dependencyManager.depend("a", ImmutableSet.of("b")); // 1
+    dependencyManager.install("a"); // 2
+    dependencyManager.install("c"); // 3
+    dependencyManager.remove("a"); // 4
+    assertThrows(NotInstalledException.class, ()->{
+      dependencyManager.remove("a"); // not an operation
+    });
+    assertEquals(4, dependencyManager.operation());
+
+    assertEquals(ImmutableList.of("c"), ImmutableList.copyOf(dependencyManager.listAsOf(4)));
+    assertEquals(ImmutableList.of("b", "a", "c"), ImmutableList.copyOf(dependencyManager.listAsOf(3)));
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(dependencyManager.listAsOf(2)));
+    assertThrows(IllegalArgumentException.class, ()->{
+      dependencyManager.listAsOf(1); // only the last 3 are retained
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      dependencyManager.listAsOf(5);
+    });
+
+    // bulk operations count per component
+    dependencyManager.installAll(ImmutableList.of("x", "y"));
+    assertEquals(6, dependencyManager.operation());
+    assertEquals(ImmutableList.of("c", "x"), ImmutableList.copyOf(dependencyManager.listAsOf(5)));
+  }
+
+  @Test
+  public void testList() throws Exception {
+    List<Set<String>> listed = new ArrayList<>();
+    dependencyManager.eventBus.register(new Object() {
+      @Subscribe
+      public void handle(ListingEvent event) {
+        listed.add(event.components);
+      }
+    });
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.install("a");
+
+    // same view until something changes
+    Set<String> list = dependencyManager.list();
+    assertTrue(list == dependencyManager.list());
+    dependencyManager.depend("c", ImmutableSet.of("a"));
+    assertTrue(list == dependencyManager.list());
+    assertThrows(UnsupportedOperationException.class, ()->{
+      list.add("c");
+    });
+
+    // later changes don't show through
+    dependencyManager.install("c");
+    dependencyManager.remove("c");
+    dependencyManager.remove("a");
+    dependencyManager.install("d");
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(list));
+    assertTrue(list.contains("a"));
+    assertFalse(list.contains("c"));
+    assertFalse(list.contains("d"));
+    assertEquals(ImmutableList.of("d"), ImmutableList.copyOf(dependencyManager.list()));
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(listed.get(0)));
+    assertEquals(ImmutableList.of("d"), ImmutableList.copyOf(listed.get(listed.size() - 1)));
+
+    // read on another thread while the dependency manager moves on
+    boolean[] same = { true };
+    Thread reader = new Thread(() -> {
+      for (int i = 0; i < 1000; ++i)
+        same[0] &= ImmutableList.of("b", "a").equals(ImmutableList.copyOf(list)) && list.contains("a");
+    });
+    reader.start();
+    for (int i = 0; i < 1000; ++i) {
+      dependencyManager.install("x" + i);
+      dependencyManager.list();
+    }
+    reader.join();
+    assertTrue(same[0]);
+
+    // a listing inside a transaction survives the rollback
+    Set<String> inside;
+    try (Transaction tx = dependencyManager.begin()) {
+      tx.install("new");
+      inside = tx.list();
+    }
+    assertTrue(inside.contains("new"));
+    assertEquals("new", Iterables.getLast(inside));
+    assertFalse(dependencyManager.list().contains("new"));
+  }
+
+  @Test
+  public void testPlan() {
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("b", ImmutableSet.of("c"));
+    dependencyManager.install("c");
+    assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(dependencyManager.planInstall("a")));
+    assertEquals(ImmutableList.of("new"), ImmutableList.copyOf(dependencyManager.planInstall("new")));
+    assertEquals(-1, dependencyManager.snapshot().graph().id("new")); // not interned
+    assertThrows(AlreadyInstalledException.class, ()->{
+      dependencyManager.planInstall("c");
+    });
+
+    dependencyManager.install("a");
+    StillNeededByException e = assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.planRemove("b");
+    });
+    assertEquals("b is still needed by [a].", e.getMessage());
+    assertThrows(NotInstalledException.class, ()->{
+      dependencyManager.planRemove("new");
+    });
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.planRemove("a")));
+
+    // nothing changed
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testPlanSameAsActual() {
+    Random random = new Random(42);
+    List<Object> events = new ArrayList<>();
+    Object recorder = new Object() {
+      @Subscribe
+      public void onEvent(Object event) {
+        events.add(event);
+      }
+    };
+    eventBus.register(recorder);
+    for (int i = 0; i < 2000; ++i) {
+      String component = "c" + random.nextInt(30);
+      switch (random.nextInt(3)) {
+        case 0:
+          apply(() -> dependencyManager.depend(component, ImmutableSet.of("c" + random.nextInt(30))));
+          break;
+        case 1: {
+          DependencyManagerSnapshot snapshot = dependencyManager.snapshot();
+          events.clear();
+          String plan = plan(() -> dependencyManager.planInstall(component));
+          assertEquals(plan, plan(() -> snapshot.planInstall(component)));
+          assertTrue(events.isEmpty());
+          assertEquals(plan, plan(() -> dependencyManager.install(component)));
+          break;
+        }
+        default: {
+          DependencyManagerSnapshot snapshot = dependencyManager.snapshot();
+          events.clear();
+          String plan = plan(() -> dependencyManager.planRemove(component));
+          assertEquals(plan, plan(() -> snapshot.planRemove(component)));
+          assertTrue(events.isEmpty());
+          assertEquals(plan, plan(() -> dependencyManager.remove(component)));
+          break;
+        }
+      }
+    }
+    eventBus.unregister(recorder);
+  }
+
+  private static String plan(Supplier<Set<String>> operation) {
+    try {
+      return operation.get().toString();
+    } catch (ClientException e) {
+      return e.getMessage();
+    }
+  }
+
+  @Test
+  public void testMetrics() {
+    Metrics metrics = new Metrics();
+    dependencyManager.setMetrics(metrics);
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.install("a");
+    dependencyManager.install("d");
+    assertThrows(AlreadyInstalledException.class, ()->{
+      dependencyManager.install("d"); // failures aren't recorded
+    });
+    dependencyManager.remove("a");
+    dependencyManager.list();
+
+    Map<String, Long> snapshot = metrics.snapshot(true);
+    assertEquals(Long.valueOf(1), snapshot.get("depend.count"));
+    assertEquals(Long.valueOf(2), snapshot.get("install.count"));
+    assertEquals(Long.valueOf(1), snapshot.get("remove.count"));
+    assertEquals(Long.valueOf(1), snapshot.get("list.count"));
+    assertEquals(Long.valueOf(3), snapshot.get("closure.max"));
+    assertEquals(Long.valueOf(4 + 3), snapshot.get("traversed.nodes")); // closures + orphans
+    assertEquals(Long.valueOf(2 + 2), snapshot.get("traversed.edges"));
+    assertEquals(Long.valueOf(1 + 4 + 3 + 1), snapshot.get("events"));
+    assertEquals(Long.valueOf(4), snapshot.get("event.InstallingEvent.count"));
+    assertTrue(snapshot.get("install.max") > 0);
+
+    // reset
+    assertEquals(Long.valueOf(0), metrics.snapshot(false).get("install.count"));
+
+    dependencyManager.setMetrics(null);
+    dependencyManager.install("e");
+    assertEquals(Long.valueOf(0), metrics.snapshot(false).get("install.count"));
+  }
+
   // ----------------------------------------------------------------------
   // events
   //
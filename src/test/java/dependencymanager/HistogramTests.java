@@ -0,0 +1,63 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HistogramTests {
+
+  @Test
+  public void testBuckets() {
+    // every value is in a bucket whose highest value is >= it and within ~3%
+    Random random = new Random(42);
+    for (int i = 0; i < 100000; ++i) {
+      long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+      int index = Histogram.index(value);
+      long highest = Histogram.highest(index);
+      assertTrue(highest >= value, value + " > " + highest);
+      assertTrue(highest - value <= value / 32, value + " vs " + highest);
+      if (value > 0)
+        assertTrue(Histogram.index(value - 1) <= index);
+    }
+    for (long value = 0; value < 64; ++value)
+      assertEquals(value, Histogram.highest(Histogram.index(value))); // exact
+    assertEquals(Long.MAX_VALUE, Histogram.highest(Histogram.index(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testPercentiles() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.percentile(99));
+
+    Random random = new Random(42);
+    long[] values = new long[10000];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = 1000 + random.nextInt(1000000);
+      histogram.record(values[i]);
+    }
+    Arrays.sort(values);
+
+    assertEquals(values.length, histogram.count());
+    assertEquals(values[values.length - 1], histogram.max());
+    assertTrue(Math.abs(Arrays.stream(values).average().getAsDouble() - histogram.mean()) < 0.001);
+    for (double percentile : new double[] { 0, 50, 90, 99, 99.9, 100 }) {
+      long expected = values[Math.max(0, (int) Math.ceil(percentile / 100 * values.length) - 1)];
+      long actual = histogram.percentile(percentile);
+      assertTrue(actual >= expected && actual <= expected + expected / 32, percentile + ": " + expected + " vs " + actual);
+    }
+
+    assertThrows(IllegalArgumentException.class, ()->{
+      histogram.percentile(101);
+    });
+
+    histogram.reset();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.max());
+  }
+
+}
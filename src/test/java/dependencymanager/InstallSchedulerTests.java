@@ -0,0 +1,158 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.exceptions.AlreadyInstalledException;
+
+public class InstallSchedulerTests {
+
+  private DependencyManager dependencyManager;
+  private InstallScheduler scheduler;
+  private List<String> events;
+
+  @BeforeEach
+  public void setUp() {
+    EventBus eventBus = new EventBus();
+    events = new ArrayList<>();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void onInstalling(InstallingEvent event) {
+        events.add(event.component);
+      }
+    });
+    dependencyManager = new DependencyManager(eventBus);
+    scheduler = new InstallScheduler(dependencyManager, 4);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    scheduler.close();
+  }
+
+  @Test
+  public void testDependenciesFirst() {
+    // diamond w/a tail
+    Map<String, Set<String>> dependencies = ImmutableMap.of(
+        "app", ImmutableSet.of("left", "right"),
+        "left", ImmutableSet.of("base"),
+        "right", ImmutableSet.of("base", "lib"));
+    dependencyManager.dependAll(dependencies);
+    dependencyManager.install("lib");
+    events.clear();
+
+    Set<String> done = ConcurrentHashMap.newKeySet();
+    done.add("lib");
+    List<String> violations = Collections.synchronizedList(new ArrayList<>());
+    Set<String> installed = scheduler.install("app", component -> {
+      for (String dependency : dependencies.getOrDefault(component, ImmutableSet.of())) {
+        if (!done.contains(dependency))
+          violations.add(component + " before " + dependency);
+      }
+      done.add(component);
+    });
+
+    assertEquals(ImmutableList.of(), violations);
+    assertEquals(ImmutableSet.of("base", "left", "right", "app"), installed);
+    assertEquals("base", installed.iterator().next());
+    assertEquals("app", ImmutableList.copyOf(installed).get(3));
+    assertEquals(ImmutableList.copyOf(installed), events);
+    assertEquals(ImmutableList.builder().add("lib").addAll(installed).build(), ImmutableList.copyOf(dependencyManager.list()));
+
+    // same explicit/implicit flags as install()
+    assertEquals(ImmutableSet.of("app", "left", "right", "base"), dependencyManager.remove("app"));
+    assertEquals(ImmutableList.of("lib"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testParallel() throws Exception {
+    dependencyManager.depend("app", ImmutableSet.of("a", "b", "c"));
+
+    // each leaf waits for the other two to start.. only completes if they run at the same time
+    CountDownLatch started = new CountDownLatch(3);
+    Set<String> installed = scheduler.install("app", component -> {
+      if (!component.equals("app")) {
+        started.countDown();
+        try {
+          assertTrue(started.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+    assertEquals(ImmutableSet.of("a", "b", "c", "app"), installed);
+  }
+
+  @Test
+  public void testFailure() {
+    dependencyManager.depend("app", ImmutableSet.of("good", "bad"));
+    dependencyManager.depend("bad", ImmutableSet.of("base"));
+
+    IllegalStateException failure = new IllegalStateException("download failed");
+    assertSame(failure, assertThrows(IllegalStateException.class, ()->{
+      scheduler.install("app", component -> {
+        if (component.equals("bad"))
+          throw failure;
+      });
+    }));
+
+    // the components whose actions completed stay installed.. app is never started
+    assertEquals(ImmutableSet.of("base", "good"), ImmutableSet.copyOf(dependencyManager.list()));
+    assertFalse(events.contains("app"));
+    assertFalse(events.contains("bad"));
+  }
+
+  @Test
+  public void testAlreadyInstalled() {
+    dependencyManager.install("a");
+    assertThrows(AlreadyInstalledException.class, ()->{
+      scheduler.install("a", component -> {});
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      scheduler.install(null, component -> {});
+    });
+    assertThrows(IllegalArgumentException.class, ()->{
+      scheduler.install("b", null);
+    });
+  }
+
+  @Test
+  public void testExecutor() {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      try (InstallScheduler scheduler = new InstallScheduler(dependencyManager, executor)) {
+        dependencyManager.depend("a", ImmutableSet.of("b"));
+        assertEquals(ImmutableSet.of("b", "a"), scheduler.install("a", component -> {}));
+      }
+      assertFalse(executor.isShutdown()); // not ours to shut down
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.exceptions.ClientException;
+
+public class MappedSnapshotTests {
+
+  private Path file;
+  private DependencyManager dependencyManager;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    file = Files.createTempFile("dependencymanager", ".bin");
+    dependencyManager = new DependencyManager(new EventBus());
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private MappedSnapshot mapped() throws IOException {
+    MappedSnapshot.write(dependencyManager.snapshot(), file);
+    return MappedSnapshot.open(file);
+  }
+
+  @Test
+  public void testBasic() throws IOException {
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("b", ImmutableSet.of("d"));
+    dependencyManager.depend("\u00fcn\u00efc\u00f8d\u00e9", ImmutableSet.of("a"));
+    dependencyManager.install("a");
+    dependencyManager.install("x");
+
+    MappedSnapshot snapshot = mapped();
+    assertEquals(ImmutableList.of("d", "b", "c", "a", "x"), ImmutableList.copyOf(snapshot.list()));
+    assertTrue(snapshot.list().contains("b"));
+    assertFalse(snapshot.list().contains("\u00fcn\u00efc\u00f8d\u00e9"));
+    assertFalse(snapshot.list().contains("unknown"));
+    assertTrue(snapshot.isdepend("a", ImmutableSet.of("b", "c")));
+    assertFalse(snapshot.isdepend("a", ImmutableSet.of("d")));
+    assertFalse(snapshot.isdepend("unknown", ImmutableSet.of("a")));
+    assertEquals(ImmutableList.of("d", "b", "c", "a", "\u00fcn\u00efc\u00f8d\u00e9"), snapshot.closure("\u00fcn\u00efc\u00f8d\u00e9"));
+    assertEquals(ImmutableList.of("unknown"), snapshot.closure("unknown"));
+    assertTrue(snapshot.verify());
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    MappedSnapshot snapshot = mapped();
+    assertEquals(ImmutableList.of(), ImmutableList.copyOf(snapshot.list()));
+    assertFalse(snapshot.isdepend("a", ImmutableSet.of("b")));
+    assertEquals(ImmutableList.of("a"), snapshot.closure("a"));
+  }
+
+  @Test
+  public void testNotASnapshot() throws IOException {
+    Files.write(file, new byte[100]);
+    assertThrows(IOException.class, ()->{
+      MappedSnapshot.open(file);
+    });
+  }
+
+  @Test
+  public void testSameAsDependencyManager() throws IOException {
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      String component = "c" + random.nextInt(200);
+      try {
+        switch (random.nextInt(4)) {
+          case 0:
+          case 1:
+            dependencyManager.depend(component, ImmutableSet.of("c" + random.nextInt(200), "c" + random.nextInt(200)));
+            break;
+          case 2:
+            dependencyManager.install(component);
+            break;
+          default:
+            dependencyManager.remove(component);
+            break;
+        }
+      } catch (ClientException e) {
+        // don't care
+      }
+    }
+
+    DependencyManagerSnapshot expected = dependencyManager.snapshot();
+    MappedSnapshot snapshot = mapped();
+    assertEquals(ImmutableList.copyOf(expected.list()), ImmutableList.copyOf(snapshot.list()));
+    for (int i = 0; i < 200; ++i) {
+      String component = "c" + i;
+      assertEquals(expected.closure(component), snapshot.closure(component));
+      assertEquals(expected.list().contains(component), snapshot.list().contains(component));
+      for (int j = 0; j < 200; ++j)
+        assertEquals(expected.isdepend(component, ImmutableSet.of("c" + j)), snapshot.isdepend(component, ImmutableSet.of("c" + j)));
+    }
+  }
+
+}
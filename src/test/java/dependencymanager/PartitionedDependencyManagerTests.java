@@ -0,0 +1,188 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.NotInstalledException;
+import dependencymanager.exceptions.StillNeededByException;
+
+public class PartitionedDependencyManagerTests {
+
+  private PartitionedDependencyManager dependencyManager;
+
+  @BeforeEach
+  public void setUp() {
+    dependencyManager = new PartitionedDependencyManager(new EventBus());
+  }
+
+  @Test
+  public void testPartitions() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("x", ImmutableSet.of("y"));
+    assertEquals(2, dependencyManager.partitions());
+
+    assertEquals(ImmutableSet.of("b", "a"), dependencyManager.install("a"));
+    assertEquals(ImmutableSet.of("y", "x"), dependencyManager.install("x"));
+    assertEquals(ImmutableSet.of("foo"), dependencyManager.install("foo"));
+    assertEquals(3, dependencyManager.partitions());
+    assertEquals(ImmutableList.of("b", "a", "y", "x", "foo"), ImmutableList.copyOf(dependencyManager.list()));
+
+    // joining keeps the install state and the global installation order
+    dependencyManager.depend("b", ImmutableSet.of("y"));
+    assertEquals(2, dependencyManager.partitions());
+    assertEquals(ImmutableList.of("b", "a", "y", "x", "foo"), ImmutableList.copyOf(dependencyManager.list()));
+    assertTrue(dependencyManager.isdepend("b", ImmutableSet.of("y")));
+    assertEquals(ImmutableList.of("y", "b", "a"), dependencyManager.closure("a"));
+    assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("y");
+    });
+    assertThrows(DependsOnException.class, ()->{
+      dependencyManager.depend("y", ImmutableSet.of("a"));
+    });
+    assertThrows(NotInstalledException.class, ()->{
+      dependencyManager.remove("unknown");
+    });
+  }
+
+  @Test
+  public void testRejectedDependJoinsNothing() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.depend("c", ImmutableSet.of("d"));
+    assertEquals(2, dependencyManager.partitions());
+
+    // b -> a closes a cycle.. c stays in its own partition
+    assertEquals(ImmutableList.of("b", "a", "b"), assertThrows(DependsOnException.class, ()->{
+      dependencyManager.depend("b", ImmutableSet.of("c", "a"));
+    }).cycle);
+    assertEquals(2, dependencyManager.partitions());
+    assertFalse(dependencyManager.isdepend("b", ImmutableSet.of("c")));
+
+    // no partition for a rejected new component
+    assertThrows(DependsOnException.class, ()->{
+      dependencyManager.depend("z", ImmutableSet.of("z"));
+    });
+    assertEquals(2, dependencyManager.partitions());
+    assertThrows(NotInstalledException.class, ()->{
+      dependencyManager.remove("z");
+    });
+  }
+
+  @Test
+  public void testSameAsDependencyManager() {
+    // one shared set of components so partitions keep getting joined
+    DependencyManager expected = new DependencyManager(new EventBus());
+    List<String> expectedResults = run("", 1, 3000, mutation -> mutation.apply(expected));
+    List<String> actualResults = run("", 1, 3000, mutation -> mutation.apply(dependencyManager));
+    assertEquals(expectedResults, actualResults);
+    assertEquals(ImmutableList.copyOf(expected.list()), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testStress() throws Exception {
+    int writers = 4;
+    int operations = 2000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(writers);
+    try {
+      // each writer works on its own stack so the writers only contend on list()
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int w = 0; w < writers; ++w) {
+        String prefix = "w" + w + ".";
+        long seed = w;
+        futures.add(executor.submit(() -> run(prefix, seed, operations, mutation -> mutation.apply(dependencyManager))));
+      }
+
+      for (int w = 0; w < writers; ++w) {
+        String prefix = "w" + w + ".";
+        DependencyManager expected = new DependencyManager(new EventBus());
+        assertEquals(run(prefix, w, operations, mutation -> mutation.apply(expected)), futures.get(w).get());
+
+        List<String> actualInstalled = new ArrayList<>();
+        for (String component : dependencyManager.list()) {
+          if (component.startsWith(prefix))
+            actualInstalled.add(component);
+        }
+        assertEquals(ImmutableList.copyOf(expected.list()), actualInstalled);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * a dependency manager operation.. implemented by both DependencyManager and PartitionedDependencyManager
+   */
+  private interface Operation {
+    Object apply(DependencyManager dependencyManager);
+    Object apply(PartitionedDependencyManager dependencyManager);
+  }
+
+  /**
+   * run
+   * 
+   * @return the outcome of each operation
+   */
+  private List<String> run(String prefix, long seed, int operations, Function<Operation, Object> apply) {
+    List<String> results = new ArrayList<>();
+    Random random = new Random(seed);
+    for (int i = 0; i < operations; ++i) {
+      String component = prefix + random.nextInt(40);
+      String dependency = prefix + random.nextInt(40);
+      int op = random.nextInt(4);
+      Object result;
+      try {
+        result = apply.apply(new Operation() {
+          @Override
+          public Object apply(DependencyManager dependencyManager) {
+            switch (op) {
+              case 0:
+                dependencyManager.depend(component, ImmutableSet.of(dependency));
+                return "depend";
+              case 1:
+              case 2:
+                return dependencyManager.install(component);
+              default:
+                return dependencyManager.remove(component);
+            }
+          }
+          @Override
+          public Object apply(PartitionedDependencyManager dependencyManager) {
+            switch (op) {
+              case 0:
+                dependencyManager.depend(component, ImmutableSet.of(dependency));
+                return "depend";
+              case 1:
+              case 2:
+                return dependencyManager.install(component);
+              default:
+                return dependencyManager.remove(component);
+            }
+          }
+        });
+      } catch (RuntimeException e) {
+        result = e.getMessage();
+      }
+      results.add(String.valueOf(result));
+    }
+    return results;
+  }
+
+}
@@ -0,0 +1,286 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.exceptions.AlreadyInstalledException;
+import dependencymanager.exceptions.ClientException;
+import dependencymanager.exceptions.StillNeededByException;
+
+public class PersistentDependencyManagerTests {
+
+  private Path directory;
+  private PersistentDependencyManager dependencyManager;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("dependencymanager");
+    dependencyManager = new PersistentDependencyManager(new EventBus(), directory);
+  }
+
+  @AfterEach
+  public void tearDown() throws IOException {
+    dependencyManager.close();
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private void reopen(long checkpointInterval) throws IOException {
+    dependencyManager.close();
+    dependencyManager = new PersistentDependencyManager(new EventBus(), directory, checkpointInterval);
+  }
+
+  @Test
+  public void testRecover() throws IOException {
+    dependencyManager.depend("a", ImmutableSet.of("b", "c"));
+    dependencyManager.depend("b", ImmutableSet.of("d"));
+    dependencyManager.install("a");
+    dependencyManager.install("x");
+    dependencyManager.depend("x", ImmutableSet.of("y")); // installed w/o y
+    assertThrows(AlreadyInstalledException.class, ()->{
+      dependencyManager.install("a"); // not logged
+    });
+
+    reopen(PersistentDependencyManager.CHECKPOINT_INTERVAL);
+    assertEquals(ImmutableList.of("d", "b", "c", "a", "x"), ImmutableList.copyOf(dependencyManager.list()));
+    assertTrue(dependencyManager.isdepend("a", ImmutableSet.of("b", "c")));
+    assertTrue(dependencyManager.isdepend("x", ImmutableSet.of("y")));
+    assertEquals(ImmutableList.of("d", "b", "c", "a"), dependencyManager.closure("a"));
+
+    // explicit/implicit survived
+    assertThrows(StillNeededByException.class, ()->{
+      dependencyManager.remove("b");
+    });
+    assertEquals(ImmutableSet.of("a", "c", "b", "d"), dependencyManager.remove("a"));
+    assertEquals(ImmutableSet.of("z"), dependencyManager.install("z"));
+
+    reopen(PersistentDependencyManager.CHECKPOINT_INTERVAL);
+    assertEquals(ImmutableList.of("x", "z"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testLogFailure() throws IOException {
+    EventBus eventBus = new EventBus();
+    List<Object> events = new ArrayList<>();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void handle(Object event) {
+        events.add(event);
+      }
+    });
+    dependencyManager.close();
+    dependencyManager = new PersistentDependencyManager(eventBus, directory);
+    dependencyManager.install("a");
+    events.clear();
+
+    // can't be logged.. neither applied nor announced
+    dependencyManager.close();
+    assertThrows(UncheckedIOException.class, ()->{
+      dependencyManager.depend("b", ImmutableSet.of("c"));
+    });
+    assertThrows(UncheckedIOException.class, ()->{
+      dependencyManager.install("b");
+    });
+    assertThrows(UncheckedIOException.class, ()->{
+      dependencyManager.remove("a");
+    });
+    assertEquals(ImmutableList.of(), events);
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.list()));
+    assertFalse(dependencyManager.isdepend("b", ImmutableSet.of("c")));
+
+    reopen(PersistentDependencyManager.CHECKPOINT_INTERVAL);
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testSyncFailure() throws Exception {
+    dependencyManager.install("a");
+
+    // the log's file goes away under it.. the next write+force fails
+    Field logField = PersistentDependencyManager.class.getDeclaredField("log");
+    logField.setAccessible(true);
+    Field channelField = WriteAheadLog.class.getDeclaredField("channel");
+    channelField.setAccessible(true);
+    ((FileChannel) channelField.get(logField.get(dependencyManager))).close();
+
+    // applied but not durable.. stays visible until the restart
+    assertThrows(UncheckedIOException.class, ()->{
+      dependencyManager.install("b");
+    });
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.list()));
+
+    // the log is unusable now.. later mutations are rolled back
+    assertThrows(UncheckedIOException.class, ()->{
+      dependencyManager.install("c");
+    });
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.list()));
+
+    reopen(PersistentDependencyManager.CHECKPOINT_INTERVAL);
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testCheckpoint() throws IOException {
+    reopen(4);
+    List<String> expected = new ArrayList<>();
+    expected.add("lib");
+    for (int i = 0; i < 10; ++i) {
+      dependencyManager.depend("c" + i, ImmutableSet.of("lib"));
+      dependencyManager.install("c" + i);
+      expected.add("c" + i);
+    }
+    assertEquals(1, SnapshotFile.snapshots(directory).size());
+    assertTrue(WriteAheadLog.segments(directory).size() <= 2);
+
+    reopen(4);
+    assertEquals(expected, ImmutableList.copyOf(dependencyManager.list()));
+    assertTrue(dependencyManager.isdepend("c9", ImmutableSet.of("lib")));
+
+    // nothing left to replay
+    dependencyManager.checkpoint();
+    reopen(4);
+    assertEquals(expected, ImmutableList.copyOf(dependencyManager.list()));
+    assertEquals(ImmutableSet.of("c0"), dependencyManager.remove("c0"));
+  }
+
+  @Test
+  public void testTornTail() throws IOException {
+    dependencyManager.install("a");
+    dependencyManager.install("b");
+    dependencyManager.close();
+
+    // crash in the middle of a write
+    Path segment = WriteAheadLog.segments(directory).lastEntry().getValue();
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 42, 1, 2 }));
+    }
+
+    dependencyManager = new PersistentDependencyManager(new EventBus(), directory);
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.list()));
+    dependencyManager.install("c");
+
+    reopen(PersistentDependencyManager.CHECKPOINT_INTERVAL);
+    assertEquals(ImmutableList.of("a", "b", "c"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testNoEventsOnRecovery() throws IOException {
+    dependencyManager.install("a");
+    dependencyManager.checkpoint();
+    dependencyManager.install("b");
+    dependencyManager.close();
+
+    List<Object> events = new ArrayList<>();
+    EventBus eventBus = new EventBus();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void handle(Object event) {
+        if (!(event instanceof DeadEvent))
+          events.add(event);
+      }
+    });
+    dependencyManager = new PersistentDependencyManager(eventBus, directory);
+    assertEquals(ImmutableList.of(), events);
+    assertEquals(ImmutableList.of("a", "b"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testConcurrentWriters() throws Exception {
+    reopen(50);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; ++t) {
+        String prefix = "t" + t + ".";
+        futures.add(executor.submit(()->{
+          for (int i = 0; i < 100; ++i) {
+            dependencyManager.depend(prefix + i, ImmutableSet.of(prefix + "lib"));
+            dependencyManager.install(prefix + i);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures)
+        future.get();
+    } finally {
+      executor.shutdown();
+    }
+    List<String> expected = ImmutableList.copyOf(dependencyManager.list());
+    assertEquals(404, expected.size());
+
+    reopen(50);
+    assertEquals(expected, ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testSameAsDependencyManager() throws IOException {
+    reopen(7);
+    DependencyManager reference = new DependencyManager(new EventBus());
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; ++i) {
+      String component = "c" + random.nextInt(40);
+      String dependency = "c" + random.nextInt(40);
+      String expected;
+      String actual;
+      switch (random.nextInt(3)) {
+        case 0:
+          expected = apply(() -> reference.depend(component, ImmutableSet.of(dependency)));
+          actual = apply(() -> dependencyManager.depend(component, ImmutableSet.of(dependency)));
+          break;
+        case 1:
+          expected = apply(() -> reference.install(component));
+          actual = apply(() -> dependencyManager.install(component));
+          break;
+        default:
+          expected = apply(() -> reference.remove(component));
+          actual = apply(() -> dependencyManager.remove(component));
+          break;
+      }
+      assertEquals(expected, actual);
+      if (random.nextInt(100) == 0)
+        reopen(7);
+      assertEquals(ImmutableList.copyOf(reference.list()), ImmutableList.copyOf(dependencyManager.list()));
+    }
+    assertFalse(dependencyManager.list().isEmpty());
+  }
+
+  private static String apply(Runnable operation) {
+    try {
+      operation.run();
+      return "ok";
+    } catch (ClientException e) {
+      return e.getMessage();
+    }
+  }
+
+}
@@ -0,0 +1,99 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+public class PersistentLongMapTests {
+
+  @Test
+  public void testEmpty() {
+    PersistentLongMap<String> map = PersistentLongMap.empty();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(0));
+    assertNull(map.get(-1));
+    assertSame(map, map.remove(42));
+    assertFalse(map.cursor().next());
+    assertThrows(IllegalArgumentException.class, ()->{
+      map.put(-1, "x");
+    });
+  }
+
+  @Test
+  public void testSameAsTreeMap() {
+    Random random = new Random(42);
+    TreeMap<Long, Long> expected = new TreeMap<>();
+    PersistentLongMap<Long> map = PersistentLongMap.empty();
+    for (int i = 0; i < 20000; ++i) {
+      // mostly small keys w/the occasional huge one
+      long key = random.nextInt(10) == 0 ? random.nextLong() >>> 1 : random.nextInt(2000);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.remove(key);
+      } else {
+        expected.put(key, (long) i);
+        map = map.put(key, (long) i);
+      }
+      assertEquals(expected.get(key), map.get(key));
+      assertEquals(expected.size(), map.size());
+    }
+    assertEquals(expected, toMap(map));
+  }
+
+  @Test
+  public void testOldVersionsUnchanged() {
+    List<PersistentLongMap<Integer>> versions = new ArrayList<>();
+    PersistentLongMap<Integer> map = PersistentLongMap.empty();
+    for (int i = 0; i < 1000; ++i) {
+      versions.add(map);
+      map = map.put(i * 37 % 1000, i);
+    }
+    for (int i = 0; i < 1000; i += 2)
+      map = map.remove(i);
+
+    assertEquals(500, map.size());
+    for (int v = 0; v < versions.size(); ++v) {
+      PersistentLongMap<Integer> version = versions.get(v);
+      assertEquals(v, version.size());
+      Map<Long, Integer> entries = toMap(version);
+      for (int i = 0; i < v; ++i)
+        assertEquals(Integer.valueOf(i), entries.get((long) (i * 37 % 1000)));
+    }
+  }
+
+  @Test
+  public void testCursorInKeyOrder() {
+    PersistentLongMap<String> map = PersistentLongMap.empty();
+    long[] keys = { 1L << 40, 3, 1024, 0, 31, 32, Long.MAX_VALUE };
+    for (long key : keys)
+      map = map.put(key, "v" + key);
+    List<Long> actual = new ArrayList<>();
+    for (PersistentLongMap.Cursor<String> cursor = map.cursor(); cursor.next();) {
+      assertEquals("v" + cursor.key(), cursor.value());
+      actual.add(cursor.key());
+    }
+    List<Long> expected = new ArrayList<>();
+    for (long key : new long[] { 0, 3, 31, 32, 1024, 1L << 40, Long.MAX_VALUE })
+      expected.add(key);
+    assertEquals(expected, actual);
+  }
+
+  private static <V> Map<Long, V> toMap(PersistentLongMap<V> map) {
+    Map<Long, V> result = new TreeMap<>();
+    for (PersistentLongMap.Cursor<V> cursor = map.cursor(); cursor.next();)
+      result.put(cursor.key(), cursor.value());
+    return result;
+  }
+
+}
@@ -0,0 +1,214 @@
+package dependencymanager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.events.DependEvent;
+import dependencymanager.events.InstallingEvent;
+import dependencymanager.events.RemovingEvent;
+import dependencymanager.exceptions.ClientException;
+import dependencymanager.exceptions.DependsOnException;
+
+public class TransactionTests {
+
+  private DependencyManager dependencyManager;
+  private List<String> received;
+
+  @BeforeEach
+  public void setUp() {
+    EventBus eventBus = new EventBus();
+    received = new ArrayList<>();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void handle(DependEvent event) {
+        received.add("depend " + event.component);
+      }
+      @Subscribe
+      public void handle(InstallingEvent event) {
+        received.add("installing " + event.component);
+      }
+      @Subscribe
+      public void handle(RemovingEvent event) {
+        received.add("removing " + event.component);
+      }
+    });
+    dependencyManager = new DependencyManager(eventBus);
+  }
+
+  @Test
+  public void testCommit() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    received.clear();
+
+    try (Transaction tx = dependencyManager.begin()) {
+      tx.depend("b", ImmutableSet.of("c"));
+      assertEquals(ImmutableSet.of("c", "b", "a"), tx.install("a"));
+      assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(tx.list()));
+      assertEquals(ImmutableList.of(), received); // held back
+      tx.commit();
+    }
+
+    assertEquals(ImmutableList.of("depend b", "installing c", "installing b", "installing a"), received);
+    assertEquals(ImmutableList.of("c", "b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testRollback() {
+    dependencyManager.depend("a", ImmutableSet.of("b"));
+    dependencyManager.install("a");
+    dependencyManager.install("x");
+    received.clear();
+
+    try (Transaction tx = dependencyManager.begin()) {
+      tx.depend("b", ImmutableSet.of("c"));
+      tx.depend("x", ImmutableSet.of("y"));
+      assertEquals(ImmutableSet.of("a", "b"), tx.remove("a"));
+      assertEquals(ImmutableSet.of("c", "b", "a"), tx.install("a"));
+      assertEquals(ImmutableSet.of("new"), tx.install("new"));
+      assertEquals(ImmutableSet.of("x"), tx.remove("x"));
+      // no commit
+    }
+
+    assertEquals(ImmutableList.of(), received);
+    assertEquals(ImmutableList.of("b", "a", "x"), ImmutableList.copyOf(dependencyManager.list()));
+    assertFalse(dependencyManager.isdepend("b", ImmutableSet.of("c")));
+    assertFalse(dependencyManager.isdepend("x", ImmutableSet.of("y")));
+    assertTrue(dependencyManager.isdepend("a", ImmutableSet.of("b")));
+    assertEquals(ImmutableList.of("b", "a"), dependencyManager.snapshot().closure("a"));
+    assertEquals(-1, dependencyManager.snapshot().graph().id("new")); // interned in the transaction
+
+    // the undone edge can't close a cycle anymore
+    dependencyManager.depend("c", ImmutableSet.of("a"));
+    assertEquals(ImmutableSet.of("a", "b"), dependencyManager.remove("a"));
+    assertEquals(ImmutableSet.of("b", "a", "c"), dependencyManager.install("c"));
+  }
+
+  @Test
+  public void testTransact() {
+    dependencyManager.install("a");
+
+    assertThrows(DependsOnException.class, ()->{
+      dependencyManager.transact(tx -> {
+        tx.depend("b", ImmutableSet.of("c"));
+        tx.install("b");
+        tx.depend("c", ImmutableSet.of("b")); // fails.. everything is rolled back
+      });
+    });
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.list()));
+    assertFalse(dependencyManager.isdepend("b", ImmutableSet.of("c")));
+
+    dependencyManager.transact(tx -> {
+      tx.depend("b", ImmutableSet.of("c"));
+      tx.install("b");
+    });
+    assertEquals(ImmutableList.of("a", "c", "b"), ImmutableList.copyOf(dependencyManager.list()));
+  }
+
+  @Test
+  public void testRollbackHistory() {
+    dependencyManager.retainHistory(2);
+    dependencyManager.install("a");
+    try (Transaction tx = dependencyManager.begin()) {
+      tx.install("b");
+      tx.install("c");
+      tx.install("d");
+    }
+    assertEquals(1, dependencyManager.operation());
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.listAsOf(1)));
+    assertThrows(IllegalArgumentException.class, ()->{
+      dependencyManager.listAsOf(0); // overwritten by the rolled back operations
+    });
+
+    dependencyManager.install("e");
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(dependencyManager.listAsOf(1)));
+    assertEquals(ImmutableList.of("a", "e"), ImmutableList.copyOf(dependencyManager.listAsOf(2)));
+  }
+
+  @Test
+  public void testOneAtATime() {
+    Transaction tx = dependencyManager.begin();
+    assertThrows(IllegalStateException.class, ()->{
+      dependencyManager.begin();
+    });
+    assertThrows(IllegalStateException.class, ()->{
+      dependencyManager.snapshot();
+    });
+    tx.commit();
+    assertThrows(IllegalStateException.class, ()->{
+      tx.install("a");
+    });
+    dependencyManager.begin().rollback();
+  }
+
+  @Test
+  public void testConcurrentTransact() {
+    ConcurrentDependencyManager concurrentDependencyManager = new ConcurrentDependencyManager(new EventBus());
+    concurrentDependencyManager.install("a");
+    DependencyManagerSnapshot before = concurrentDependencyManager.snapshot();
+
+    assertThrows(IllegalStateException.class, ()->{
+      concurrentDependencyManager.transact(tx -> {
+        tx.install("b");
+        throw new IllegalStateException("boom");
+      });
+    });
+    assertEquals(ImmutableList.of("a"), ImmutableList.copyOf(concurrentDependencyManager.list()));
+    assertEquals(before.list(), concurrentDependencyManager.snapshot().list());
+  }
+
+  @Test
+  public void testRollbackSameAsNeverHappened() {
+    DependencyManager reference = new DependencyManager(new EventBus());
+    Random random = new Random(42);
+    for (int round = 0; round < 50; ++round) {
+      // apply to both
+      for (int i = 0; i < 20; ++i) {
+        long seed = random.nextLong();
+        assertEquals(apply(reference, new Random(seed)), apply(dependencyManager, new Random(seed)));
+      }
+
+      // apply to one and roll back
+      try (Transaction tx = dependencyManager.begin()) {
+        for (int i = 0; i < 20; ++i)
+          apply(dependencyManager, random);
+      }
+      assertEquals(ImmutableList.copyOf(reference.list()), ImmutableList.copyOf(dependencyManager.list()));
+      assertEquals(reference.snapshot().list(), dependencyManager.snapshot().list());
+      for (int i = 0; i < 40; ++i)
+        assertEquals(reference.snapshot().closure("c" + i), dependencyManager.snapshot().closure("c" + i));
+    }
+  }
+
+  private static String apply(DependencyManager dependencyManager, Random random) {
+    String component = "c" + random.nextInt(40);
+    String dependency = "c" + random.nextInt(40);
+    try {
+      switch (random.nextInt(3)) {
+        case 0:
+          dependencyManager.depend(component, ImmutableSet.of(dependency));
+          return "ok";
+        case 1:
+          return dependencyManager.install(component).toString();
+        default:
+          return dependencyManager.remove(component).toString();
+      }
+    } catch (ClientException e) {
+      return e.getMessage();
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+package dependencymanager.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.EventBus;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.DependencyManager;
+
+public class CommandResultEncoderTests {
+
+  private List<CommandResult> results;
+
+  @BeforeEach
+  public void setUp() {
+    DependencyManagerCli cli = new DependencyManagerCli(new DependencyManager(new EventBus()));
+    results = cli.batchResults(ImmutableList.of(
+        "DEPEND a b \"c\"",
+        "INSTALL a",
+        "REMOVE b",
+        "DEPEND b a",
+        "",
+        "LIST",
+        "FOO"));
+  }
+
+  @Test
+  public void testJson() throws IOException {
+    StringWriter out = new StringWriter();
+    CommandResultEncoder encoder = CommandResultEncoder.json(out);
+    results.forEach(encoder);
+    encoder.flush();
+
+    String[] lines = out.toString().split("\n");
+    assertEquals(results.size(), lines.length);
+
+    JsonObject depend = JsonParser.parseString(lines[0]).getAsJsonObject();
+    assertEquals("DEPEND a b \"c\"", depend.get("line").getAsString());
+    assertEquals("DEPEND", depend.get("command").getAsString());
+    assertEquals("OK", depend.get("status").getAsString());
+    assertEquals(0, depend.get("components").getAsJsonArray().size());
+
+    JsonObject install = JsonParser.parseString(lines[1]).getAsJsonObject();
+    assertEquals(ImmutableList.of("b", "\"c\"", "a"), strings(install.get("components").getAsJsonArray()));
+
+    JsonObject remove = JsonParser.parseString(lines[2]).getAsJsonObject();
+    assertEquals("FAILED", remove.get("status").getAsString());
+    assertEquals("StillNeededByException", remove.get("error").getAsString());
+    assertEquals("b is still needed by [a].", remove.get("message").getAsString());
+    assertEquals(ImmutableList.of("a"), strings(remove.get("stillNeededBy").getAsJsonArray()));
+
+    JsonObject cycle = JsonParser.parseString(lines[3]).getAsJsonObject();
+    assertEquals(ImmutableList.of("b", "a", "b"), strings(cycle.get("cycle").getAsJsonArray()));
+    assertFalse(cycle.has("stillNeededBy"));
+
+    JsonObject empty = JsonParser.parseString(lines[4]).getAsJsonObject();
+    assertFalse(empty.has("command"));
+    assertEquals("OK", empty.get("status").getAsString());
+
+    JsonObject bad = JsonParser.parseString(lines[6]).getAsJsonObject();
+    assertEquals("BadCommandException", bad.get("error").getAsString());
+  }
+
+  @Test
+  public void testBinary() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CommandResultEncoder encoder = CommandResultEncoder.binary(out);
+    results.forEach(encoder);
+    encoder.flush();
+
+    // decode it again
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals('D', in.read());
+    assertEquals('M', in.read());
+    assertEquals('R', in.read());
+    assertEquals(1, in.read());
+    List<String> names = new ArrayList<>();
+    for (CommandResult result : results) {
+      assertEquals(result.command == null ? 0 : result.command.ordinal() + 1, in.read());
+      assertEquals(result.status.ordinal(), in.read());
+      assertEquals(result.line, string(in));
+      assertEquals(result.components, names(in, names));
+      if (result.failure != null) {
+        assertEquals(result.failure.getClass().getSimpleName(), string(in));
+        assertEquals(result.failure.getMessage(), string(in));
+        List<String> details = names(in, names);
+        assertEquals(!result.stillNeededBy().isEmpty() ? ImmutableList.copyOf(result.stillNeededBy()) : result.cycle(), details);
+      }
+    }
+    assertEquals(-1, in.read());
+
+    // each name only once
+    assertEquals(ImmutableList.of("b", "\"c\"", "a"), names);
+  }
+
+  @Test
+  public void testStreaming() throws IOException {
+    StringWriter out = new StringWriter();
+    CommandResultEncoder encoder = CommandResultEncoder.json(out);
+    DependencyManagerCli cli = new DependencyManagerCli(new DependencyManager(new EventBus()));
+    cli.batchResults(new StringReader("INSTALL a\nREMOVE a\nREMOVE a\n"), encoder);
+    String[] lines = out.toString().split("\n");
+    assertEquals(3, lines.length);
+    assertTrue(lines[2].contains("\"error\":\"NotInstalledException\""));
+  }
+
+  private static List<String> strings(JsonArray array) {
+    List<String> strings = new ArrayList<>();
+    for (JsonElement element : array)
+      strings.add(element.getAsString());
+    return strings;
+  }
+
+  private static List<String> names(DataInputStream in, List<String> names) throws IOException {
+    List<String> result = new ArrayList<>();
+    for (int count = varint(in); count > 0; --count) {
+      int index = varint(in);
+      if (index == 0) {
+        names.add(string(in));
+        result.add(names.get(names.size() - 1));
+      } else {
+        result.add(names.get(index - 1));
+      }
+    }
+    return result;
+  }
+
+  private static String string(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[varint(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int varint(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0;; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0)
+        return value;
+    }
+  }
+
+}
@@ -0,0 +1,234 @@
+package dependencymanager.cli;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.io.Files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dependencymanager.ConcurrentDependencyManager;
+import dependencymanager.DependencyManager;
+import dependencymanager.events.ListingEvent;
+
+public class DependencyManagerServerTests {
+
+  private ConcurrentDependencyManager dependencyManager;
+  private DependencyManagerServer server;
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    dependencyManager = new ConcurrentDependencyManager(new EventBus());
+    server = new DependencyManagerServer(dependencyManager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.close();
+  }
+
+  @Test
+  public void testPipelined() throws Exception {
+    // all of input.txt in one go.. same output as the batch cli
+    List<String> inputLines = Files.asCharSource(new File("input.txt"), Charsets.UTF_8).readLines();
+    List<String> expectedOutputLines = new DependencyManagerCli(new DependencyManager(new EventBus())).batch(inputLines);
+    assertEquals(expectedOutputLines, send(inputLines));
+  }
+
+  @Test
+  public void testInteractive() throws Exception {
+    // one request at a time, "\r\n" terminated
+    try (Socket socket = connect()) {
+      OutputStream out = socket.getOutputStream();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      out.write("DEPEND a b\r\n".getBytes(Charsets.UTF_8));
+      assertEquals("DEPEND a b", in.readLine());
+      out.write("INSTALL a\r\n".getBytes(Charsets.UTF_8));
+      assertEquals("INSTALL a", in.readLine());
+      assertEquals("\tInstalling b", in.readLine());
+      assertEquals("\tInstalling a", in.readLine());
+
+      // visible in-process right away
+      assertEquals(ImmutableList.of("b", "a"), ImmutableList.copyOf(dependencyManager.list()));
+
+      // whatever follows END is ignored
+      out.write("END\nLIST\n".getBytes(Charsets.UTF_8));
+      assertEquals("END", in.readLine());
+      assertNull(in.readLine());
+    }
+  }
+
+  @Test
+  public void testConnections() throws Exception {
+    // concurrent clients on unrelated components
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<List<String>> expected = new ArrayList<>();
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int c = 0; c < 8; ++c) {
+        List<String> inputLines = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+          inputLines.add(String.format("DEPEND c%d.%d c%d.%d", c, i + 1, c, i));
+          inputLines.add(String.format("INSTALL c%d.%d", c, i + 1));
+          inputLines.add(String.format("REMOVE c%d.%d", c, i + 1));
+        }
+        expected.add(new DependencyManagerCli(new DependencyManager(new EventBus())).batch(inputLines));
+        futures.add(executor.submit(() -> send(inputLines)));
+      }
+      for (int c = 0; c < futures.size(); ++c)
+        assertEquals(expected.get(c), futures.get(c).get());
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(ImmutableSet.of(), dependencyManager.list());
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    // far more output than the server queues per connection.. the client only reads once it sent everything
+    for (int i = 0; i < 1000; ++i)
+      dependencyManager.install("component" + i);
+    List<String> inputLines = new ArrayList<>();
+    for (int i = 0; i < 500; ++i)
+      inputLines.add("LIST");
+    List<String> outputLines = send(inputLines);
+    assertEquals(500 * 1001, outputLines.size());
+    assertEquals("\tcomponent999", outputLines.get(outputLines.size() - 1));
+  }
+
+  @Test
+  public void testBurst() throws Exception {
+    // a burst of LISTs from a client that doesn't read.. only runs as far as the output limit allows
+    AtomicInteger listed = new AtomicInteger();
+    EventBus eventBus = new EventBus();
+    eventBus.register(new Object() {
+      @Subscribe
+      public void handle(ListingEvent event) {
+        listed.incrementAndGet();
+      }
+    });
+    server.close();
+    dependencyManager = new ConcurrentDependencyManager(eventBus);
+    server = new DependencyManagerServer(dependencyManager, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    for (int i = 0; i < 2000; ++i)
+      dependencyManager.install("component" + i);
+    listed.set(0);
+
+    try (Socket socket = connect()) {
+      StringBuilder input = new StringBuilder();
+      for (int i = 0; i < 3000; ++i)
+        input.append("LIST\n");
+      socket.getOutputStream().write(input.toString().getBytes(Charsets.UTF_8));
+      socket.shutdownOutput();
+      int previous;
+      do { // until the server stopped
+        previous = listed.get();
+        Thread.sleep(300);
+      } while (listed.get() != previous);
+      assertTrue(listed.get() < 1500, String.format("%d LISTs ran w/o being read", listed.get()));
+
+      // everything is answered once the client reads
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      int lines = 0;
+      while (in.readLine() != null)
+        ++lines;
+      assertEquals(3000 * 2001, lines);
+      assertEquals(3000, listed.get());
+    }
+  }
+
+  @Test
+  public void testLastLineWithoutNewline() throws Exception {
+    List<String> outputLines;
+    try (Socket socket = connect()) {
+      socket.getOutputStream().write("INSTALL a\nLIST".getBytes(Charsets.UTF_8));
+      socket.shutdownOutput();
+      outputLines = new ArrayList<>();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null)
+        outputLines.add(line);
+    }
+    assertEquals(new DependencyManagerCli(new DependencyManager(new EventBus())).batch(ImmutableList.of("INSTALL a", "LIST")), outputLines);
+    assertEquals(ImmutableList.of("INSTALL a", "\tInstalling a", "LIST", "\ta"), outputLines);
+  }
+
+  @Test
+  public void testLineTooLong() throws Exception {
+    try (Socket socket = connect()) {
+      OutputStream out = socket.getOutputStream();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      byte[] chunk = new byte[64 << 10];
+      Arrays.fill(chunk, (byte) 'x');
+      try {
+        for (int i = 0; i < 32; ++i)
+          out.write(chunk);
+      } catch (IOException e) {
+        // closed by the server halfway.. expected
+      }
+      assertNull(in.readLine());
+    }
+  }
+
+  /**
+   * send
+   * 
+   * writes inputLines on one thread while reading the responses on this one
+   * 
+   * @param inputLines
+   * @return every line read until the server closed the connection
+   */
+  private List<String> send(List<String> inputLines) throws Exception {
+    try (Socket socket = connect()) {
+      Thread writer = new Thread(() -> {
+        try {
+          OutputStream out = socket.getOutputStream();
+          StringBuilder input = new StringBuilder();
+          for (String line : inputLines)
+            input.append(line).append('\n');
+          out.write(input.toString().getBytes(Charsets.UTF_8));
+          socket.shutdownOutput();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+      });
+      writer.start();
+      List<String> outputLines = new ArrayList<>();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Charsets.UTF_8));
+      String line;
+      while ((line = in.readLine()) != null)
+        outputLines.add(line);
+      writer.join();
+      return outputLines;
+    }
+  }
+
+  private Socket connect() throws IOException {
+    return new Socket(server.address().getAddress(), server.address().getPort());
+  }
+
+}
@@ -1,16 +1,30 @@
 package dependencymanager.cli;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.eventbus.EventBus;
+import com.google.common.io.Files;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import dependencymanager.DependencyManager;
+import dependencymanager.Metrics;
+import dependencymanager.exceptions.DependsOnException;
+import dependencymanager.exceptions.StillNeededByException;
 
 /**
  * unit tests for individual cli commands
@@ -96,5 +110,111 @@ public class DependencyManagerTestsCli {
   public void testList() {
     assertTrue(dependencyManagerCli.command("LIST").isEmpty());
   }
+
+  @Test
+  public void testOutput() {
+    assertEquals(ImmutableList.of(), dependencyManagerCli.command("DEPEND a b c"));
+    assertEquals(ImmutableList.of("\tInstalling b", "\tInstalling c", "\tInstalling a"), dependencyManagerCli.command("INSTALL a"));
+    assertEquals(ImmutableList.of("\tb", "\tc", "\ta"), dependencyManagerCli.command("LIST"));
+    assertEquals(ImmutableList.of("\tRemoving a", "\tRemoving c", "\tRemoving b"), dependencyManagerCli.command("REMOVE a"));
+    assertEquals(ImmutableList.of(), dependencyManagerCli.command("END"));
+  }
+
+  @Test
+  public void testWhitespace() {
+    dependencyManagerCli.command("\t DEPEND  a\u2003b \t");
+    assertTrue(dependencyManager.isdepend("a", ImmutableSet.of("b")));
+    assertEquals(ImmutableList.of("\tInstalling b", "\tInstalling a"), dependencyManagerCli.command(" INSTALL\ta "));
+    assertTrue(dependencyManagerCli.command(" \t ").isEmpty());
+    assertThrows(BadCommandException.class, () -> {
+      dependencyManagerCli.command("install a");
+    });
+    assertThrows(BadCommandException.class, () -> {
+      dependencyManagerCli.command("LISTS");
+    });
+  }
     
-}
\ No newline at end of file
+  @Test
+  public void testMetrics() {
+    Metrics metrics = new Metrics();
+    DependencyManagerCli cli = new DependencyManagerCli(dependencyManager, metrics);
+    cli.command("DEPEND a b");
+    cli.command("INSTALL a");
+    cli.command("LIST");
+    assertThrows(BadCommandException.class, ()->{
+      cli.command("FOO");
+    });
+    Map<String, Long> snapshot = metrics.snapshot(false);
+    assertEquals(Long.valueOf(1), snapshot.get("cli.depend.count"));
+    assertEquals(Long.valueOf(1), snapshot.get("cli.install.count"));
+    assertEquals(Long.valueOf(1), snapshot.get("cli.list.count"));
+    assertEquals(Long.valueOf(0), snapshot.get("cli.remove.count"));
+  }
+
+  @Test
+  public void testResults() {
+    CommandResult result = dependencyManagerCli.result("DEPEND a b c");
+    assertEquals(CommandResult.Command.DEPEND, result.command);
+    assertEquals(CommandResult.Status.OK, result.status);
+    assertEquals(ImmutableList.of(), result.components);
+
+    result = dependencyManagerCli.result("INSTALL a");
+    assertEquals(ImmutableList.of("b", "c", "a"), result.components);
+    assertNull(result.failure);
+
+    result = dependencyManagerCli.result("REMOVE b");
+    assertEquals(CommandResult.Command.REMOVE, result.command);
+    assertEquals(CommandResult.Status.FAILED, result.status);
+    assertTrue(result.failure instanceof StillNeededByException);
+    assertEquals(ImmutableSet.of("a"), result.stillNeededBy());
+
+    result = dependencyManagerCli.result("DEPEND b a");
+    assertTrue(result.failure instanceof DependsOnException);
+    assertEquals(ImmutableList.of("b", "a", "b"), result.cycle());
+
+    // the list() as of the command.. later changes don't show through
+    result = dependencyManagerCli.result("LIST");
+    dependencyManagerCli.result("REMOVE a");
+    assertEquals(ImmutableList.of("b", "c", "a"), result.components);
+    assertEquals("a", result.components.get(2));
+
+    result = dependencyManagerCli.result("FOO");
+    assertNull(result.command);
+    assertTrue(result.failure instanceof BadCommandException);
+
+    result = dependencyManagerCli.result(" ");
+    assertNull(result.command);
+    assertEquals(CommandResult.Status.OK, result.status);
+
+    assertThrows(IllegalArgumentException.class, ()->{
+      dependencyManagerCli.result(null);
+    });
+  }
+
+  @Test
+  public void testResultsSameAsBatch() throws IOException {
+    // rendering the results the way batch() does gives batch()'s output
+    List<String> inputLines = Files.asCharSource(new File("input.txt"), Charsets.UTF_8).readLines();
+    List<String> expectedOutputLines = new DependencyManagerCli(new DependencyManager(new EventBus())).batch(inputLines);
+    List<CommandResult> results = dependencyManagerCli.batchResults(inputLines);
+    assertEquals(inputLines.size(), results.size());
+
+    List<String> outputLines = new ArrayList<>();
+    for (CommandResult result : results) {
+      outputLines.add(result.line);
+      if (result.failure instanceof StillNeededByException)
+        outputLines.add("\t" + ((StillNeededByException) result.failure).component + " is still needed.");
+      else if (result.failure != null)
+        outputLines.add("\t" + result.failure.getMessage());
+      for (String component : result.components)
+        outputLines.add((result.command == CommandResult.Command.INSTALL ? "\tInstalling " : result.command == CommandResult.Command.REMOVE ? "\tRemoving " : "\t") + component);
+    }
+    assertEquals(expectedOutputLines, outputLines);
+
+    // streaming
+    List<CommandResult> streamed = new ArrayList<>();
+    new DependencyManagerCli(new DependencyManager(new EventBus())).batchResults(new StringReader(String.join("\n", inputLines)), streamed::add);
+    assertEquals(results.toString(), streamed.toString());
+  }
+
+}
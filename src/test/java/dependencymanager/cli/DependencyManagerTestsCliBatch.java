@@ -1,9 +1,15 @@
 package dependencymanager.cli;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,6 +50,35 @@ public class DependencyManagerTestsCliBatch {
     assertEquals(trimLines(expectedOutputLines), trimLines(actualOutputLines));
   }
 
+  @Test
+  public void testStreamingBatch() throws IOException {
+    List<String> inputLines = Files.asCharSource(new File("input.txt"), Charsets.UTF_8).readLines();
+    List<String> expectedOutputLines = new DependencyManagerCli(new DependencyManager(new EventBus())).batch(inputLines);
+    StringBuilder expectedOutput = new StringBuilder();
+    for (String line : expectedOutputLines)
+      expectedOutput.append(line).append('\n');
+
+    ByteArrayOutputStream actualOutput = new ByteArrayOutputStream();
+    try (InputStream input = new FileInputStream("input.txt")) {
+      dependencyManagerCli.batch(input, actualOutput);
+    }
+
+    assertArrayEquals(expectedOutput.toString().getBytes(Charsets.UTF_8), actualOutput.toByteArray());
+  }
+
+  @Test
+  public void testStreamingBatchFiles() throws IOException {
+    Path output = java.nio.file.Files.createTempFile("output", ".txt");
+    try {
+      dependencyManagerCli.batch(Paths.get("input.txt"), output);
+      List<String> expectedOutputLines = Files.asCharSource(new File("output.txt"), Charsets.UTF_8).readLines();
+      List<String> actualOutputLines = Files.asCharSource(output.toFile(), Charsets.UTF_8).readLines();
+      assertEquals(trimLines(expectedOutputLines), trimLines(actualOutputLines));
+    } finally {
+      java.nio.file.Files.delete(output);
+    }
+  }
+
   // ignores leading/trailing spaces/tabs
   private List<String> trimLines(List<String> input) {
     List<String> output = new ArrayList<>();